@@ -0,0 +1,30 @@
+package com.pnrgov.api;
+
+import com.pnrgov.api.services.AdmissionController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Admission control of the manifest, bulk and job endpoints. The heap budget defaults to a
+ * quarter of the maximum heap, leaving the rest to the reservation pool, the traveler population
+ * and the application itself.
+ */
+@Configuration
+public class AdmissionConfig {
+
+    @Bean
+    public AdmissionController admissionController(
+            @Value("${pnrgov.admission.memory-budget-mb:0}") long memoryBudgetMb,
+            @Value("${pnrgov.admission.cpu-window-seconds:30}") long cpuWindowSeconds,
+            @Value("${pnrgov.admission.queue-capacity:32}") int queueCapacity,
+            @Value("${pnrgov.admission.max-wait-ms:2000}") long maxWaitMs) {
+        long memoryBudgetBytes = memoryBudgetMb > 0
+                ? memoryBudgetMb * 1024 * 1024
+                : Runtime.getRuntime().maxMemory() / 4;
+        return new AdmissionController(memoryBudgetBytes, Runtime.getRuntime().availableProcessors(),
+                Duration.ofSeconds(cpuWindowSeconds), queueCapacity, Duration.ofMillis(maxWaitMs));
+    }
+}
@@ -0,0 +1,38 @@
+package com.pnrgov.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pnrgov.api.services.AdmissionController;
+import com.pnrgov.api.services.BulkFileGenerator;
+import com.pnrgov.api.services.BulkJobService;
+import com.pnrgov.core.services.FlightManifestGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Background bulk jobs of {@code /api/BulkJobs}. Spools go to {@code pnrgov.jobs.spool-dir}, or to
+ * {@code pnrgov-jobs} under the system temp directory.
+ */
+@Configuration
+public class JobsConfig {
+
+    @Bean(destroyMethod = "close")
+    public BulkJobService bulkJobService(BulkFileGenerator bulkFileGenerator,
+                                         FlightManifestGenerator flightManifestGenerator,
+                                         AdmissionController admissionController,
+                                         ObjectMapper objectMapper, Clock clock,
+                                         @Value("${pnrgov.jobs.spool-dir:}") String spoolDir,
+                                         @Value("${pnrgov.jobs.threads:2}") int threads,
+                                         @Value("${pnrgov.jobs.queue-capacity:16}") int queueCapacity,
+                                         @Value("${pnrgov.jobs.retention-minutes:60}") long retentionMinutes) {
+        Path spoolDirectory = spoolDir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "pnrgov-jobs")
+                : Path.of(spoolDir);
+        return new BulkJobService(bulkFileGenerator, flightManifestGenerator, admissionController, objectMapper,
+                clock, spoolDirectory, threads, queueCapacity, Duration.ofMinutes(retentionMinutes));
+    }
+}
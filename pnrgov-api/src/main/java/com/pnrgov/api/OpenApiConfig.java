@@ -17,6 +17,13 @@ public class OpenApiConfig {
      */
     private static final List<String> PATH_ORDER = Arrays.asList(
         "/api/BulkEdifact/generate",
+        "/api/BulkEdifact/download",
+        "/api/BulkJobs",
+        "/api/BulkJobs/bulk",
+        "/api/BulkJobs/manifest",
+        "/api/BulkJobs/{id}",
+        "/api/BulkJobs/{id}/files",
+        "/api/BulkJobs/{id}/archive",
         "/api/Edifact/generate/{reservationId}",
         "/api/Edifact/download/{reservationId}",
         "/api/Edifact/manifest/generate",
@@ -27,6 +34,7 @@ public class OpenApiConfig {
         "/api/Reservations/all",
         "/api/SampleData/generate",
         "/api/SampleData/generate-multiple",
+        "/api/SampleData/pool",
         "/api/Edifact/generate"
     );
 
@@ -1,5 +1,9 @@
 package com.pnrgov.api;
 
+import com.pnrgov.core.repositories.ReservationRepository;
+import com.pnrgov.core.services.RecordLocatorAllocator;
+import com.pnrgov.core.services.SampleDictionaries;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
@@ -8,6 +12,10 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.concurrent.ThreadLocalRandom;
+
 @SpringBootApplication(scanBasePackages = {"com.pnrgov.api", "com.pnrgov.core"})
 @EntityScan("com.pnrgov.core.models")
 @EnableJpaRepositories("com.pnrgov.core.repositories")
@@ -17,6 +25,25 @@ public class PnrGovApplication {
         SpringApplication.run(PnrGovApplication.class, args);
     }
 
+    /** Time source of the generators; replace to pin generated dates. */
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+
+    /** Unseeded record locators; never repeats a locator stored before startup or allocated since. */
+    @Bean
+    public RecordLocatorAllocator recordLocatorAllocator(ReservationRepository reservationRepository) {
+        return new RecordLocatorAllocator(ThreadLocalRandom.current().nextLong(),
+                reservationRepository.findAllRecordLocators());
+    }
+
+    /** Name and address lists, from {@code pnrgov.dictionaries.dir} when it is set. */
+    @Bean
+    public SampleDictionaries sampleDictionaries(@Value("${pnrgov.dictionaries.dir:}") String directory) {
+        return directory.isBlank() ? SampleDictionaries.builtIn() : SampleDictionaries.load(Path.of(directory));
+    }
+
     @Bean
     public WebMvcConfigurer corsConfigurer() {
         return new WebMvcConfigurer() {
@@ -25,7 +52,8 @@ public class PnrGovApplication {
                 registry.addMapping("/**")
                         .allowedOrigins("*")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
-                        .allowedHeaders("*");
+                        .allowedHeaders("*")
+                        .exposedHeaders("X-Record-Locator");
             }
         };
     }
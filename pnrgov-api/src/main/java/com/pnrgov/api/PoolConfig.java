@@ -0,0 +1,32 @@
+package com.pnrgov.api;
+
+import com.pnrgov.core.services.ReservationPool;
+import com.pnrgov.core.services.ReservationSpec;
+import com.pnrgov.core.services.SampleDataGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.Duration;
+
+/**
+ * Warm reservation pool, enabled with {@code pnrgov.pool.enabled=true}. The default profile is
+ * what {@code /api/Edifact/generate} and a default {@code /api/SampleData/generate} request use.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pnrgov.pool.enabled", havingValue = "true")
+public class PoolConfig {
+
+    @Bean(destroyMethod = "close")
+    public ReservationPool reservationPool(SampleDataGenerator sampleDataGenerator, Clock clock,
+                                           @Value("${pnrgov.pool.capacity:256}") int capacity,
+                                           @Value("${pnrgov.pool.refill-threads:1}") int refillThreads,
+                                           @Value("${pnrgov.pool.refill-interval-ms:50}") long refillIntervalMs) {
+        ReservationPool pool = new ReservationPool(sampleDataGenerator, clock, capacity)
+                .addProfile("default", ReservationSpec.builder().build());
+        pool.start(refillThreads, Duration.ofMillis(refillIntervalMs));
+        return pool;
+    }
+}
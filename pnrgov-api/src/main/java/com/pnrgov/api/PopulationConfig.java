@@ -0,0 +1,28 @@
+package com.pnrgov.api;
+
+import com.pnrgov.core.services.SampleDictionaries;
+import com.pnrgov.core.services.TravelerPopulation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Clock;
+import java.time.LocalDate;
+
+/**
+ * Traveler population, enabled with {@code pnrgov.population.enabled=true}. Generated passengers
+ * are then drawn from a fixed set of travelers, so the same people appear across reservations.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pnrgov.population.enabled", havingValue = "true")
+public class PopulationConfig {
+
+    @Bean
+    public TravelerPopulation travelerPopulation(SampleDictionaries sampleDictionaries, Clock clock,
+                                                 @Value("${pnrgov.population.size:1000000}") int size,
+                                                 @Value("${pnrgov.population.zipf-exponent:1.0}") double zipfExponent,
+                                                 @Value("${pnrgov.population.seed:1}") long seed) {
+        return new TravelerPopulation(sampleDictionaries, size, zipfExponent, seed, LocalDate.now(clock));
+    }
+}
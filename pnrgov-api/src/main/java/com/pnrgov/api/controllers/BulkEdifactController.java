@@ -1,114 +1,169 @@
 package com.pnrgov.api.controllers;
 
 import com.pnrgov.api.dto.*;
-import com.pnrgov.core.models.Reservation;
-import com.pnrgov.core.services.EdifactGenerator;
-import com.pnrgov.core.services.SampleDataGenerator;
+import com.pnrgov.api.services.AdmissionController;
+import com.pnrgov.api.services.BulkFileGenerator;
+import com.pnrgov.core.services.GenerationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Random;
 
 @Tag(name = "BulkEdifact")
 @RestController
 @RequestMapping("/api/BulkEdifact")
 public class BulkEdifactController {
     
-    private final SampleDataGenerator sampleGenerator;
-    private final EdifactGenerator edifactGenerator;
-    private final Random random = new Random();
+    /** The JSON response holds every file in memory at once. */
+    private static final int MAX_FILES = 1000;
     
-    public BulkEdifactController(SampleDataGenerator sampleGenerator, EdifactGenerator edifactGenerator) {
-        this.sampleGenerator = sampleGenerator;
-        this.edifactGenerator = edifactGenerator;
+    /** Streamed responses hold one file at a time, so only the time they take bounds the count. */
+    private static final int MAX_STREAMED_FILES = 1_000_000;
+    
+    private final BulkFileGenerator bulkFileGenerator;
+    private final AdmissionController admissionController;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    
+    public BulkEdifactController(BulkFileGenerator bulkFileGenerator, AdmissionController admissionController,
+                                 ObjectMapper objectMapper, Clock clock) {
+        this.bulkFileGenerator = bulkFileGenerator;
+        this.admissionController = admissionController;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
     }
     
     @PostMapping("/generate")
     public ResponseEntity<?> generateBulk(@RequestBody BulkGenerationRequest request) {
-        // Validation
-        if (request.getFileCount() < 1 || request.getFileCount() > 1000) {
-            return ResponseEntity.badRequest().body("File count must be between 1 and 1000");
-        }
-        if (request.getMinPassengers() < 1 || request.getMaxPassengers() > 20) {
-            return ResponseEntity.badRequest().body("Passenger range must be between 1 and 20");
+        String error = BulkFileGenerator.validate(request, MAX_FILES);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
         }
-        if (request.getMinFlights() < 1 || request.getMaxFlights() > 10) {
-            return ResponseEntity.badRequest().body("Flight range must be between 1 and 10");
+        AdmissionController.Cost cost = AdmissionController.estimate(request, false);
+        if (!admissionController.fits(cost)) {
+            return ResponseEntity.badRequest().body("Request is too large for a JSON response; "
+                + "use Accept: application/x-ndjson, /api/BulkEdifact/download or /api/BulkJobs/bulk");
         }
-        if (request.getMinPassengers() > request.getMaxPassengers()) {
-            return ResponseEntity.badRequest().body("MinPassengers cannot be greater than MaxPassengers");
+        AdmissionController.Permit permit = admissionController.tryAcquire(cost);
+        if (permit == null) {
+            return tooManyRequests();
         }
-        if (request.getMinFlights() > request.getMaxFlights()) {
-            return ResponseEntity.badRequest().body("MinFlights cannot be greater than MaxFlights");
-        }
-        
-        List<GeneratedFile> files = new ArrayList<>();
         
-        for (int i = 0; i < request.getFileCount(); i++) {
-            int passengerCount = request.getMinPassengers() + 
-                random.nextInt(request.getMaxPassengers() - request.getMinPassengers() + 1);
-            int flightCount = request.getMinFlights() + 
-                random.nextInt(request.getMaxFlights() - request.getMinFlights() + 1);
-            
-            // Randomize options
-            boolean includeBags = random.nextInt(2) == 0;
-            boolean includeSeats = random.nextInt(2) == 0;
-            boolean includeDocuments = random.nextInt(2) == 0;
-            boolean includePayment = random.nextInt(2) == 0;
-            boolean includeCodeshare = random.nextInt(3) == 0; // Less frequent
-            boolean includeThruFlight = random.nextInt(3) == 0; // Less frequent
-            boolean includePhoneNumbers = random.nextInt(2) == 0;
-            boolean includeAgencyInfo = random.nextInt(2) == 0;
-            boolean includeCreditCard = includePayment && random.nextInt(2) == 0;
+        try (permit) {
+            List<GeneratedFile> files = new ArrayList<>();
+            GenerationContext context = GenerationContext.create(clock, request.getSeed(), request.getReferenceTime());
+            bulkFileGenerator.generateFiles(request, context, files::add);
             
-            Reservation reservation = sampleGenerator.generateRandomReservation(
-                passengerCount,
-                flightCount,
-                includeBags,
-                includeSeats,
-                includeDocuments,
-                includePayment,
-                includeCodeshare,
-                includeThruFlight,
-                includePhoneNumbers,
-                includeAgencyInfo,
-                includeCreditCard
-            );
-            
-            String edifact = edifactGenerator.generatePnrGov(reservation, request.getReceiver());
-            
-            GeneratedFile file = GeneratedFile.builder()
-                .fileName(reservation.getRecordLocator() + ".edi")
-                .recordLocator(reservation.getRecordLocator())
-                .content(edifact)
-                .passengerCount(passengerCount)
-                .flightCount(flightCount)
-                .options(FileOptions.builder()
-                    .hasBags(includeBags)
-                    .hasSeats(includeSeats)
-                    .hasDocuments(includeDocuments)
-                    .hasPayment(includePayment)
-                    .isCodeshare(includeCodeshare)
-                    .isThruFlight(includeThruFlight)
-                    .hasPhones(includePhoneNumbers)
-                    .hasAgency(includeAgencyInfo)
-                    .hasCreditCard(includeCreditCard)
-                    .build())
+            BulkGenerationResponse response = BulkGenerationResponse.builder()
+                .files(files)
+                .totalFiles(files.size())
+                .generatedAt(LocalDateTime.now(clock))
                 .build();
             
-            files.add(file);
+            return ResponseEntity.ok(response);
+        }
+    }
+    
+    /**
+     * The same files as newline-delimited JSON, one {@link GeneratedFile} per line. Each line is
+     * flushed as soon as its file is generated, so the first arrives at once and memory use does
+     * not grow with the file count. Chosen with {@code Accept: application/x-ndjson}.
+     */
+    @PostMapping(value = "/generate", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateBulkNdjson(@RequestBody BulkGenerationRequest request) {
+        String error = BulkFileGenerator.validate(request, MAX_STREAMED_FILES);
+        if (error != null) {
+            return badRequest(error);
+        }
+        AdmissionController.Cost cost = AdmissionController.estimate(request, true);
+        if (!admissionController.fits(cost)) {
+            return badRequest("Interchange limits are too large for the memory budget");
+        }
+        AdmissionController.Permit permit = admissionController.tryAcquire(cost);
+        if (permit == null) {
+            return tooManyRequests();
         }
         
-        BulkGenerationResponse response = BulkGenerationResponse.builder()
-            .files(files)
-            .totalFiles(files.size())
-            .generatedAt(LocalDateTime.now())
-            .build();
+        GenerationContext context = GenerationContext.create(clock, request.getSeed(), request.getReferenceTime());
+        StreamingResponseBody body = out -> {
+            Writer lines = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            try {
+                bulkFileGenerator.generateFiles(request, context, file -> {
+                    try {
+                        lines.write(objectMapper.writeValueAsString(file));
+                        lines.write('\n');
+                        lines.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            lines.flush();
+        };
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(permit.releaseAfter(body));
+    }
+    
+    /**
+     * Streams the generated files as a ZIP archive. Each file is written into the response as it
+     * is generated, so memory use does not grow with the file count; the last entry,
+     * {@code manifest.jsonl}, lists every file with its counts and {@link FileOptions}.
+     */
+    @PostMapping("/download")
+    public ResponseEntity<StreamingResponseBody> downloadBulk(@RequestBody BulkGenerationRequest request) {
+        String error = BulkFileGenerator.validate(request, MAX_STREAMED_FILES);
+        if (error != null) {
+            return badRequest(error);
+        }
+        AdmissionController.Cost cost = AdmissionController.estimate(request, true);
+        if (!admissionController.fits(cost)) {
+            return badRequest("Interchange limits are too large for the memory budget");
+        }
+        AdmissionController.Permit permit = admissionController.tryAcquire(cost);
+        if (permit == null) {
+            return tooManyRequests();
+        }
         
-        return ResponseEntity.ok(response);
+        GenerationContext context = GenerationContext.create(clock, request.getSeed(), request.getReferenceTime());
+        String fileName = "PNRGOV_Bulk_"
+            + LocalDateTime.now(clock).format(DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".zip";
+        StreamingResponseBody body = out -> bulkFileGenerator.writeArchive(request, context, out);
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+            .contentType(MediaType.parseMediaType("application/zip"))
+            .body(permit.releaseAfter(body));
+    }
+    
+    /** 429 with the seconds the work in flight is expected to take. */
+    private <T> ResponseEntity<T> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, String.valueOf(admissionController.retryAfterSeconds()))
+            .build();
+    }
+    
+    /** The validation message as plain text, for handlers that return a streamed body. */
+    private static ResponseEntity<StreamingResponseBody> badRequest(String error) {
+        return ResponseEntity.badRequest()
+            .contentType(MediaType.TEXT_PLAIN)
+            .body(out -> out.write(error.getBytes(StandardCharsets.UTF_8)));
     }
 }
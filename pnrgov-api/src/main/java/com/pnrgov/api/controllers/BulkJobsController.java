@@ -0,0 +1,169 @@
+package com.pnrgov.api.controllers;
+
+import com.pnrgov.api.dto.BulkGenerationRequest;
+import com.pnrgov.api.dto.BulkGenerationResponse;
+import com.pnrgov.api.dto.BulkJobStatus;
+import com.pnrgov.api.dto.GeneratedFile;
+import com.pnrgov.api.dto.ManifestRequest;
+import com.pnrgov.api.services.BulkFileGenerator;
+import com.pnrgov.api.services.BulkJob;
+import com.pnrgov.api.services.BulkJobService;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bulk and manifest generation as background jobs. Submitting returns at once with the job id;
+ * the status reports progress, and the files can be read by page while the job runs or
+ * downloaded as one archive when it has succeeded.
+ */
+@Tag(name = "BulkJobs")
+@RestController
+@RequestMapping("/api/BulkJobs")
+public class BulkJobsController {
+
+    /** Jobs spool to disk, so only the time they take bounds the count. */
+    private static final int MAX_JOB_FILES = 1_000_000;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private final BulkJobService bulkJobService;
+    private final Clock clock;
+
+    public BulkJobsController(BulkJobService bulkJobService, Clock clock) {
+        this.bulkJobService = bulkJobService;
+        this.clock = clock;
+    }
+
+    @PostMapping("/bulk")
+    public ResponseEntity<?> submitBulk(@RequestBody BulkGenerationRequest request) {
+        String error = BulkFileGenerator.validate(request, MAX_JOB_FILES);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
+        try {
+            return accepted(bulkJobService.submit(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return queueFull();
+        }
+    }
+
+    @PostMapping("/manifest")
+    public ResponseEntity<?> submitManifest(@RequestBody(required = false) ManifestRequest request) {
+        if (request == null) request = new ManifestRequest();
+        String error = BulkFileGenerator.validate(request);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
+        try {
+            return accepted(bulkJobService.submit(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return queueFull();
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<List<BulkJobStatus>> getJobs() {
+        return ResponseEntity.ok(bulkJobService.list().stream().map(this::toStatus).toList());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<BulkJobStatus> getJob(@PathVariable String id) {
+        return bulkJobService.find(id)
+                .map(job -> ResponseEntity.ok(toStatus(job)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /** A page of the files spooled so far, with their content; available while the job runs. */
+    @GetMapping("/{id}/files")
+    public ResponseEntity<?> getFiles(@PathVariable String id,
+                                      @RequestParam(defaultValue = "0") int page,
+                                      @RequestParam(defaultValue = "20") int size) {
+        if (page < 0 || size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("Page must not be negative and size must be between 1 and "
+                    + MAX_PAGE_SIZE);
+        }
+        BulkJob job = bulkJobService.find(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            List<GeneratedFile> files = bulkJobService.files(job, page, size);
+            return ResponseEntity.ok(BulkGenerationResponse.builder()
+                    .files(files)
+                    .totalFiles(job.getFileCount())
+                    .generatedAt(LocalDateTime.now(clock))
+                    .build());
+        } catch (IOException e) {
+            // The job was deleted while its files were read
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /** The job's files and {@code manifest.jsonl} as a ZIP archive, once the job has succeeded. */
+    @GetMapping("/{id}/archive")
+    public ResponseEntity<StreamingResponseBody> downloadArchive(@PathVariable String id) {
+        BulkJob job = bulkJobService.find(id).orElse(null);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getState() != BulkJob.State.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        StreamingResponseBody body = out -> bulkJobService.writeArchive(job, out);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"PNRGOV_Job_" + id + ".zip\"")
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .body(body);
+    }
+
+    /** Cancels the job if it is still queued or running, and deletes its files. */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deleteJob(@PathVariable String id) {
+        return bulkJobService.delete(id)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    private ResponseEntity<BulkJobStatus> accepted(BulkJob job) {
+        return ResponseEntity.accepted()
+                .header(HttpHeaders.LOCATION, URI.create("/api/BulkJobs/" + job.getId()).toString())
+                .body(toStatus(job));
+    }
+
+    private static ResponseEntity<String> queueFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Job queue is full");
+    }
+
+    private BulkJobStatus toStatus(BulkJob job) {
+        return BulkJobStatus.builder()
+                .id(job.getId())
+                .kind(job.getKind().name())
+                .state(job.getState().name())
+                .completed(job.getCompleted())
+                .total(job.getTotal())
+                .fileCount(job.getFileCount())
+                .bytes(job.getBytes())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .expiresAt(bulkJobService.expiresAt(job))
+                .error(job.getError())
+                .build();
+    }
+}
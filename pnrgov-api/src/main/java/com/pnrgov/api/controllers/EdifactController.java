@@ -3,37 +3,71 @@ package com.pnrgov.api.controllers;
 import com.pnrgov.api.dto.EdifactResponse;
 import com.pnrgov.api.dto.ManifestRequest;
 import com.pnrgov.api.dto.ManifestResponse;
+import com.pnrgov.api.services.AdmissionController;
+import com.pnrgov.api.services.BulkFileGenerator;
+import com.pnrgov.core.edifact.EdifactWriter;
 import com.pnrgov.core.models.Reservation;
 import com.pnrgov.core.repositories.ReservationRepository;
 import com.pnrgov.core.services.EdifactGenerator;
 import com.pnrgov.core.services.FlightManifestGenerator;
+import com.pnrgov.core.services.ManifestOptions;
+import com.pnrgov.core.services.ReservationPool;
+import com.pnrgov.core.services.ReservationSpec;
 import com.pnrgov.core.services.SampleDataGenerator;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Tag(name = "Edifact")
 @RestController
 @RequestMapping("/api/Edifact")
 public class EdifactController {
 
+    /** Media type of a bare interchange, offered next to the JSON responses. */
+    public static final String APPLICATION_EDIFACT_VALUE = "application/edifact";
+
+    /** Interchanges are ASCII, as the IATA syntax in UNB declares; non-ASCII text is transliterated. */
+    private static final Charset EDIFACT_CHARSET = EdifactWriter.CHARSET;
+    private static final MediaType APPLICATION_EDIFACT = new MediaType("application", "edifact", EDIFACT_CHARSET);
+    private static final MediaType TEXT_PLAIN = new MediaType("text", "plain", EDIFACT_CHARSET);
+
+    /** Carries the record locator on bare interchange responses, which have no JSON body for it. */
+    private static final String RECORD_LOCATOR_HEADER = "X-Record-Locator";
+
     private final SampleDataGenerator sampleDataGenerator;
     private final EdifactGenerator edifactGenerator;
     private final FlightManifestGenerator flightManifestGenerator;
     private final ReservationRepository reservationRepository;
+    private final ReservationPool reservationPool;
+    private final AdmissionController admissionController;
 
     public EdifactController(SampleDataGenerator sampleDataGenerator,
                              EdifactGenerator edifactGenerator,
                              FlightManifestGenerator flightManifestGenerator,
-                             ReservationRepository reservationRepository) {
+                             ReservationRepository reservationRepository,
+                             Optional<ReservationPool> reservationPool,
+                             AdmissionController admissionController) {
         this.sampleDataGenerator = sampleDataGenerator;
         this.edifactGenerator = edifactGenerator;
         this.flightManifestGenerator = flightManifestGenerator;
         this.reservationRepository = reservationRepository;
+        this.reservationPool = reservationPool.orElse(null);
+        this.admissionController = admissionController;
     }
 
     @GetMapping("/generate/{reservationId}")
@@ -53,33 +87,74 @@ public class EdifactController {
                 .orElse(ResponseEntity.notFound().build());
     }
 
+    /** The interchange alone, without the JSON wrapper, for clients that accept {@code application/edifact}. */
+    @GetMapping(value = "/generate/{reservationId}", produces = APPLICATION_EDIFACT_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateEdifactByIdRaw(
+            @PathVariable Long reservationId,
+            @RequestParam(defaultValue = "USCBP") String receiver) {
+        return reservationRepository.findById(reservationId)
+                .map(reservation -> ResponseEntity.ok()
+                        .header(RECORD_LOCATOR_HEADER, reservation.getRecordLocator())
+                        .contentType(APPLICATION_EDIFACT)
+                        .body(edifactBody(out -> edifactGenerator.writePnrGov(reservation, receiver, out))))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/download/{reservationId}")
-    public ResponseEntity<byte[]> downloadEdifact(
+    public ResponseEntity<StreamingResponseBody> downloadEdifact(
             @PathVariable Long reservationId,
             @RequestParam(defaultValue = "USCBP") String receiver) {
         return reservationRepository.findById(reservationId)
                 .map(reservation -> {
-                    String edifactContent = edifactGenerator.generatePnrGov(reservation, receiver);
                     String fileName = "PNRGOV_" + reservation.getRecordLocator()
                             + "_" + LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".edi";
-                    byte[] bytes = edifactContent.getBytes();
                     return ResponseEntity.ok()
                             .header(HttpHeaders.CONTENT_DISPOSITION,
                                     "attachment; filename=\"" + fileName + "\"")
-                            .contentType(MediaType.TEXT_PLAIN)
-                            .body(bytes);
+                            .contentType(TEXT_PLAIN)
+                            .body(edifactBody(out -> edifactGenerator.writePnrGov(reservation, receiver, out)));
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
 
     @PostMapping("/manifest/generate")
-    public ResponseEntity<ManifestResponse> generateManifest(@RequestBody(required = false) ManifestRequest request) {
+    public ResponseEntity<?> generateManifest(@RequestBody(required = false) ManifestRequest request) {
         if (request == null) request = new ManifestRequest();
+        String error = BulkFileGenerator.validate(request);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
         int pnrCount = request.getPassengerCount() > 0 ? request.getPassengerCount() : 5;
         String receiver = request.getReceiver() != null ? request.getReceiver() : "USCBP";
-        try {
-            String edifactContent = flightManifestGenerator.generateFlightManifest(
-                    pnrCount, request.getAirline(), request.getFlightNumber(), receiver);
+        ManifestOptions options = BulkFileGenerator.manifestOptions(request);
+        int receiverCount = 1 + (request.getReceivers() != null ? request.getReceivers().size() : 0);
+        AdmissionController.Cost cost = AdmissionController.estimate(options, receiverCount, false);
+        if (!admissionController.fits(cost)) {
+            // Manifest jobs stream every receiver's interchange to disk, so they take what this cannot
+            return ResponseEntity.badRequest().body("Manifest is too large for a JSON response; use Accept: "
+                    + APPLICATION_EDIFACT_VALUE + " or /api/Edifact/manifest/download for the receiver's"
+                    + " interchange, or /api/BulkJobs/manifest for every receiver's");
+        }
+        AdmissionController.Permit permit = admissionController.tryAcquire(cost);
+        if (permit == null) {
+            return tooManyRequests();
+        }
+        try (permit) {
+            if (request.getReceivers() != null && !request.getReceivers().isEmpty()) {
+                // Render once, one envelope per receiver
+                Set<String> receivers = new LinkedHashSet<>();
+                receivers.add(receiver);
+                receivers.addAll(request.getReceivers());
+                Map<String, String> interchanges =
+                        flightManifestGenerator.generateFlightManifestForReceivers(options, receivers);
+                return ResponseEntity.ok(ManifestResponse.builder()
+                        .edifactContent(interchanges.get(receiver))
+                        .passengerCount(pnrCount)
+                        .generatedAt(LocalDateTime.now())
+                        .edifactByReceiver(interchanges)
+                        .build());
+            }
+            String edifactContent = flightManifestGenerator.generateFlightManifest(options);
             return ResponseEntity.ok(ManifestResponse.builder()
                     .edifactContent(edifactContent)
                     .passengerCount(pnrCount)
@@ -90,31 +165,58 @@ public class EdifactController {
         }
     }
 
+    /**
+     * The manifest interchange alone, for clients that accept {@code application/edifact}. Only
+     * the interchange for {@code receiver} is returned; {@code receivers} needs the JSON form.
+     */
+    @PostMapping(value = "/manifest/generate", produces = APPLICATION_EDIFACT_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateManifestRaw(
+            @RequestBody(required = false) ManifestRequest request) {
+        if (request == null) request = new ManifestRequest();
+        String error = BulkFileGenerator.validate(request);
+        if (error != null) {
+            return badRequest(error);
+        }
+        ManifestOptions options = BulkFileGenerator.manifestOptions(request);
+        AdmissionController.Permit permit = admissionController.tryAcquire(
+                AdmissionController.estimate(options, 1, true));
+        if (permit == null) {
+            return tooManyRequests();
+        }
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_EDIFACT)
+                .body(permit.releaseAfter(edifactBody(out -> flightManifestGenerator.writeFlightManifest(options, out))));
+    }
+
     @PostMapping("/manifest/download")
-    public ResponseEntity<byte[]> downloadManifest(@RequestBody(required = false) ManifestRequest request) {
+    public ResponseEntity<StreamingResponseBody> downloadManifest(
+            @RequestBody(required = false) ManifestRequest request) {
         if (request == null) request = new ManifestRequest();
-        int pnrCount = request.getPassengerCount() > 0 ? request.getPassengerCount() : 5;
-        String receiver = request.getReceiver() != null ? request.getReceiver() : "USCBP";
-        try {
-            String edifactContent = flightManifestGenerator.generateFlightManifest(
-                    pnrCount, request.getAirline(), request.getFlightNumber(), receiver);
-            String airlineStr = request.getAirline() != null ? request.getAirline() : "XX";
-            String flightStr  = request.getFlightNumber() != null ? request.getFlightNumber() : "0000";
-            String fileName = "PNRGOV_Manifest_" + airlineStr + flightStr
-                    + "_" + LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".edi";
-            byte[] bytes = edifactContent.getBytes();
-            return ResponseEntity.ok()
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(bytes);
-        } catch (Exception ex) {
-            return ResponseEntity.badRequest().build();
+        String error = BulkFileGenerator.validate(request);
+        if (error != null) {
+            return badRequest(error);
         }
+        ManifestOptions options = BulkFileGenerator.manifestOptions(request);
+        AdmissionController.Permit permit = admissionController.tryAcquire(
+                AdmissionController.estimate(options, 1, true));
+        if (permit == null) {
+            return tooManyRequests();
+        }
+        String airlineStr = request.getAirline() != null ? request.getAirline() : "XX";
+        String flightStr  = request.getFlightNumber() != null ? request.getFlightNumber() : "0000";
+        String fileName = "PNRGOV_Manifest_" + airlineStr + flightStr
+                + "_" + LocalDateTime.now().format(java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + ".edi";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .contentType(TEXT_PLAIN)
+                .body(permit.releaseAfter(edifactBody(out -> flightManifestGenerator.writeFlightManifest(options, out))));
     }
 
     @PostMapping("/generate")
     public ResponseEntity<EdifactResponse> generateEdifact() {
-        Reservation reservation = sampleDataGenerator.generateRandomReservation();
+        Reservation reservation = reservationPool != null
+                ? reservationPool.take(ReservationSpec.builder().build())
+                : sampleDataGenerator.generateRandomReservation();
         String edifactContent = edifactGenerator.generatePnrGov(reservation, "USCBP");
         return ResponseEntity.ok(EdifactResponse.builder()
                 .recordLocator(reservation.getRecordLocator())
@@ -122,4 +224,41 @@ public class EdifactController {
                 .generatedAt(LocalDateTime.now())
                 .build());
     }
+
+    /** A pooled or fresh reservation as a bare interchange, for clients that accept {@code application/edifact}. */
+    @PostMapping(value = "/generate", produces = APPLICATION_EDIFACT_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateEdifactRaw() {
+        Reservation reservation = reservationPool != null
+                ? reservationPool.take(ReservationSpec.builder().build())
+                : sampleDataGenerator.generateRandomReservation();
+        return ResponseEntity.ok()
+                .header(RECORD_LOCATOR_HEADER, reservation.getRecordLocator())
+                .contentType(APPLICATION_EDIFACT)
+                .body(edifactBody(out -> edifactGenerator.writePnrGov(reservation, "USCBP", out)));
+    }
+
+    private static ResponseEntity<StreamingResponseBody> badRequest(String error) {
+        return ResponseEntity.badRequest()
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(out -> out.write(error.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** 429 with the seconds the work in flight is expected to take. */
+    private <T> ResponseEntity<T> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(admissionController.retryAfterSeconds()))
+                .build();
+    }
+
+    /**
+     * Encodes the interchange straight onto the response as it is written. No content length is
+     * known up front, so the container sends it chunked.
+     */
+    private static StreamingResponseBody edifactBody(Consumer<Writer> interchange) {
+        return out -> {
+            Writer writer = new OutputStreamWriter(out, EDIFACT_CHARSET);
+            interchange.accept(writer);
+            writer.flush();
+        };
+    }
 }
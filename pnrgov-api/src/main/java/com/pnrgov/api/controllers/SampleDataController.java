@@ -3,13 +3,19 @@ package com.pnrgov.api.controllers;
 import com.pnrgov.api.dto.*;
 import com.pnrgov.core.models.Reservation;
 import com.pnrgov.core.repositories.ReservationRepository;
+import com.pnrgov.core.services.GenerationContext;
+import com.pnrgov.core.services.RecordLocatorAllocator;
+import com.pnrgov.core.services.ReservationPool;
+import com.pnrgov.core.services.ReservationSpec;
 import com.pnrgov.core.services.SampleDataGenerator;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Clock;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 @Tag(name = "SampleData")
 @RestController
@@ -18,11 +24,20 @@ public class SampleDataController {
     
     private final ReservationRepository reservationRepository;
     private final SampleDataGenerator sampleDataGenerator;
+    private final Clock clock;
+    private final ReservationPool reservationPool;
+    private final RecordLocatorAllocator recordLocatorAllocator;
     
     public SampleDataController(ReservationRepository reservationRepository, 
-                               SampleDataGenerator sampleDataGenerator) {
+                               SampleDataGenerator sampleDataGenerator,
+                               Clock clock,
+                               Optional<ReservationPool> reservationPool,
+                               RecordLocatorAllocator recordLocatorAllocator) {
         this.reservationRepository = reservationRepository;
         this.sampleDataGenerator = sampleDataGenerator;
+        this.clock = clock;
+        this.reservationPool = reservationPool.orElse(null);
+        this.recordLocatorAllocator = recordLocatorAllocator;
     }
     
     /**
@@ -30,7 +45,7 @@ public class SampleDataController {
      */
     @PostMapping("/generate")
     public ResponseEntity<SampleDataResponse> generateSampleData(@RequestBody SampleDataRequest request) {
-        Reservation reservation = sampleDataGenerator.generateRandomReservation(
+        ReservationSpec spec = ReservationSpec.of(
             request.getPassengerCount(),
             request.getFlightCount(),
             request.isIncludeBags(),
@@ -44,6 +59,16 @@ public class SampleDataController {
             request.isIncludeCreditCard()
         );
         
+        // Pooled reservations are unseeded, so only requests without a seed or reference time use the pool
+        Reservation reservation;
+        if (reservationPool != null && request.getSeed() == null && request.getReferenceTime() == null) {
+            reservation = reservationPool.take(spec);
+        } else {
+            GenerationContext context = GenerationContext.create(clock, request.getSeed(), request.getReferenceTime());
+            reservation = sampleDataGenerator.generateReservation(spec, context);
+            allocateRecordLocator(reservation, context);
+        }
+        
         reservation = reservationRepository.save(reservation);
         
         SampleDataResponse response = SampleDataResponse.builder()
@@ -67,34 +92,27 @@ public class SampleDataController {
         int count = request.getCount() > 0 ? request.getCount() : 5;
         int passengerCount = request.getPassengerCount() > 0 ? request.getPassengerCount() : 2;
         int flightCount = request.getFlightCount() > 0 ? request.getFlightCount() : 2;
-        boolean includeBags = request.isIncludeBags();
-        boolean includeSeats = request.isIncludeSeats();
-        boolean includeDocuments = request.isIncludeDocuments();
-        boolean includePayment = request.isIncludePayment();
-        boolean includeCodeshare = request.isIncludeCodeshare();
-        boolean includeThruFlight = request.isIncludeThruFlight();
-        boolean includePhoneNumbers = request.isIncludePhoneNumbers();
-        boolean includeAgencyInfo = request.isIncludeAgencyInfo();
-        boolean includeCreditCard = request.isIncludeCreditCard();
+        ReservationSpec spec = ReservationSpec.of(
+            passengerCount,
+            flightCount,
+            request.isIncludeBags(),
+            request.isIncludeSeats(),
+            request.isIncludeDocuments(),
+            request.isIncludePayment(),
+            request.isIncludeCodeshare(),
+            request.isIncludeThruFlight(),
+            request.isIncludePhoneNumbers(),
+            request.isIncludeAgencyInfo(),
+            request.isIncludeCreditCard()
+        );
+        
+        GenerationContext context = GenerationContext.create(clock, request.getSeed(), request.getReferenceTime());
         
         List<SampleDataResponse> generatedReservations = new ArrayList<>();
         
-        for (int i = 0; i < count; i++) {
-            Reservation reservation = sampleDataGenerator.generateRandomReservation(
-                passengerCount,
-                flightCount,
-                includeBags,
-                includeSeats,
-                includeDocuments,
-                includePayment,
-                includeCodeshare,
-                includeThruFlight,
-                includePhoneNumbers,
-                includeAgencyInfo,
-                includeCreditCard
-            );
-            
-            reservation = reservationRepository.save(reservation);
+        sampleDataGenerator.generateReservations(spec, count, context).forEach(generated -> {
+            allocateRecordLocator(generated, context);
+            Reservation reservation = reservationRepository.save(generated);
             
             generatedReservations.add(SampleDataResponse.builder()
                 .reservationId(reservation.getId())
@@ -102,7 +120,7 @@ public class SampleDataController {
                 .passengerCount(reservation.getPassengers().size())
                 .flightCount(reservation.getFlights().size())
                 .build());
-        }
+        });
         
         MultipleSampleDataResponse response = MultipleSampleDataResponse.builder()
             .totalGenerated(generatedReservations.size())
@@ -112,4 +130,23 @@ public class SampleDataController {
         
         return ResponseEntity.ok(response);
     }
+    
+    /**
+     * Seeded reservations replay their random record locators, so storing the same seed twice
+     * would repeat them; stored reservations always take theirs from the allocator.
+     */
+    private void allocateRecordLocator(Reservation reservation, GenerationContext context) {
+        if (context.seeded()) {
+            reservation.setRecordLocator(recordLocatorAllocator.next());
+        }
+    }
+    
+    /**
+     * Warm pool metrics: depth, hits, misses and refill rate per profile; empty when the pool is
+     * disabled
+     */
+    @GetMapping("/pool")
+    public ResponseEntity<List<ReservationPool.PoolStats>> getPoolStats() {
+        return ResponseEntity.ok(reservationPool != null ? reservationPool.getStats() : List.of());
+    }
 }
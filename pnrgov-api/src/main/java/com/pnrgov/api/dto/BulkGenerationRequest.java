@@ -18,4 +18,25 @@ public class BulkGenerationRequest {
     private int minFlights = 1;
     private int maxFlights = 3;
     private String receiver = "USCBP";
+
+    /**
+     * Packs this many PNRGOV messages into each interchange instead of one interchange per
+     * reservation; 0 keeps one file per reservation unless {@code maxInterchangeSize} is set.
+     */
+    private int messagesPerInterchange;
+
+    /** Byte budget per packed interchange, UNA through UNZ; 0 for no limit. */
+    private int maxInterchangeSize;
+
+    /** UNB/UNG sender of packed interchanges; defaults to the carrier of the first reservation. */
+    private String sender;
+
+    /** Makes identical requests produce identical output; omit for fresh random data. */
+    private Long seed;
+
+    /**
+     * Reference time for all generated dates; defaults to the current time, or to the start of
+     * the current day when a seed is given.
+     */
+    private LocalDateTime referenceTime;
 }
@@ -0,0 +1,30 @@
+package com.pnrgov.api.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkJobStatus {
+    private String id;
+    /** {@code BULK} or {@code MANIFEST}. */
+    private String kind;
+    /** {@code QUEUED}, {@code RUNNING}, {@code SUCCEEDED}, {@code FAILED} or {@code CANCELLED}. */
+    private String state;
+    /** Reservations generated so far, out of {@code total}. */
+    private long completed;
+    private long total;
+    /** Files ready to read, by page or in the archive once the job has succeeded. */
+    private int fileCount;
+    private long bytes;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    /** When the job and its files are deleted. */
+    private LocalDateTime expiresAt;
+    private String error;
+}
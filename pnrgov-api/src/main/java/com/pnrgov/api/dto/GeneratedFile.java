@@ -13,5 +13,7 @@ public class GeneratedFile {
     private String content;
     private int passengerCount;
     private int flightCount;
+    /** PNRGOV messages in the file; more than one for packed interchanges. */
+    private int messageCount;
     private FileOptions options;
 }
@@ -2,6 +2,9 @@ package com.pnrgov.api.dto;
 
 import lombok.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @Getter
 @Setter
 @NoArgsConstructor
@@ -12,4 +15,22 @@ public class ManifestRequest {
     private String airline;
     private String flightNumber;
     private String receiver = "USCBP";
+
+    /** Split into message parts of at most this many PNRs; 0 for a single message. */
+    private int maxPnrsPerMessage;
+
+    /** Split into message parts of at most this many bytes (UNH..UNT); 0 for no limit. */
+    private int maxMessageSize;
+
+    /** Additional receivers; the manifest is generated once and enveloped for each of them. */
+    private List<String> receivers;
+
+    /** Makes identical requests produce identical output; omit for fresh random data. */
+    private Long seed;
+
+    /**
+     * Reference time for all generated dates; defaults to the current time, or to the start of
+     * the current day when a seed is given.
+     */
+    private LocalDateTime referenceTime;
 }
@@ -3,6 +3,7 @@ package com.pnrgov.api.dto;
 import lombok.*;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -13,4 +14,6 @@ public class ManifestResponse {
     private String edifactContent;
     private int passengerCount;
     private LocalDateTime generatedAt;
+    /** One interchange per receiver when the request lists several receivers. */
+    private Map<String, String> edifactByReceiver;
 }
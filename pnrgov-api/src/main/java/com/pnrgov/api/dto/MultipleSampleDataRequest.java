@@ -2,6 +2,8 @@ package com.pnrgov.api.dto;
 
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,4 +23,13 @@ public class MultipleSampleDataRequest {
     private boolean includeCreditCard = true;
     private String receiver = "USCBP";
     private int count = 5;
+
+    /** Makes identical requests produce identical output; omit for fresh random data. */
+    private Long seed;
+
+    /**
+     * Reference time for all generated dates; defaults to the current time, or to the start of
+     * the current day when a seed is given.
+     */
+    private LocalDateTime referenceTime;
 }
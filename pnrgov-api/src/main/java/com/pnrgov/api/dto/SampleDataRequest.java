@@ -2,6 +2,8 @@ package com.pnrgov.api.dto;
 
 import lombok.*;
 
+import java.time.LocalDateTime;
+
 @Getter
 @Setter
 @NoArgsConstructor
@@ -20,4 +22,13 @@ public class SampleDataRequest {
     private boolean includeAgencyInfo = true;
     private boolean includeCreditCard = true;
     private String receiver = "USCBP";
+
+    /** Makes identical requests produce identical output; omit for fresh random data. */
+    private Long seed;
+
+    /**
+     * Reference time for all generated dates; defaults to the current time, or to the start of
+     * the current day when a seed is given.
+     */
+    private LocalDateTime referenceTime;
 }
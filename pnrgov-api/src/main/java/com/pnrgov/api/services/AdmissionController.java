@@ -0,0 +1,253 @@
+package com.pnrgov.api.services;
+
+import com.pnrgov.api.dto.BulkGenerationRequest;
+import com.pnrgov.core.services.ManifestOptions;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admits generation work against two global budgets: heap the running requests hold, and CPU
+ * time they still have to spend. Each request is costed from its parameters before any work
+ * starts. A request that does not fit waits in line, first come first served, for a bounded time
+ * and is then turned away, so a burst of large requests is shed instead of driving the heap into
+ * back-to-back collections.
+ * <p>
+ * Estimates are upper bounds measured on the built-in dictionaries: bytes and microseconds per
+ * reservation grow with the passengers and flights it may have. CPU time is budgeted as
+ * {@code processors x cpuWindow}; a single request that needs more still runs, alone.
+ */
+public class AdmissionController {
+
+    /** Heap a request holds while it runs and the CPU time it will spend. */
+    public record Cost(long bytes, long cpuMicros) { }
+
+    /** Interchange bytes per reservation: a base plus per passenger and per passenger-flight. */
+    private static final int BYTES_PER_RESERVATION = 500;
+    private static final int BYTES_PER_PASSENGER = 100;
+    private static final int BYTES_PER_PASSENGER_FLIGHT = 110;
+    private static final int CPU_MICROS_PER_RESERVATION = 30;
+    private static final int CPU_MICROS_PER_PASSENGER = 5;
+    private static final int CPU_MICROS_PER_PASSENGER_FLIGHT = 3;
+
+    /** Manifest PNRs are generated with their own passenger and flight mix. */
+    private static final int BYTES_PER_MANIFEST_PNR = 700;
+    private static final int CPU_MICROS_PER_MANIFEST_PNR = 40;
+
+    /** Writer, ZIP and socket buffers plus the reservation in hand of a streamed response. */
+    private static final long STREAMED_BYTES = 256 * 1024;
+
+    /**
+     * A response built in memory holds its content strings, the objects wrapping them and the JSON
+     * being written, at about this multiple of the content size.
+     */
+    private static final int IN_MEMORY_FACTOR = 3;
+
+    private static final long MAX_RETRY_AFTER_SECONDS = 60;
+
+    private final long memoryBudgetBytes;
+    private final long cpuBudgetMicros;
+    private final int processors;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final ArrayDeque<Waiter> waiting = new ArrayDeque<>();
+    private long bytesInFlight;
+    private long cpuMicrosInFlight;
+    private long cpuMicrosWaiting;
+
+    /**
+     * @param memoryBudgetBytes heap all admitted requests may hold together
+     * @param processors        processors generation may use
+     * @param cpuWindow         CPU time per processor admitted requests may have outstanding
+     * @param queueCapacity     requests that may wait for budget; further requests are turned away
+     * @param maxWait           how long a request waits before it is turned away
+     */
+    public AdmissionController(long memoryBudgetBytes, int processors, Duration cpuWindow, int queueCapacity,
+                               Duration maxWait) {
+        if (memoryBudgetBytes <= 0 || processors <= 0 || cpuWindow.isNegative() || cpuWindow.isZero()) {
+            throw new IllegalArgumentException("Admission budgets must be positive");
+        }
+        this.memoryBudgetBytes = memoryBudgetBytes;
+        this.processors = processors;
+        this.cpuBudgetMicros = processors * TimeUnit.NANOSECONDS.toMicros(cpuWindow.toNanos());
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.maxWaitNanos = Math.max(0, maxWait.toNanos());
+    }
+
+    /**
+     * Cost of a bulk request. A streamed response holds one file at a time, or one interchange
+     * when messages are packed; otherwise every file is held until the response is written.
+     */
+    public static Cost estimate(BulkGenerationRequest request, boolean streamed) {
+        long passengers = request.getMaxPassengers();
+        long passengerFlights = passengers * request.getMaxFlights();
+        long bytesPerFile = BYTES_PER_RESERVATION + BYTES_PER_PASSENGER * passengers
+                + BYTES_PER_PASSENGER_FLIGHT * passengerFlights;
+        long cpuPerFile = CPU_MICROS_PER_RESERVATION + CPU_MICROS_PER_PASSENGER * passengers
+                + CPU_MICROS_PER_PASSENGER_FLIGHT * passengerFlights;
+        long files = request.getFileCount();
+        long bytes;
+        if (!streamed) {
+            bytes = IN_MEMORY_FACTOR * files * bytesPerFile;
+        } else if (request.getMaxInterchangeSize() > 0) {
+            bytes = STREAMED_BYTES + 2L * request.getMaxInterchangeSize();
+        } else if (request.getMessagesPerInterchange() > 0) {
+            bytes = STREAMED_BYTES + 2L * Math.min(files, request.getMessagesPerInterchange()) * bytesPerFile;
+        } else {
+            bytes = STREAMED_BYTES + bytesPerFile;
+        }
+        return new Cost(bytes, files * cpuPerFile);
+    }
+
+    /**
+     * Cost of a flight manifest. In memory, the manifest is rendered once and copied into an
+     * interchange for each receiver; streamed, only one PNR is held at a time.
+     */
+    public static Cost estimate(ManifestOptions options, int receivers, boolean streamed) {
+        long pnrs = options.getPnrCount();
+        long bytes = streamed
+                ? STREAMED_BYTES
+                : (IN_MEMORY_FACTOR + Math.max(1, receivers)) * pnrs * BYTES_PER_MANIFEST_PNR;
+        return new Cost(bytes, pnrs * CPU_MICROS_PER_MANIFEST_PNR);
+    }
+
+    /** Whether the request could ever be admitted; one that needs more than the whole heap budget cannot. */
+    public boolean fits(Cost cost) {
+        return cost.bytes() <= memoryBudgetBytes;
+    }
+
+    /**
+     * Admits the request, waiting up to the maximum wait for budget to be released.
+     *
+     * @return the permit to close when the work is done, or {@code null} if the request was turned
+     *         away; {@link #retryAfterSeconds()} then says when to try again
+     */
+    public Permit tryAcquire(Cost cost) {
+        try {
+            return acquire(cost, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /** Admits the request, waiting as long as it takes; for background work that has nobody to answer. */
+    public Permit acquire(Cost cost) throws InterruptedException {
+        return acquire(cost, false);
+    }
+
+    /** Seconds until the work admitted and waiting is expected to be done, between 1 and 60. */
+    public long retryAfterSeconds() {
+        lock.lock();
+        try {
+            long micros = (cpuMicrosInFlight + cpuMicrosWaiting) / processors;
+            return Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, TimeUnit.MICROSECONDS.toSeconds(micros) + 1));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Permit acquire(Cost cost, boolean bounded) throws InterruptedException {
+        if (!fits(cost)) {
+            throw new IllegalArgumentException("Request needs " + cost.bytes() + " bytes, more than the budget of "
+                    + memoryBudgetBytes);
+        }
+        long bytes = cost.bytes();
+        long cpuMicros = Math.min(cost.cpuMicros(), cpuBudgetMicros);
+        lock.lockInterruptibly();
+        try {
+            if (waiting.isEmpty() && available(bytes, cpuMicros)) {
+                return admit(bytes, cpuMicros);
+            }
+            if (bounded && waiting.size() >= queueCapacity) {
+                return null;
+            }
+            Waiter waiter = new Waiter();
+            waiting.addLast(waiter);
+            cpuMicrosWaiting += cpuMicros;
+            try {
+                long remaining = maxWaitNanos;
+                while (waiting.peekFirst() != waiter || !available(bytes, cpuMicros)) {
+                    if (!bounded) {
+                        released.await();
+                    } else if (remaining <= 0) {
+                        return null;
+                    } else {
+                        remaining = released.awaitNanos(remaining);
+                    }
+                }
+                return admit(bytes, cpuMicros);
+            } finally {
+                waiting.remove(waiter);
+                cpuMicrosWaiting -= cpuMicros;
+                // The next in line may fit now
+                released.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean available(long bytes, long cpuMicros) {
+        return bytesInFlight + bytes <= memoryBudgetBytes && cpuMicrosInFlight + cpuMicros <= cpuBudgetMicros;
+    }
+
+    private Permit admit(long bytes, long cpuMicros) {
+        bytesInFlight += bytes;
+        cpuMicrosInFlight += cpuMicros;
+        return new Permit(bytes, cpuMicros);
+    }
+
+    private void release(long bytes, long cpuMicros) {
+        lock.lock();
+        try {
+            bytesInFlight -= bytes;
+            cpuMicrosInFlight -= cpuMicros;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** A place in line; compared by identity. */
+    private static final class Waiter { }
+
+    /** Budget held by an admitted request; closing it more than once has no further effect. */
+    public final class Permit implements AutoCloseable {
+
+        private final long bytes;
+        private final long cpuMicros;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(long bytes, long cpuMicros) {
+            this.bytes = bytes;
+            this.cpuMicros = cpuMicros;
+        }
+
+        /** The body, releasing this permit once it has been written or has failed. */
+        public StreamingResponseBody releaseAfter(StreamingResponseBody body) {
+            return out -> {
+                try {
+                    body.writeTo(out);
+                } finally {
+                    close();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                release(bytes, cpuMicros);
+            }
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.pnrgov.api.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pnrgov.api.dto.BulkGenerationRequest;
+import com.pnrgov.api.dto.FileOptions;
+import com.pnrgov.api.dto.GeneratedFile;
+import com.pnrgov.api.dto.ManifestRequest;
+import com.pnrgov.core.edifact.EdifactWriter;
+import com.pnrgov.core.models.Reservation;
+import com.pnrgov.core.services.EdifactGenerator;
+import com.pnrgov.core.services.GenerationContext;
+import com.pnrgov.core.services.InterchangePacker;
+import com.pnrgov.core.services.ManifestOptions;
+import com.pnrgov.core.services.ReservationSpec;
+import com.pnrgov.core.services.SampleDataGenerator;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates the files of a {@link BulkGenerationRequest}, one at a time, for the bulk endpoints
+ * and for bulk jobs.
+ */
+@Service
+public class BulkFileGenerator {
+
+    /** ZIP entry listing every file with its counts and options, one JSON object per line. */
+    public static final String MANIFEST_ENTRY = "manifest.jsonl";
+
+    /**
+     * Largest manifest, in PNRs: hundreds of times a wide-body flight. Streamed manifests cost
+     * next to no heap, so this is what bounds their running time.
+     */
+    public static final int MAX_MANIFEST_PNRS = 1_000_000;
+
+    private final SampleDataGenerator sampleGenerator;
+    private final EdifactGenerator edifactGenerator;
+    private final ObjectMapper objectMapper;
+
+    public BulkFileGenerator(SampleDataGenerator sampleGenerator, EdifactGenerator edifactGenerator,
+                             ObjectMapper objectMapper) {
+        this.sampleGenerator = sampleGenerator;
+        this.edifactGenerator = edifactGenerator;
+        this.objectMapper = objectMapper;
+    }
+
+    /** The reason the request cannot be generated, or {@code null}. */
+    public static String validate(BulkGenerationRequest request, int maxFiles) {
+        if (request.getFileCount() < 1 || request.getFileCount() > maxFiles) {
+            return "File count must be between 1 and " + maxFiles;
+        }
+        if (request.getMinPassengers() < 1 || request.getMaxPassengers() > 20) {
+            return "Passenger range must be between 1 and 20";
+        }
+        if (request.getMinFlights() < 1 || request.getMaxFlights() > 10) {
+            return "Flight range must be between 1 and 10";
+        }
+        if (request.getMinPassengers() > request.getMaxPassengers()) {
+            return "MinPassengers cannot be greater than MaxPassengers";
+        }
+        if (request.getMinFlights() > request.getMaxFlights()) {
+            return "MinFlights cannot be greater than MaxFlights";
+        }
+        if (request.getMessagesPerInterchange() < 0 || request.getMaxInterchangeSize() < 0) {
+            return "Interchange limits cannot be negative";
+        }
+        return null;
+    }
+
+    /** The reason the manifest request cannot be generated, or {@code null}. */
+    public static String validate(ManifestRequest request) {
+        if (request.getPassengerCount() > MAX_MANIFEST_PNRS) {
+            return "Passenger count must not be greater than " + MAX_MANIFEST_PNRS;
+        }
+        return null;
+    }
+
+    /** Manifest options of a request, with the default PNR count and receiver filled in. */
+    public static ManifestOptions manifestOptions(ManifestRequest request) {
+        return ManifestOptions.builder()
+                .pnrCount(request.getPassengerCount() > 0 ? request.getPassengerCount() : 5)
+                .airline(request.getAirline())
+                .flightNumber(request.getFlightNumber())
+                .receiver(request.getReceiver() != null ? request.getReceiver() : "USCBP")
+                .maxPnrsPerMessage(request.getMaxPnrsPerMessage())
+                .maxMessageSize(request.getMaxMessageSize())
+                .seed(request.getSeed())
+                .referenceTime(request.getReferenceTime())
+                .build();
+    }
+
+    /** Generates the requested files in order, handing each to {@code sink} as soon as it is rendered. */
+    public void generateFiles(BulkGenerationRequest request, GenerationContext context, Consumer<GeneratedFile> sink) {
+        if (isPacked(request)) {
+            // Bulk mode: many messages per UNB/UNZ envelope
+            int[] emitted = {0};
+            InterchangePacker packer = new InterchangePacker(edifactGenerator, context,
+                    request.getSender(), request.getReceiver(),
+                    request.getMessagesPerInterchange(), request.getMaxInterchangeSize(),
+                    packed -> sink.accept(GeneratedFile.builder()
+                            .fileName(String.format("PNRGOV_%04d_%s.edi", ++emitted[0], packed.interchangeRef()))
+                            .content(packed.content())
+                            .passengerCount(packed.passengerCount())
+                            .flightCount(packed.flightCount())
+                            .messageCount(packed.messageCount())
+                            .build()));
+            sampleGenerator.generateReservations(bulkSpec(request), request.getFileCount(), context)
+                    .forEach(packer::add);
+            packer.finish();
+        } else {
+            for (int i = 0; i < request.getFileCount(); i++) {
+                BulkItem item = generateItem(request, context);
+                Reservation reservation = item.reservation();
+                String edifact = edifactGenerator.generatePnrGov(reservation, request.getReceiver(), context);
+
+                sink.accept(GeneratedFile.builder()
+                        .fileName(reservation.getRecordLocator() + ".edi")
+                        .recordLocator(reservation.getRecordLocator())
+                        .content(edifact)
+                        .passengerCount(item.passengerCount())
+                        .flightCount(item.flightCount())
+                        .messageCount(1)
+                        .options(item.options())
+                        .build());
+            }
+        }
+    }
+
+    /**
+     * Writes the requested files to {@code out} as a ZIP archive, each rendered straight into its
+     * entry, followed by {@link #MANIFEST_ENTRY}. Memory use does not grow with the file count.
+     */
+    public void writeArchive(BulkGenerationRequest request, GenerationContext context, OutputStream out)
+            throws IOException {
+        // Manifest lines are spooled to disk until the last .edi entry is written
+        Path manifest = Files.createTempFile("pnrgov-bulk-", ".jsonl");
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+             Writer entry = new BufferedWriter(new OutputStreamWriter(zip, EdifactWriter.CHARSET));
+             Writer manifestLines = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+            if (isPacked(request)) {
+                int[] written = {0};
+                InterchangePacker packer = new InterchangePacker(edifactGenerator, context,
+                        request.getSender(), request.getReceiver(),
+                        request.getMessagesPerInterchange(), request.getMaxInterchangeSize(),
+                        packed -> {
+                            GeneratedFile file = GeneratedFile.builder()
+                                    .fileName(String.format("PNRGOV_%04d_%s.edi", ++written[0], packed.interchangeRef()))
+                                    .passengerCount(packed.passengerCount())
+                                    .flightCount(packed.flightCount())
+                                    .messageCount(packed.messageCount())
+                                    .build();
+                            try {
+                                zip.putNextEntry(new ZipEntry(file.getFileName()));
+                                entry.write(packed.content());
+                                entry.flush();
+                                zip.closeEntry();
+                                writeManifestLine(manifestLines, file);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        });
+                sampleGenerator.generateReservations(bulkSpec(request), request.getFileCount(), context)
+                        .forEach(packer::add);
+                packer.finish();
+            } else {
+                for (int i = 0; i < request.getFileCount(); i++) {
+                    BulkItem item = generateItem(request, context);
+                    Reservation reservation = item.reservation();
+                    // Seeded locators may repeat, and entry names must not
+                    GeneratedFile file = GeneratedFile.builder()
+                            .fileName(String.format("PNRGOV_%04d_%s.edi", i + 1, reservation.getRecordLocator()))
+                            .recordLocator(reservation.getRecordLocator())
+                            .passengerCount(item.passengerCount())
+                            .flightCount(item.flightCount())
+                            .messageCount(1)
+                            .options(item.options())
+                            .build();
+                    zip.putNextEntry(new ZipEntry(file.getFileName()));
+                    edifactGenerator.writePnrGov(reservation, request.getReceiver(), entry, context);
+                    entry.flush();
+                    zip.closeEntry();
+                    writeManifestLine(manifestLines, file);
+                }
+            }
+
+            manifestLines.flush();
+            zip.putNextEntry(new ZipEntry(MANIFEST_ENTRY));
+            Files.copy(manifest, zip);
+            zip.closeEntry();
+        } finally {
+            Files.deleteIfExists(manifest);
+        }
+    }
+
+    /** Appends the file as one line of JSON; content is left out by the caller. */
+    public void writeManifestLine(Writer manifestLines, GeneratedFile file) throws IOException {
+        manifestLines.write(objectMapper.writeValueAsString(file));
+        manifestLines.write('\n');
+    }
+
+    /** A random reservation together with the options it was generated with. */
+    private record BulkItem(Reservation reservation, int passengerCount, int flightCount, FileOptions options) { }
+
+    private static boolean isPacked(BulkGenerationRequest request) {
+        return request.getMessagesPerInterchange() > 0 || request.getMaxInterchangeSize() > 0;
+    }
+
+    /** Counts from the requested ranges, features mixed at random. */
+    private static ReservationSpec bulkSpec(BulkGenerationRequest request) {
+        return ReservationSpec.mixed(request.getMinPassengers(), request.getMaxPassengers(),
+                request.getMinFlights(), request.getMaxFlights());
+    }
+
+    private BulkItem generateItem(BulkGenerationRequest request, GenerationContext context) {
+        ReservationSpec drawn = bulkSpec(request).resolve(context.random());
+        Reservation reservation = sampleGenerator.generateReservation(drawn, context);
+
+        FileOptions options = FileOptions.builder()
+                .hasBags(drawn.getBagsProbability() > 0)
+                .hasSeats(drawn.getSeatsProbability() > 0)
+                .hasDocuments(drawn.getDocumentsProbability() > 0)
+                .hasPayment(drawn.getPaymentProbability() > 0)
+                .isCodeshare(drawn.getCodeshareProbability() > 0)
+                .isThruFlight(drawn.getThruFlightProbability() > 0)
+                .hasPhones(drawn.getPhoneNumbersProbability() > 0)
+                .hasAgency(drawn.getAgencyInfoProbability() > 0)
+                .hasCreditCard(drawn.getCreditCardProbability() > 0)
+                .build();
+        return new BulkItem(reservation, drawn.getMinPassengers(), drawn.getMinFlights(), options);
+    }
+}
@@ -0,0 +1,164 @@
+package com.pnrgov.api.services;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A generation job run by {@link BulkJobService}. Its files are spooled to {@link #getDirectory()}
+ * as they are generated; counters can be read from any thread while the job runs.
+ */
+public final class BulkJob {
+
+    public enum Kind { BULK, MANIFEST }
+
+    public enum State { QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED }
+
+    private final String id;
+    private final Kind kind;
+    private final Path directory;
+    private final long total;
+    private final LocalDateTime createdAt;
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicInteger fileCount = new AtomicInteger();
+    private final AtomicLong bytes = new AtomicLong();
+
+    private volatile State state = State.QUEUED;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    // Guarded by this: whether the job thread is inside the task, and whether the job was deleted
+    private boolean inTask;
+    private boolean deleted;
+
+    /**
+     * @param total reservations the job generates, the unit of {@link #getCompleted()}
+     */
+    BulkJob(String id, Kind kind, Path directory, long total, LocalDateTime createdAt) {
+        this.id = id;
+        this.kind = kind;
+        this.directory = directory;
+        this.total = total;
+        this.createdAt = createdAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /** Reservations generated so far. */
+    public long getCompleted() {
+        return completed.get();
+    }
+
+    /** Files spooled so far; each is complete on disk. */
+    public int getFileCount() {
+        return fileCount.get();
+    }
+
+    /** Bytes of EDIFACT spooled so far. */
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getStartedAt() {
+        return startedAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    /** Why the job failed, or {@code null}. */
+    public String getError() {
+        return error;
+    }
+
+    public boolean isFinished() {
+        State current = state;
+        return current == State.SUCCEEDED || current == State.FAILED || current == State.CANCELLED;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /** Moves a queued job to running; false when it was cancelled while queued. */
+    synchronized boolean start(LocalDateTime now) {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        startedAt = now;
+        return true;
+    }
+
+    synchronized void finish(State finalState, LocalDateTime now, String message) {
+        if (isFinished()) {
+            return;
+        }
+        state = finalState;
+        finishedAt = now;
+        error = message;
+    }
+
+    void fileSpooled(long fileBytes, int reservations) {
+        bytes.addAndGet(fileBytes);
+        completed.addAndGet(reservations);
+        fileCount.incrementAndGet();
+    }
+
+    /** Enters the job's task on the job thread; false once the job has been deleted. */
+    synchronized boolean enterTask() {
+        if (deleted) {
+            return false;
+        }
+        inTask = true;
+        return true;
+    }
+
+    /** Leaves the task; true when the job was deleted meanwhile, so its spool is the caller's to delete. */
+    synchronized boolean exitTask() {
+        inTask = false;
+        return deleted;
+    }
+
+    /** Marks the job deleted; true when no job thread is inside the task, so the spool can go now. */
+    synchronized boolean markDeleted() {
+        deleted = true;
+        return !inTask;
+    }
+
+    void cancel(LocalDateTime now) {
+        finish(State.CANCELLED, now, null);
+        Future<?> running = future;
+        if (running != null) {
+            running.cancel(true);
+        }
+    }
+}
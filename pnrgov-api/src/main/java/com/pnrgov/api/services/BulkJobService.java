@@ -0,0 +1,460 @@
+package com.pnrgov.api.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pnrgov.api.dto.BulkGenerationRequest;
+import com.pnrgov.api.dto.GeneratedFile;
+import com.pnrgov.api.dto.ManifestRequest;
+import com.pnrgov.core.edifact.EdifactWriter;
+import com.pnrgov.core.services.FlightManifestGenerator;
+import com.pnrgov.core.services.GenerationContext;
+import com.pnrgov.core.services.ManifestOptions;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Runs bulk and manifest generation as background jobs, so a large run holds neither a request
+ * thread nor a connection and survives the client going away.
+ * <p>
+ * Jobs run on a fixed number of threads behind a bounded queue. Each job spools its files to a
+ * directory of its own, with a {@code manifest.jsonl} line per file written once the file is
+ * complete, so finished files can be read while the job is still running. Finished jobs and
+ * their spools are deleted after the retention period.
+ * <p>
+ * A job takes its share of the {@link AdmissionController} budget before it starts and stays
+ * queued until the budget allows it, however long that takes.
+ */
+public class BulkJobService implements AutoCloseable {
+
+    /** Writes a job's files, handing each finished one to the sink. */
+    @FunctionalInterface
+    private interface JobTask {
+        void run(SpoolSink sink) throws IOException;
+    }
+
+    private interface SpoolSink {
+        /** @param reservations reservations the file completes, for progress */
+        void accept(GeneratedFile file, int reservations) throws IOException;
+
+        /** Opens the spool file of content streamed in place; {@link #spooled} records it once complete. */
+        Writer open(String fileName) throws IOException;
+
+        /** Records a file written through {@link #open}; its content is not read. */
+        void spooled(GeneratedFile file, int reservations) throws IOException;
+    }
+
+    private final BulkFileGenerator bulkFileGenerator;
+    private final FlightManifestGenerator flightManifestGenerator;
+    private final AdmissionController admissionController;
+    private final ObjectMapper objectMapper;
+    private final Clock clock;
+    private final Path spoolDirectory;
+    private final Duration retention;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService cleaner;
+    private final Map<String, BulkJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads       jobs that run at the same time
+     * @param queueCapacity jobs that may wait for a thread; further submissions are rejected
+     * @param retention     how long a finished job and its files are kept
+     */
+    public BulkJobService(BulkFileGenerator bulkFileGenerator, FlightManifestGenerator flightManifestGenerator,
+                          AdmissionController admissionController, ObjectMapper objectMapper, Clock clock,
+                          Path spoolDirectory, int threads, int queueCapacity, Duration retention) {
+        this.bulkFileGenerator = bulkFileGenerator;
+        this.flightManifestGenerator = flightManifestGenerator;
+        this.admissionController = admissionController;
+        this.objectMapper = objectMapper;
+        this.clock = clock;
+        this.spoolDirectory = spoolDirectory;
+        this.retention = retention;
+        try {
+            Files.createDirectories(spoolDirectory);
+            deleteOrphanedSpools();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot prepare job spool directory " + spoolDirectory, e);
+        }
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), daemonThreads("bulk-job-"));
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(daemonThreads("bulk-job-cleaner-"));
+        long period = Math.max(1, Math.min(retention.toMinutes(), 5));
+        cleaner.scheduleWithFixedDelay(this::deleteExpired, period, period, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Queues a bulk generation; the request must already be valid.
+     *
+     * @throws IllegalArgumentException   when the request can never fit the admission budget
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public BulkJob submit(BulkGenerationRequest request) {
+        GenerationContext context = GenerationContext.create(clock, request.getSeed(), request.getReferenceTime());
+        AdmissionController.Cost cost = AdmissionController.estimate(request, true);
+        return submit(BulkJob.Kind.BULK, request.getFileCount(), cost, sink -> {
+            int[] index = {0};
+            try {
+                bulkFileGenerator.generateFiles(request, context, file -> {
+                    // Seeded locators may repeat, and spool file names must not
+                    index[0]++;
+                    if (file.getRecordLocator() != null) {
+                        file.setFileName(String.format("PNRGOV_%04d_%s.edi", index[0], file.getRecordLocator()));
+                    }
+                    try {
+                        sink.accept(file, file.getMessageCount());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        });
+    }
+
+    /**
+     * Queues a flight manifest, one file per receiver.
+     *
+     * @throws IllegalArgumentException   when the manifest can never fit the admission budget
+     * @throws RejectedExecutionException when the queue is full
+     */
+    public BulkJob submit(ManifestRequest request) {
+        ManifestOptions options = BulkFileGenerator.manifestOptions(request);
+        Set<String> receivers = new LinkedHashSet<>();
+        receivers.add(options.getReceiver());
+        if (request.getReceivers() != null) {
+            receivers.addAll(request.getReceivers());
+        }
+        String baseName = "PNRGOV_Manifest_" + safeName(request.getAirline() != null ? request.getAirline() : "XX")
+                + safeName(request.getFlightNumber() != null ? request.getFlightNumber() : "0000");
+        // Each receiver's interchange is streamed straight into its spool file
+        AdmissionController.Cost cost = AdmissionController.estimate(options, receivers.size(), true);
+        return submit(BulkJob.Kind.MANIFEST, options.getPnrCount(), cost, sink -> {
+            Map<String, String> fileNames = new LinkedHashMap<>();
+            for (String receiver : receivers) {
+                String fileName = baseName + "_" + safeName(receiver) + ".edi";
+                // Receivers that differ only in unsafe characters must not share a file
+                for (int n = 2; fileNames.containsValue(fileName); n++) {
+                    fileName = baseName + "_" + safeName(receiver) + "_" + n + ".edi";
+                }
+                fileNames.put(receiver, fileName);
+            }
+            Map<String, Writer> outputs = new LinkedHashMap<>();
+            try {
+                for (Map.Entry<String, String> fileName : fileNames.entrySet()) {
+                    outputs.put(fileName.getKey(), sink.open(fileName.getValue()));
+                }
+                if (outputs.size() == 1) {
+                    flightManifestGenerator.writeFlightManifest(options, outputs.values().iterator().next());
+                } else {
+                    flightManifestGenerator.writeFlightManifestForReceivers(options, outputs);
+                }
+            } finally {
+                closeAll(outputs.values());
+            }
+            boolean first = true;
+            for (String fileName : fileNames.values()) {
+                sink.spooled(GeneratedFile.builder()
+                        .fileName(fileName)
+                        .passengerCount(options.getPnrCount())
+                        .messageCount(1)
+                        .build(), first ? options.getPnrCount() : 0);
+                first = false;
+            }
+        });
+    }
+
+    private static void closeAll(Collection<Writer> writers) throws IOException {
+        IOException failure = null;
+        for (Writer writer : writers) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private BulkJob submit(BulkJob.Kind kind, long total, AdmissionController.Cost cost, JobTask task) {
+        if (!admissionController.fits(cost)) {
+            throw new IllegalArgumentException("Job needs more memory than the admission budget allows");
+        }
+        String id = UUID.randomUUID().toString();
+        Path directory = spoolDirectory.resolve(id);
+        try {
+            Files.createDirectory(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create job spool " + directory, e);
+        }
+        BulkJob job = new BulkJob(id, kind, directory, total, LocalDateTime.now(clock));
+        jobs.put(id, job);
+        try {
+            job.setFuture(executor.submit(() -> runTask(job, cost, task)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(id);
+            deleteSpool(directory);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Runs the job unless it was deleted while queued. A job deleted while it runs leaves its spool
+     * to this thread, which deletes it once no file is open any more.
+     */
+    private void runTask(BulkJob job, AdmissionController.Cost cost, JobTask task) {
+        if (!job.enterTask()) {
+            return;
+        }
+        try {
+            run(job, cost, task);
+        } finally {
+            if (job.exitTask()) {
+                deleteSpool(job.getDirectory());
+            }
+        }
+    }
+
+    private void run(BulkJob job, AdmissionController.Cost cost, JobTask task) {
+        AdmissionController.Permit permit;
+        try {
+            permit = admissionController.acquire(cost);
+        } catch (InterruptedException e) {
+            job.finish(BulkJob.State.CANCELLED, LocalDateTime.now(clock), null);
+            return;
+        }
+        if (!job.start(LocalDateTime.now(clock))) {
+            permit.close();
+            return;
+        }
+        Path manifest = job.getDirectory().resolve(BulkFileGenerator.MANIFEST_ENTRY);
+        try (permit; Writer manifestLines = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+            task.run(new JobSpool(job, manifestLines));
+            job.finish(BulkJob.State.SUCCEEDED, LocalDateTime.now(clock), null);
+        } catch (CancellationException e) {
+            job.finish(BulkJob.State.CANCELLED, LocalDateTime.now(clock), null);
+        } catch (Exception e) {
+            job.finish(Thread.currentThread().isInterrupted() ? BulkJob.State.CANCELLED : BulkJob.State.FAILED,
+                    LocalDateTime.now(clock), e.getMessage());
+        }
+    }
+
+    /** Writes each file, then its manifest line; only then does it count as spooled. */
+    private final class JobSpool implements SpoolSink {
+
+        private final BulkJob job;
+        private final Writer manifestLines;
+
+        JobSpool(BulkJob job, Writer manifestLines) {
+            this.job = job;
+            this.manifestLines = manifestLines;
+        }
+
+        @Override
+        public void accept(GeneratedFile file, int reservations) throws IOException {
+            checkCancelled();
+            byte[] content = file.getContent().getBytes(EdifactWriter.CHARSET);
+            Files.write(job.getDirectory().resolve(file.getFileName()), content);
+            file.setContent(null);
+            record(file, content.length, reservations);
+        }
+
+        @Override
+        public Writer open(String fileName) throws IOException {
+            checkCancelled();
+            return Files.newBufferedWriter(job.getDirectory().resolve(fileName), EdifactWriter.CHARSET);
+        }
+
+        @Override
+        public void spooled(GeneratedFile file, int reservations) throws IOException {
+            checkCancelled();
+            record(file, Files.size(job.getDirectory().resolve(file.getFileName())), reservations);
+        }
+
+        private void checkCancelled() {
+            if (Thread.currentThread().isInterrupted() || job.isFinished()) {
+                throw new CancellationException();
+            }
+        }
+
+        private void record(GeneratedFile file, long bytes, int reservations) throws IOException {
+            bulkFileGenerator.writeManifestLine(manifestLines, file);
+            manifestLines.flush();
+            job.fileSpooled(bytes, reservations);
+        }
+    }
+
+    public Optional<BulkJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /** Every retained job, oldest first. */
+    public List<BulkJob> list() {
+        List<BulkJob> all = new ArrayList<>(jobs.values());
+        all.sort(Comparator.comparing(BulkJob::getCreatedAt));
+        return all;
+    }
+
+    /**
+     * A page of the files spooled so far, with their content, in the order they were generated.
+     */
+    public List<GeneratedFile> files(BulkJob job, int page, int size) throws IOException {
+        long from = (long) page * size;
+        int spooled = job.getFileCount();
+        List<GeneratedFile> files = new ArrayList<>();
+        if (from >= spooled) {
+            return files;
+        }
+        Path manifest = job.getDirectory().resolve(BulkFileGenerator.MANIFEST_ENTRY);
+        try (BufferedReader lines = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            // Lines past the spooled count may still be in flight
+            long end = Math.min(from + size, spooled);
+            for (long line = 0; line < end; line++) {
+                String json = lines.readLine();
+                if (json == null) {
+                    break;
+                }
+                if (line >= from) {
+                    GeneratedFile file = objectMapper.readValue(json, GeneratedFile.class);
+                    file.setContent(Files.readString(job.getDirectory().resolve(file.getFileName()), EdifactWriter.CHARSET));
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /** Writes the job's files and {@code manifest.jsonl} to {@code out} as a ZIP archive. */
+    public void writeArchive(BulkJob job, OutputStream out) throws IOException {
+        Path manifest = job.getDirectory().resolve(BulkFileGenerator.MANIFEST_ENTRY);
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(out, 64 * 1024));
+             BufferedReader lines = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+            for (String json = lines.readLine(); json != null; json = lines.readLine()) {
+                String fileName = objectMapper.readValue(json, GeneratedFile.class).getFileName();
+                zip.putNextEntry(new ZipEntry(fileName));
+                Files.copy(job.getDirectory().resolve(fileName), zip);
+                zip.closeEntry();
+            }
+            zip.putNextEntry(new ZipEntry(BulkFileGenerator.MANIFEST_ENTRY));
+            Files.copy(manifest, zip);
+            zip.closeEntry();
+        }
+    }
+
+    /** When a finished job will be deleted, or {@code null} while it runs. */
+    public LocalDateTime expiresAt(BulkJob job) {
+        LocalDateTime finishedAt = job.getFinishedAt();
+        return finishedAt != null ? finishedAt.plus(retention) : null;
+    }
+
+    /**
+     * Cancels the job if it has not finished and deletes it with its files. The files of a running
+     * job are deleted by its thread once it has stopped writing.
+     */
+    public boolean delete(String id) {
+        BulkJob job = jobs.remove(id);
+        if (job == null) {
+            return false;
+        }
+        boolean idle = job.markDeleted();
+        job.cancel(LocalDateTime.now(clock));
+        if (idle) {
+            deleteSpool(job.getDirectory());
+        }
+        return true;
+    }
+
+    private void deleteExpired() {
+        LocalDateTime cutoff = LocalDateTime.now(clock).minus(retention);
+        for (BulkJob job : jobs.values()) {
+            LocalDateTime finishedAt = job.getFinishedAt();
+            if (finishedAt != null && finishedAt.isBefore(cutoff)) {
+                delete(job.getId());
+            }
+        }
+    }
+
+    /** Jobs live in memory only, so spools left by an earlier run belong to no job. */
+    private void deleteOrphanedSpools() throws IOException {
+        try (Stream<Path> children = Files.list(spoolDirectory)) {
+            children.filter(child -> Files.isDirectory(child) && isJobId(child.getFileName().toString()))
+                    .forEach(BulkJobService::deleteSpool);
+        }
+    }
+
+    /** Request values used in file names keep letters and digits only. */
+    private static String safeName(String value) {
+        return value.replaceAll("[^A-Za-z0-9]", "_");
+    }
+
+    private static boolean isJobId(String name) {
+        try {
+            return UUID.fromString(name).toString().equals(name);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static void deleteSpool(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // Left for the next restart to remove
+        }
+    }
+
+    @Override
+    public void close() {
+        cleaner.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package com.pnrgov.api.services;
+
+import com.pnrgov.api.services.AdmissionController.Cost;
+import com.pnrgov.api.services.AdmissionController.Permit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdmissionControllerTest {
+
+    private static final long MB = 1 << 20;
+    /** Ten seconds of CPU; a waiter this large moves {@link AdmissionController#retryAfterSeconds} to 11. */
+    private static final long QUEUE_MARKER_MICROS = 10_000_000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void turnsAwayARequestThatDoesNotFitInTimeAndAdmitsItOnceThePermitIsReleased() {
+        AdmissionController admission = controller(1, Duration.ofMillis(100));
+        Permit first = admission.tryAcquire(new Cost(6 * MB, 1));
+        assertNotNull(first);
+
+        assertNull(admission.tryAcquire(new Cost(6 * MB, 1)));
+
+        first.close();
+        first.close();
+        Permit second = admission.tryAcquire(new Cost(6 * MB, 1));
+        assertNotNull(second);
+        // Closing the first permit twice released its budget only once
+        assertNull(admission.tryAcquire(new Cost(6 * MB, 1)));
+        second.close();
+    }
+
+    @Test
+    void queuedRequestIsAdmittedWhenBudgetIsReleased() throws Exception {
+        AdmissionController admission = controller(1, Duration.ofSeconds(30));
+        Permit holder = admission.tryAcquire(new Cost(9 * MB, 1));
+
+        Future<Permit> queued = executor.submit(() -> admission.tryAcquire(new Cost(5 * MB, QUEUE_MARKER_MICROS)));
+        awaitQueued(admission);
+        assertFalse(queued.isDone());
+
+        holder.close();
+        Permit admitted = queued.get(5, TimeUnit.SECONDS);
+        assertNotNull(admitted);
+        admitted.close();
+    }
+
+    @Test
+    void turnsAwayAtOnceWhenTheQueueIsFull() throws Exception {
+        AdmissionController admission = controller(1, Duration.ofSeconds(30));
+        Permit holder = admission.tryAcquire(new Cost(9 * MB, 1));
+        Future<Permit> queued = executor.submit(() -> admission.tryAcquire(new Cost(8 * MB, QUEUE_MARKER_MICROS)));
+        awaitQueued(admission);
+
+        Permit rejected = assertTimeout(Duration.ofSeconds(5), () -> admission.tryAcquire(new Cost(MB, 1)));
+        assertNull(rejected);
+        assertEquals(11, admission.retryAfterSeconds());
+
+        holder.close();
+        Permit admitted = queued.get(5, TimeUnit.SECONDS);
+        assertNotNull(admitted);
+        admitted.close();
+        assertEquals(1, admission.retryAfterSeconds());
+    }
+
+    @Test
+    void waitsBehindTheFirstInLineEvenWhenItWouldFit() throws Exception {
+        AdmissionController admission = controller(2, Duration.ofSeconds(30));
+        Permit holder = admission.tryAcquire(new Cost(6 * MB, 1));
+        Future<Permit> large = executor.submit(() -> admission.tryAcquire(new Cost(8 * MB, QUEUE_MARKER_MICROS)));
+        awaitQueued(admission);
+        Future<Permit> small = executor.submit(() -> admission.tryAcquire(new Cost(MB, 1)));
+
+        assertThrows(TimeoutException.class, () -> small.get(200, TimeUnit.MILLISECONDS));
+
+        holder.close();
+        Permit first = large.get(5, TimeUnit.SECONDS);
+        Permit second = small.get(5, TimeUnit.SECONDS);
+        assertNotNull(first);
+        assertNotNull(second);
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void rejectsARequestLargerThanTheWholeBudget() {
+        AdmissionController admission = controller(1, Duration.ofMillis(100));
+        Cost tooLarge = new Cost(11 * MB, 1);
+        assertFalse(admission.fits(tooLarge));
+        assertThrows(IllegalArgumentException.class, () -> admission.tryAcquire(tooLarge));
+        assertThrows(IllegalArgumentException.class, () -> admission.acquire(tooLarge));
+    }
+
+    @Test
+    void runsARequestOverTheCpuBudgetAlone() {
+        AdmissionController admission = controller(1, Duration.ofMillis(100));
+        Permit large = admission.tryAcquire(new Cost(1, 1_000_000_000L));
+        assertNotNull(large);
+        assertNull(admission.tryAcquire(new Cost(1, 1)));
+        large.close();
+        assertNotNull(admission.tryAcquire(new Cost(1, 1)));
+    }
+
+    @Test
+    void releasesThePermitAfterTheBodyFails() {
+        AdmissionController admission = controller(1, Duration.ofMillis(100));
+        Permit permit = admission.tryAcquire(new Cost(9 * MB, 1));
+        assertThrows(IOException.class, () -> permit.releaseAfter(out -> {
+            throw new IOException("client went away");
+        }).writeTo(new ByteArrayOutputStream()));
+
+        Permit next = admission.tryAcquire(new Cost(9 * MB, 1));
+        assertNotNull(next);
+        next.close();
+    }
+
+    /** 10 MB of heap and 60 s of CPU on one processor. */
+    private static AdmissionController controller(int queueCapacity, Duration maxWait) {
+        return new AdmissionController(10 * MB, 1, Duration.ofSeconds(60), queueCapacity, maxWait);
+    }
+
+    /** Waits until a request costing {@link #QUEUE_MARKER_MICROS} is in line. */
+    private static void awaitQueued(AdmissionController admission) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.retryAfterSeconds() < 11) {
+            assertTrue(System.nanoTime() < deadline, "request not queued");
+            Thread.sleep(5);
+        }
+    }
+}
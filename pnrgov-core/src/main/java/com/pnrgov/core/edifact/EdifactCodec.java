@@ -0,0 +1,190 @@
+package com.pnrgov.core.edifact;
+
+import java.text.Normalizer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Encodes EDIFACT field values straight into a char buffer without allocating.
+ * Every {@code put*} method writes at {@code pos} and returns the position after the value;
+ * callers are responsible for making sure the buffer has room (see the {@code *_LENGTH} constants).
+ * <p>
+ * Output is printable ASCII only, the repertoire of the IATA syntax declared in UNB. Latin
+ * letters with diacritics are transliterated ({@code Ä} to {@code A}, {@code ß} to {@code ss}),
+ * control characters become spaces and anything else becomes a released {@code ?}. One char of
+ * output is therefore one byte in any ASCII-compatible charset, which the message and interchange
+ * size limits rely on.
+ */
+public final class EdifactCodec {
+
+    /** ddMMyy */
+    public static final int DATE_LENGTH = 6;
+    /** HHmm */
+    public static final int TIME_LENGTH = 4;
+    /** ddMMMyy */
+    public static final int DATE_WITH_MONTH_NAME_LENGTH = 7;
+    /** Longest int rendering, "-2147483648". */
+    public static final int MAX_INT_LENGTH = 11;
+
+    private static final char[][] MONTHS = {
+            "JAN".toCharArray(), "FEB".toCharArray(), "MAR".toCharArray(), "APR".toCharArray(),
+            "MAY".toCharArray(), "JUN".toCharArray(), "JUL".toCharArray(), "AUG".toCharArray(),
+            "SEP".toCharArray(), "OCT".toCharArray(), "NOV".toCharArray(), "DEC".toCharArray()
+    };
+
+    /** ASCII renderings of U+00A0 to U+017F, at most two chars each; {@code null} where there is none. */
+    private static final char[][] LATIN = new char[0x180 - 0xA0][];
+
+    private static final char[] SPACE = {' '};
+
+    static {
+        String[] special = {
+                "\u00C6AE", "\u00E6ae", "\u00D0D", "\u00F0d", "\u00D8O", "\u00F8o", "\u00DETH", "\u00FEth",
+                "\u00DFss", "\u0110D", "\u0111d", "\u0126H", "\u0127h", "\u0131i", "\u0132IJ", "\u0133ij",
+                "\u0138q", "\u013FL", "\u0140l", "\u0141L", "\u0142l", "\u0149n", "\u014AN", "\u014Bn",
+                "\u0152OE", "\u0153oe", "\u0166T", "\u0167t"
+        };
+        for (String entry : special) {
+            LATIN[entry.charAt(0) - 0xA0] = entry.substring(1).toCharArray();
+        }
+        for (char c = 0xA0; c < 0x180; c++) {
+            if (LATIN[c - 0xA0] != null) {
+                continue;
+            }
+            // Compatibility decomposition splits off diacritics and expands forms such as NBSP;
+            // a decomposition with anything but letters, digits, spaces and marks has no rendering
+            StringBuilder ascii = new StringBuilder(2);
+            boolean mapped = true;
+            for (char d : Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFKD).toCharArray()) {
+                if (d == ' ' || (d >= 'A' && d <= 'Z') || (d >= 'a' && d <= 'z') || (d >= '0' && d <= '9')) {
+                    ascii.append(d);
+                } else if (Character.getType(d) != Character.NON_SPACING_MARK) {
+                    mapped = false;
+                }
+            }
+            if (mapped && ascii.length() > 0 && ascii.length() <= 2) {
+                LATIN[c - 0xA0] = ascii.toString().toCharArray();
+            }
+        }
+    }
+
+    private EdifactCodec() {
+    }
+
+    /** ddMMyy */
+    public static int putDate(char[] buf, int pos, LocalDate date) {
+        pos = putTwoDigits(buf, pos, date.getDayOfMonth());
+        pos = putTwoDigits(buf, pos, date.getMonthValue());
+        return putTwoDigits(buf, pos, Math.floorMod(date.getYear(), 100));
+    }
+
+    /** HHmm */
+    public static int putTime(char[] buf, int pos, LocalDateTime dateTime) {
+        pos = putTwoDigits(buf, pos, dateTime.getHour());
+        return putTwoDigits(buf, pos, dateTime.getMinute());
+    }
+
+    /** ddMMMyy with an upper-case English month abbreviation, e.g. 17OCT68. */
+    public static int putDateWithMonthName(char[] buf, int pos, LocalDate date) {
+        pos = putTwoDigits(buf, pos, date.getDayOfMonth());
+        char[] month = MONTHS[date.getMonthValue() - 1];
+        buf[pos++] = month[0];
+        buf[pos++] = month[1];
+        buf[pos++] = month[2];
+        return putTwoDigits(buf, pos, Math.floorMod(date.getYear(), 100));
+    }
+
+    public static int putInt(char[] buf, int pos, int value) {
+        if (value < 0) {
+            buf[pos++] = '-';
+            // Work in negative space so Integer.MIN_VALUE does not overflow
+        } else {
+            value = -value;
+        }
+        int digits = 1;
+        for (int v = value; v <= -10; v /= 10) {
+            digits++;
+        }
+        int end = pos + digits;
+        for (int i = end - 1; i >= pos; i--) {
+            buf[i] = (char) ('0' - value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+
+    /** Writes a non-negative value left-padded with zeros to at least {@code width} digits. */
+    public static int putPaddedInt(char[] buf, int pos, int value, int width) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        for (int i = digits; i < width; i++) {
+            buf[pos++] = '0';
+        }
+        return putInt(buf, pos, value);
+    }
+
+    private static int putTwoDigits(char[] buf, int pos, int value) {
+        buf[pos++] = (char) ('0' + value / 10);
+        buf[pos++] = (char) ('0' + value % 10);
+        return pos;
+    }
+
+    /** True for the characters declared as separators, terminator or release character in the UNA. */
+    public static boolean isSpecial(char c) {
+        return c == EdifactWriter.DATA_ELEMENT_SEPARATOR
+                || c == EdifactWriter.COMPONENT_SEPARATOR
+                || c == EdifactWriter.SEGMENT_TERMINATOR
+                || c == EdifactWriter.RELEASE_CHARACTER;
+    }
+
+    /**
+     * Fast-path check: most values (codes, names, dates) contain nothing that needs releasing or
+     * transliterating.
+     */
+    public static boolean needsEscape(CharSequence value) {
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            if (isSpecial(c) || c < ' ' || c > '~') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Copies {@code value[from, to)} into the buffer, prefixing each special character with the
+     * release character, transliterating anything outside printable ASCII and optionally
+     * upper-casing. Needs up to {@code 2 * (to - from)} chars of room.
+     */
+    public static int putEscaped(char[] buf, int pos, String value, int from, int to, boolean upperCase) {
+        for (int i = from; i < to; i++) {
+            pos = putEscaped(buf, pos, value.charAt(i), upperCase);
+        }
+        return pos;
+    }
+
+    /** Writes one char as {@link #putEscaped(char[], int, String, int, int, boolean)} does; needs 2 chars of room. */
+    public static int putEscaped(char[] buf, int pos, char c, boolean upperCase) {
+        if (isSpecial(c)) {
+            buf[pos++] = EdifactWriter.RELEASE_CHARACTER;
+            buf[pos++] = c;
+            return pos;
+        }
+        if (c >= ' ' && c <= '~') {
+            buf[pos++] = upperCase ? Character.toUpperCase(c) : c;
+            return pos;
+        }
+        char[] ascii = c < ' ' || c == 0x7F ? SPACE : c >= 0xA0 && c < 0x180 ? LATIN[c - 0xA0] : null;
+        if (ascii == null) {
+            buf[pos++] = EdifactWriter.RELEASE_CHARACTER;
+            buf[pos++] = '?';
+            return pos;
+        }
+        for (char a : ascii) {
+            buf[pos++] = upperCase ? Character.toUpperCase(a) : a;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,321 @@
+package com.pnrgov.core.edifact;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Streams EDIFACT segments straight to an {@link Appendable} sink (StringBuilder, Writer, ...).
+ * Keeps a running count of message, group and interchange content so that the UNT/UNE/UNZ
+ * trailers can be written without re-scanning the output.
+ * <p>
+ * Values are encoded by {@link EdifactCodec} into an internal char buffer that is handed to the
+ * sink in blocks, so writing a field does not allocate. All text values are escaped with the
+ * release character; only separators and terminators are written verbatim. Output is printable
+ * ASCII, so it encodes to one byte per char in {@link #CHARSET}.
+ */
+public class EdifactWriter implements Flushable {
+
+    public static final char SEGMENT_TERMINATOR = '\'';
+    public static final char DATA_ELEMENT_SEPARATOR = '+';
+    public static final char COMPONENT_SEPARATOR = ':';
+    public static final char RELEASE_CHARACTER = '?';
+
+    /** Charset of the output: the IATA syntax of UNB is a subset of ASCII. */
+    public static final Charset CHARSET = StandardCharsets.US_ASCII;
+
+    /** UNA service string advice matching the separators above. Not counted as a segment. */
+    public static final String SERVICE_STRING_ADVICE = "UNA:+.?*'";
+
+    private static final char LINE_BREAK = '\n';
+    private static final int BUFFER_SIZE = 8192;
+
+    private final Appendable out;
+    private final char[] buf;
+    private final CharBuffer bufView;
+    private int pos;
+
+    /** Segments written since the last UNH, including the UNH itself. */
+    private int messageSegmentCount;
+    /** Messages written since the last UNG. */
+    private int groupMessageCount;
+    /** Functional groups written since the last UNB. */
+    private int interchangeGroupCount;
+
+    public EdifactWriter(Appendable out) {
+        this(out, BUFFER_SIZE);
+    }
+
+    /** Smaller buffers suit short-lived writers that render a single fragment. */
+    EdifactWriter(Appendable out, int bufferSize) {
+        this.out = out;
+        this.buf = new char[Math.max(bufferSize, 2 * EdifactCodec.MAX_INT_LENGTH)];
+        this.bufView = CharBuffer.wrap(buf);
+    }
+
+    /**
+     * Creates a writer that encodes segments to the given stream with an explicit charset.
+     * Callers must {@link #flush()} once the interchange is complete.
+     */
+    public static EdifactWriter forStream(OutputStream stream, Charset charset) {
+        return new EdifactWriter(new BufferedWriter(new OutputStreamWriter(stream, charset)));
+    }
+
+    /** Starts a new segment with the given tag. UNH/UNG/UNB reset the relevant counters. */
+    public EdifactWriter segment(String tag) {
+        switch (tag) {
+            case "UNB" -> interchangeGroupCount = 0;
+            case "UNG" -> {
+                groupMessageCount = 0;
+                interchangeGroupCount++;
+            }
+            case "UNH" -> {
+                messageSegmentCount = 0;
+                groupMessageCount++;
+            }
+            default -> { }
+        }
+        return text(tag, false);
+    }
+
+    /** Starts a new data element and writes its first value. */
+    public EdifactWriter element(String value) {
+        return separator(DATA_ELEMENT_SEPARATOR).text(value, false);
+    }
+
+    public EdifactWriter element(int value) {
+        return separator(DATA_ELEMENT_SEPARATOR).append(value);
+    }
+
+    /** Starts a new, empty data element. */
+    public EdifactWriter element() {
+        return separator(DATA_ELEMENT_SEPARATOR);
+    }
+
+    /** Starts a new component within the current data element and writes its value. */
+    public EdifactWriter component(String value) {
+        return separator(COMPONENT_SEPARATOR).text(value, false);
+    }
+
+    public EdifactWriter component(int value) {
+        return separator(COMPONENT_SEPARATOR).append(value);
+    }
+
+    /** Writes an empty component. */
+    public EdifactWriter component() {
+        return separator(COMPONENT_SEPARATOR);
+    }
+
+    /** Appends escaped text to the current component without adding any separator. */
+    public EdifactWriter append(String value) {
+        return text(value, false);
+    }
+
+    /** Appends escaped, upper-cased text without allocating an upper-case copy. */
+    public EdifactWriter appendUpper(String value) {
+        return text(value, true);
+    }
+
+    public EdifactWriter append(char value) {
+        ensure(2);
+        pos = EdifactCodec.putEscaped(buf, pos, value, false);
+        return this;
+    }
+
+    public EdifactWriter append(int value) {
+        ensure(EdifactCodec.MAX_INT_LENGTH);
+        pos = EdifactCodec.putInt(buf, pos, value);
+        return this;
+    }
+
+    public EdifactWriter appendPadded(int value, int width) {
+        ensure(EdifactCodec.MAX_INT_LENGTH + width);
+        pos = EdifactCodec.putPaddedInt(buf, pos, value, width);
+        return this;
+    }
+
+    /** ddMMyy */
+    public EdifactWriter appendDate(LocalDate date) {
+        ensure(EdifactCodec.DATE_LENGTH);
+        pos = EdifactCodec.putDate(buf, pos, date);
+        return this;
+    }
+
+    /** ddMMyy */
+    public EdifactWriter appendDate(LocalDateTime dateTime) {
+        return appendDate(dateTime.toLocalDate());
+    }
+
+    /** HHmm */
+    public EdifactWriter appendTime(LocalDateTime dateTime) {
+        ensure(EdifactCodec.TIME_LENGTH);
+        pos = EdifactCodec.putTime(buf, pos, dateTime);
+        return this;
+    }
+
+    /** ddMMMyy */
+    public EdifactWriter appendDateWithMonthName(LocalDate date) {
+        ensure(EdifactCodec.DATE_WITH_MONTH_NAME_LENGTH);
+        pos = EdifactCodec.putDateWithMonthName(buf, pos, date);
+        return this;
+    }
+
+    /** Terminates the current segment and counts it towards the open message. */
+    public EdifactWriter end() {
+        messageSegmentCount++;
+        ensure(2);
+        buf[pos++] = SEGMENT_TERMINATOR;
+        buf[pos++] = LINE_BREAK;
+        return this;
+    }
+
+    /**
+     * Copies segments that were rendered separately (e.g. by another writer on another thread)
+     * and adds their count to the open message.
+     */
+    public EdifactWriter appendRendered(CharSequence segments, int segmentCount) {
+        copy(segments);
+        messageSegmentCount += segmentCount;
+        return this;
+    }
+
+    /**
+     * Copies a complete UNH..UNT message that was rendered separately and counts it towards the
+     * open functional group.
+     */
+    public EdifactWriter appendRenderedMessage(CharSequence message) {
+        return appendRenderedMessages(message, 1);
+    }
+
+    /** Copies several separately rendered UNH..UNT messages into the open functional group. */
+    public EdifactWriter appendRenderedMessages(CharSequence messages, int messageCount) {
+        copy(messages);
+        groupMessageCount += messageCount;
+        return this;
+    }
+
+    private void copy(CharSequence segments) {
+        StringBuilder sb = segments instanceof StringBuilder builder ? builder : null;
+        String str = sb == null ? segments.toString() : null;
+        int length = segments.length();
+        for (int from = 0; from < length; ) {
+            ensure(Math.min(length - from, buf.length));
+            int to = Math.min(length, from + buf.length - pos);
+            if (sb != null) {
+                sb.getChars(from, to, buf, pos);
+            } else {
+                str.getChars(from, to, buf, pos);
+            }
+            pos += to - from;
+            from = to;
+        }
+    }
+
+    public void writeServiceStringAdvice() {
+        ensure(SERVICE_STRING_ADVICE.length() + 1);
+        SERVICE_STRING_ADVICE.getChars(0, SERVICE_STRING_ADVICE.length(), buf, pos);
+        pos += SERVICE_STRING_ADVICE.length();
+        buf[pos++] = LINE_BREAK;
+    }
+
+    /** UNT - number of segments in the message (UNH through UNT inclusive). */
+    public void writeMessageTrailer(String messageRef) {
+        segment("UNT").element(messageSegmentCount + 1).element(messageRef).end();
+    }
+
+    /** UNE - number of messages in the functional group. */
+    public void writeGroupTrailer(String groupRef) {
+        segment("UNE").element(groupMessageCount).element(groupRef).end();
+    }
+
+    /** UNZ - number of functional groups in the interchange. */
+    public void writeInterchangeTrailer(String interchangeRef) {
+        segment("UNZ").element(interchangeGroupCount).element(interchangeRef).end();
+    }
+
+    public int getMessageSegmentCount() {
+        return messageSegmentCount;
+    }
+
+    /** Messages started since the last UNG, or since this writer was created. */
+    public int getGroupMessageCount() {
+        return groupMessageCount;
+    }
+
+    /** Hands buffered output to the sink and flushes the sink if it supports it. */
+    @Override
+    public void flush() {
+        drain();
+        if (out instanceof Flushable flushable) {
+            try {
+                flushable.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private EdifactWriter separator(char c) {
+        ensure(1);
+        buf[pos++] = c;
+        return this;
+    }
+
+    private EdifactWriter text(String value, boolean upperCase) {
+        if (value == null) {
+            return this;
+        }
+        int length = value.length();
+        if (!upperCase && !EdifactCodec.needsEscape(value)) {
+            // Fast path: bulk copy, chunked for values larger than the buffer
+            for (int from = 0; from < length; ) {
+                ensure(Math.min(length - from, buf.length));
+                int to = Math.min(length, from + buf.length - pos);
+                value.getChars(from, to, buf, pos);
+                pos += to - from;
+                from = to;
+            }
+            return this;
+        }
+        for (int from = 0; from < length; ) {
+            ensure(Math.min(2 * (length - from), buf.length));
+            int to = Math.min(length, from + (buf.length - pos) / 2);
+            pos = EdifactCodec.putEscaped(buf, pos, value, from, to, upperCase);
+            from = to;
+        }
+        return this;
+    }
+
+    private void ensure(int room) {
+        if (buf.length - pos < room) {
+            drain();
+        }
+    }
+
+    private void drain() {
+        if (pos == 0) {
+            return;
+        }
+        try {
+            if (out instanceof StringBuilder sb) {
+                sb.append(buf, 0, pos);
+            } else if (out instanceof Writer writer) {
+                writer.write(buf, 0, pos);
+            } else {
+                out.append(bufView, 0, pos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        pos = 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.pnrgov.core.edifact;
+
+import com.pnrgov.core.models.Flight;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Per-manifest cache of segment fragments that depend only on a flight (TVL, APD, the fixed
+ * parts of SSR TKNE/SEAT). Every PNR referencing the same flight reuses the rendering.
+ * Safe to share between threads rendering PNRs of the same manifest.
+ *
+ * @param <F> the generator-specific bundle of fragments kept per flight
+ */
+public final class FlightFragmentCache<F> {
+
+    // Flight does not override equals/hashCode, so entries are keyed by instance
+    private final Map<Flight, F> fragments = new ConcurrentHashMap<>();
+    private final Function<Flight, F> renderer;
+
+    public FlightFragmentCache(Function<Flight, F> renderer) {
+        this.renderer = renderer;
+    }
+
+    public F get(Flight flight) {
+        return fragments.computeIfAbsent(flight, renderer);
+    }
+}
@@ -0,0 +1,17 @@
+package com.pnrgov.core.edifact;
+
+/**
+ * One or more complete UNH..UNT messages rendered once, without an envelope. The same batch can
+ * be wrapped in a UNA/UNB/UNG...UNE/UNZ interchange for any number of receivers, so fanning a
+ * message out to several authorities does not regenerate or re-render it.
+ *
+ * @param sender       UNB/UNG sender the messages were rendered for
+ * @param messages     the rendered messages, already escaped
+ * @param messageCount number of UNH..UNT messages in {@code messages}
+ */
+public record MessageBatch(String sender, String messages, int messageCount) {
+
+    public void writeTo(EdifactWriter w) {
+        w.appendRenderedMessages(messages, messageCount);
+    }
+}
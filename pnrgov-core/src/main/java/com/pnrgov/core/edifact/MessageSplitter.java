@@ -0,0 +1,157 @@
+package com.pnrgov.core.edifact;
+
+import java.util.function.IntFunction;
+
+/**
+ * Distributes pre-rendered PNR sections over one or more UNH/UNT messages, opening a new part
+ * whenever the next section would exceed the configured PNR count or message size.
+ * <p>
+ * A part's header states whether it is the last one, so in size-limited mode the sections of the
+ * open part are held back until the part is closed. That buffer never grows beyond one message
+ * of {@code maxMessageSize}. With only a PNR limit the number of parts is known up front and
+ * sections go straight to the output.
+ * <p>
+ * A section is never cut: a single PNR larger than {@code maxMessageSize} gets a part of its own.
+ */
+public final class MessageSplitter {
+
+    /** Writes UNH and the header segments that are repeated at the start of every part. */
+    @FunctionalInterface
+    public interface PartHeader {
+        /**
+         * @param partNumber 1-based sequence of the part
+         * @param lastPart   true when no further part follows; part 1 that is also the last part
+         *                   is an ordinary, unsplit message
+         */
+        void write(EdifactWriter w, String messageRef, int partNumber, boolean lastPart);
+    }
+
+    private final EdifactWriter w;
+    private final PartHeader header;
+    private final IntFunction<String> messageRefs;
+    private final int maxPnrs;
+    private final int maxMessageSize;
+    private final int totalPnrs;
+
+    /** Sections of the open part in size-limited mode; {@code null} when streaming. */
+    private final StringBuilder pending;
+    private int pendingSegments;
+    /** Upper bound of the rendered header and its segment count, measured on first use. */
+    private int headerSize = -1;
+    private int headerSegments;
+    private int messageRefLength;
+
+    private int partNumber;
+    private int partPnrs;
+    private int writtenPnrs;
+    private boolean partOpen;
+
+    /**
+     * @param maxPnrs        PNRs per message, or {@code <= 0} for no limit
+     * @param maxMessageSize bytes from UNH through UNT inclusive, or {@code <= 0} for no limit; the
+     *                       writer emits ASCII only, so chars count as bytes
+     * @param totalPnrs      number of sections that will be appended
+     */
+    public MessageSplitter(EdifactWriter w, PartHeader header, IntFunction<String> messageRefs,
+                           int maxPnrs, int maxMessageSize, int totalPnrs) {
+        this.w = w;
+        this.header = header;
+        this.messageRefs = messageRefs;
+        this.maxPnrs = maxPnrs > 0 ? maxPnrs : Integer.MAX_VALUE;
+        this.maxMessageSize = maxMessageSize > 0 ? maxMessageSize : Integer.MAX_VALUE;
+        this.totalPnrs = totalPnrs;
+        this.pending = maxMessageSize > 0 ? new StringBuilder() : null;
+    }
+
+    /** Adds one rendered PNR section, closing the open part first if the section does not fit. */
+    public void append(CharSequence section, int segmentCount) {
+        if (pending == null) {
+            if (partOpen && partPnrs == maxPnrs) {
+                closePart();
+            }
+            if (!partOpen) {
+                openPart(writtenPnrs + maxPnrs >= totalPnrs);
+            }
+            w.appendRendered(section, segmentCount);
+        } else {
+            if (partPnrs > 0 && (partPnrs == maxPnrs || !fits(section.length(), segmentCount))) {
+                flushPending(false);
+            }
+            pending.append(section);
+            pendingSegments += segmentCount;
+        }
+        partPnrs++;
+        writtenPnrs++;
+    }
+
+    /** Closes the last part. A manifest without PNRs still yields one message. */
+    public void finish() {
+        if (pending != null) {
+            flushPending(true);
+        } else {
+            if (!partOpen) {
+                openPart(true);
+            }
+            closePart();
+        }
+    }
+
+    private void openPart(boolean lastPart) {
+        partNumber++;
+        header.write(w, messageRefs.apply(partNumber), partNumber, lastPart);
+        partOpen = true;
+    }
+
+    private void closePart() {
+        w.writeMessageTrailer(messageRefs.apply(partNumber));
+        partOpen = false;
+        partPnrs = 0;
+    }
+
+    private void flushPending(boolean lastPart) {
+        openPart(lastPart);
+        w.appendRendered(pending, pendingSegments);
+        closePart();
+        pending.setLength(0);
+        pendingSegments = 0;
+    }
+
+    private boolean fits(int sectionLength, int sectionSegments) {
+        if (headerSize < 0) {
+            headerSize = measureHeader();
+        }
+        long size = (long) headerSize + pending.length() + sectionLength
+                + trailerSize(pendingSegments + sectionSegments);
+        return size <= maxMessageSize;
+    }
+
+    /**
+     * Renders the header of a final part numbered as high as any part can be, one PNR each, which
+     * is the widest form of the header.
+     */
+    private int measureHeader() {
+        int widestPart = Math.max(1, totalPnrs);
+        String messageRef = messageRefs.apply(widestPart);
+        StringBuilder sb = new StringBuilder(256);
+        EdifactWriter probe = new EdifactWriter(sb, 256);
+        header.write(probe, messageRef, widestPart, true);
+        probe.flush();
+        headerSegments = probe.getMessageSegmentCount();
+        messageRefLength = messageRef.length();
+        return sb.length();
+    }
+
+    /** Length of "UNT+count+ref'" plus line break. */
+    private int trailerSize(int bodySegments) {
+        int count = headerSegments + bodySegments + 1;
+        return 4 + stringSize(count) + 1 + messageRefLength + 2;
+    }
+
+    private static int stringSize(int value) {
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -0,0 +1,23 @@
+package com.pnrgov.core.edifact;
+
+import java.util.function.Consumer;
+
+/**
+ * Already escaped EDIFACT text - whole segments or part of one - together with the
+ * number of complete segments it contains. Written with {@link EdifactWriter#appendRendered}.
+ */
+public record RenderedFragment(String text, int segmentCount) {
+
+    /** Renders a fragment once with a private writer so it can be copied into many messages. */
+    public static RenderedFragment render(Consumer<EdifactWriter> renderer) {
+        StringBuilder sb = new StringBuilder(128);
+        EdifactWriter w = new EdifactWriter(sb, 128);
+        renderer.accept(w);
+        w.flush();
+        return new RenderedFragment(sb.toString(), w.getMessageSegmentCount());
+    }
+
+    public void writeTo(EdifactWriter w) {
+        w.appendRendered(text, segmentCount);
+    }
+}
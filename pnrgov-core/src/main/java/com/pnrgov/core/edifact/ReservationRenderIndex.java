@@ -0,0 +1,106 @@
+package com.pnrgov.core.edifact;
+
+import com.pnrgov.core.models.Flight;
+import com.pnrgov.core.models.Passenger;
+import com.pnrgov.core.models.Reservation;
+import com.pnrgov.core.models.SeatAssignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable view of a {@link Reservation} prepared once for rendering: flights sorted by segment
+ * number, passenger ordinals (1-based, in booking order) and the seat assignments of each flight
+ * already grouped and ordered by passenger. Renderers walk these lists instead of re-sorting
+ * flights per passenger or scanning every passenger's seats per flight.
+ */
+public final class ReservationRenderIndex {
+
+    /** A seat on one flight together with the 1-based ordinal of the passenger holding it. */
+    public record SeatRef(String seatNumber, int passengerOrdinal) { }
+
+    private static final Comparator<Flight> BY_SEGMENT_NUMBER =
+            Comparator.comparingInt(f -> f.getSegmentNumber() != null ? f.getSegmentNumber() : 0);
+
+    private final Reservation reservation;
+    private final List<Flight> sortedFlights;
+    private final List<Passenger> passengers;
+    private final List<List<SeatRef>> seatsByFlight;
+
+    private ReservationRenderIndex(Reservation reservation, List<Flight> sortedFlights,
+                                   List<Passenger> passengers, List<List<SeatRef>> seatsByFlight) {
+        this.reservation = reservation;
+        this.sortedFlights = sortedFlights;
+        this.passengers = passengers;
+        this.seatsByFlight = seatsByFlight;
+    }
+
+    public static ReservationRenderIndex of(Reservation reservation) {
+        Flight[] flights = reservation.getFlights().toArray(new Flight[0]);
+        Arrays.sort(flights, BY_SEGMENT_NUMBER);
+
+        // Seats may point at the reservation's flight instance, or at a separately loaded copy with the same id
+        Map<Flight, Integer> positionByInstance = new IdentityHashMap<>(flights.length * 2);
+        Map<Long, Integer> positionById = new HashMap<>(flights.length * 2);
+        List<List<SeatRef>> seats = new ArrayList<>(flights.length);
+        for (int i = 0; i < flights.length; i++) {
+            positionByInstance.put(flights[i], i);
+            if (flights[i].getId() != null) positionById.put(flights[i].getId(), i);
+            seats.add(new ArrayList<>());
+        }
+
+        // Iterating passengers in order yields each flight's seats already sorted by passenger ordinal
+        List<Passenger> passengers = List.copyOf(reservation.getPassengers());
+        for (int p = 0; p < passengers.size(); p++) {
+            for (SeatAssignment seat : passengers.get(p).getSeats()) {
+                Integer position = positionByInstance.get(seat.getFlight());
+                if (position == null && seat.getFlightId() != null) {
+                    position = positionById.get(seat.getFlightId());
+                }
+                if (position != null) {
+                    seats.get(position).add(new SeatRef(seat.getSeatNumber(), p + 1));
+                }
+            }
+        }
+        for (int i = 0; i < seats.size(); i++) {
+            seats.set(i, Collections.unmodifiableList(seats.get(i)));
+        }
+
+        return new ReservationRenderIndex(reservation, List.of(flights), passengers,
+                Collections.unmodifiableList(seats));
+    }
+
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    /** Flights ordered by segment number. */
+    public List<Flight> getSortedFlights() {
+        return sortedFlights;
+    }
+
+    /** First flight by segment number, or {@code null} for a reservation without flights. */
+    public Flight getReportingFlight() {
+        return sortedFlights.isEmpty() ? null : sortedFlights.get(0);
+    }
+
+    /** Passengers in booking order; passenger {@code i} has ordinal {@code i + 1}. */
+    public List<Passenger> getPassengers() {
+        return passengers;
+    }
+
+    public int getPassengerCount() {
+        return passengers.size();
+    }
+
+    /** Seats on {@code getSortedFlights().get(flightPosition)}, ordered by passenger ordinal. */
+    public List<SeatRef> getSeats(int flightPosition) {
+        return seatsByFlight.get(flightPosition);
+    }
+}
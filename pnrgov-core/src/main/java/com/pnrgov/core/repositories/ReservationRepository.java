@@ -2,11 +2,16 @@ package com.pnrgov.core.repositories;
 
 import com.pnrgov.core.models.Reservation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ReservationRepository extends JpaRepository<Reservation, Long> {
     Optional<Reservation> findByRecordLocator(String recordLocator);
+
+    @Query("select r.recordLocator from Reservation r")
+    List<String> findAllRecordLocators();
 }
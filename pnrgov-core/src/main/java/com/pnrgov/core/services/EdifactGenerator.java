@@ -1,12 +1,17 @@
 package com.pnrgov.core.services;
 
+import com.pnrgov.core.edifact.EdifactWriter;
+import com.pnrgov.core.edifact.MessageBatch;
+import com.pnrgov.core.edifact.RenderedFragment;
+import com.pnrgov.core.edifact.ReservationRenderIndex;
 import com.pnrgov.core.models.*;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 
 /**
  * Generates PNRGOV EDIFACT messages according to version 21.1
@@ -14,240 +19,315 @@ import java.util.stream.Collectors;
 @Service
 public class EdifactGenerator {
     
-    private static final String SEGMENT_TERMINATOR = "'";
-    private static final String DATA_ELEMENT_SEPARATOR = "+";
-    private static final String COMPONENT_SEPARATOR = ":";
-    private final Random random = new Random();
+    private static final DateTimeFormatter REFERENCE_FMT = DateTimeFormatter.ofPattern("ddMMyyHHmmss");
+    
+    private final Clock clock;
+    
+    public EdifactGenerator(Clock clock) {
+        this.clock = clock;
+    }
     
     public String generatePnrGov(Reservation reservation, String receiver) {
+        return generatePnrGov(reservation, receiver, GenerationContext.create(clock));
+    }
+    
+    /**
+     * Ticket numbers, references and envelope timestamps are taken from the context, so a seeded
+     * context yields the same interchange every time.
+     */
+    public String generatePnrGov(Reservation reservation, String receiver, GenerationContext context) {
         StringBuilder sb = new StringBuilder();
-        String messageRefNumber = generateMessageReference();
-        String interchangeRefNumber = generateInterchangeReference();
+        writePnrGov(reservation, receiver, sb, context);
+        return sb.toString();
+    }
+
+    /**
+     * Streams a complete PNRGOV interchange for the reservation to the given sink.
+     */
+    public void writePnrGov(Reservation reservation, String receiver, Appendable out) {
+        writePnrGov(reservation, receiver, out, GenerationContext.create(clock));
+    }
+    
+    public void writePnrGov(Reservation reservation, String receiver, Appendable out, GenerationContext context) {
+        EdifactWriter w = new EdifactWriter(out);
+        String messageRefNumber = generateMessageReference(context);
+        String interchangeRefNumber = generateInterchangeReference(context);
         
-        // Default sender to reporting flight carrier code
-        Flight reportingFlight = reservation.getFlights().stream()
-            .sorted((f1, f2) -> Integer.compare(f1.getSegmentNumber(), f2.getSegmentNumber()))
-            .findFirst().orElse(null);
-        String sender = reportingFlight != null ? reportingFlight.getAirlineCode() : "XX";
+        writeInterchangeHeader(w, context, interchangeRefNumber, defaultSender(reservation), receiver);
+        writeMessage(w, context, reservation, messageRefNumber);
+        writeInterchangeTrailer(w, interchangeRefNumber);
         
+        w.flush();
+    }
+    
+    /**
+     * Renders the reservation's UNH..UNT message once, without an envelope, for
+     * {@link #writeInterchange} to wrap for each receiver.
+     */
+    public MessageBatch renderPnrGov(Reservation reservation, GenerationContext context) {
+        StringBuilder sb = new StringBuilder();
+        EdifactWriter w = new EdifactWriter(sb);
+        writeMessage(w, context, reservation, generateMessageReference(context));
+        w.flush();
+        return new MessageBatch(defaultSender(reservation), sb.toString(), 1);
+    }
+    
+    /**
+     * Wraps already rendered messages in an interchange for one receiver. Only UNA/UNB/UNG and
+     * UNE/UNZ are written; the messages are copied as they are.
+     */
+    public void writeInterchange(MessageBatch batch, String receiver, Appendable out, GenerationContext context) {
+        EdifactWriter w = new EdifactWriter(out);
+        String interchangeRefNumber = generateInterchangeReference(context);
+        
+        writeInterchangeHeader(w, context, interchangeRefNumber, batch.sender(), receiver);
+        batch.writeTo(w);
+        writeInterchangeTrailer(w, interchangeRefNumber);
+        
+        w.flush();
+    }
+    
+    /**
+     * Renders the reservation once and returns one interchange per receiver, in the given order.
+     */
+    public Map<String, String> generatePnrGovForReceivers(Reservation reservation, Collection<String> receivers) {
+        return generatePnrGovForReceivers(reservation, receivers, GenerationContext.create(clock));
+    }
+    
+    public Map<String, String> generatePnrGovForReceivers(Reservation reservation, Collection<String> receivers,
+                                                          GenerationContext context) {
+        MessageBatch batch = renderPnrGov(reservation, context);
+        Map<String, String> interchanges = new LinkedHashMap<>();
+        for (String receiver : receivers) {
+            StringBuilder sb = new StringBuilder(batch.messages().length() + 256);
+            writeInterchange(batch, receiver, sb, context);
+            interchanges.put(receiver, sb.toString());
+        }
+        return interchanges;
+    }
+    
+    /** Carrier code of the reporting flight (lowest segment number), the default interchange sender. */
+    String defaultSender(Reservation reservation) {
+        Flight reportingFlight = null;
+        int lowest = Integer.MAX_VALUE;
+        for (Flight flight : reservation.getFlights()) {
+            int segmentNumber = flight.getSegmentNumber() != null ? flight.getSegmentNumber() : 0;
+            if (segmentNumber < lowest) {
+                reportingFlight = flight;
+                lowest = segmentNumber;
+            }
+        }
+        return reportingFlight != null ? reportingFlight.getAirlineCode() : "XX";
+    }
+    
+    /**
+     * UNA, UNB and UNG opening an interchange with a single functional group.
+     */
+    void writeInterchangeHeader(EdifactWriter w, GenerationContext context, String interchangeRef,
+                                String sender, String receiver) {
         // Default receiver to USCBP if not provided
         receiver = receiver != null ? receiver : "USCBP";
         
         // UNA - Service string advice (character set definition)
-        sb.append("UNA:+.?*'\n");
+        w.writeServiceStringAdvice();
         
         // UNB - Interchange Header
-        sb.append(generateUNB(interchangeRefNumber, sender, receiver)).append("\n");
+        writeUNB(w, context.now(), interchangeRef, sender, receiver);
         
         // UNG - Functional group header
-        sb.append(generateUNG(interchangeRefNumber, sender, receiver)).append("\n");
+        writeUNG(w, context.now(), interchangeRef, sender, receiver);
+    }
+    
+    /** UNE and UNZ; the counts come from the messages written since the header. */
+    void writeInterchangeTrailer(EdifactWriter w, String interchangeRef) {
+        // UNE - Functional group trailer
+        w.writeGroupTrailer(interchangeRef);
+        
+        // UNZ - Interchange Trailer
+        w.writeInterchangeTrailer(interchangeRef);
+    }
+    
+    /**
+     * Writes one UNH..UNT PNRGOV message for the reservation.
+     */
+    void writeMessage(EdifactWriter w, GenerationContext context, Reservation reservation, String messageRefNumber) {
+        RandomGenerator random = context.random();
+        ReservationRenderIndex index = ReservationRenderIndex.of(reservation);
+        Flight reportingFlight = index.getReportingFlight();
         
         // UNH - Message Header
-        sb.append(generateUNH(messageRefNumber, reservation)).append("\n");
+        writeUNH(w, messageRefNumber, reservation);
         
         // MSG - Message action details
-        sb.append(generateMSG()).append("\n");
+        writeMSG(w);
         
         // ORG - Originator of request
         String airlineCode = reservation.getFlights().isEmpty() ? "XX" : 
             reservation.getFlights().get(0).getAirlineCode();
-        sb.append(generateORG(airlineCode)).append("\n");
+        writeORG(w, airlineCode);
         
         // TVL - Reporting flight (the flight being reported on) - Level 0 uses operating carrier only
         if (reportingFlight != null) {
-            sb.append(generateHeaderTVL(reportingFlight)).append("\n");
+            writeHeaderTVL(w, reportingFlight);
         }
         
         // EQN - Total number of PNRs
-        sb.append("EQN").append(DATA_ELEMENT_SEPARATOR).append(reservation.getPassengers().size())
-            .append(SEGMENT_TERMINATOR).append("\n");
+        w.segment("EQN").element(index.getPassengerCount()).end();
         
         // SRC' - Start of PNR section
-        sb.append("SRC").append(SEGMENT_TERMINATOR).append("\n");
+        w.segment("SRC").end();
         
         // RCI - Reservation control information with date/time
-        sb.append(generateRCI(reservation)).append("\n");
+        writeRCI(w, reservation);
         
         // DAT - Ticket issue / last PNR transaction date/time
-        sb.append(generateTransactionDAT(reservation.getCreatedDate())).append("\n");
+        writeTransactionDAT(w, reservation.getCreatedDate());
         
         // IFT - OSI free text information (contact details)
         if (reservation.getContactPhone() != null && !reservation.getContactPhone().isEmpty()) {
-            sb.append(generateIFT(airlineCode + " " + reservation.getContactPhone().toUpperCase())).append("\n");
+            writeIFT(w, airlineCode, reservation.getContactPhone());
         }
         if (reservation.getContactEmail() != null && !reservation.getContactEmail().isEmpty()) {
-            sb.append(generateIFT(airlineCode + " " + reservation.getContactEmail().toUpperCase())).append("\n");
+            writeIFT(w, airlineCode, reservation.getContactEmail());
         }
         
         // ORG - Booking agent
-        sb.append(generateBookingORG(reservation.getAgencyCode() != null ? reservation.getAgencyCode() : "TTY"))
-            .append("\n");
+        writeBookingORG(w, reservation.getAgencyCode() != null ? reservation.getAgencyCode() : "TTY");
+        
+        // Flight-invariant fragments, rendered once per message and reused for every passenger
+        List<Flight> sortedFlights = index.getSortedFlights();
+        FlightFragments[] flightFragments = new FlightFragments[sortedFlights.size()];
+        for (int f = 0; f < flightFragments.length; f++) {
+            flightFragments[f] = renderFlightFragments(sortedFlights.get(f));
+        }
         
         // Loop for each passenger
+        int passengerCount = index.getPassengerCount();
         int passengerIndex = 1;
-        for (Passenger passenger : reservation.getPassengers()) {
+        for (Passenger passenger : index.getPassengers()) {
             // TIF - Traveller information with passenger reference
-            sb.append(generateTIF(passenger, passengerIndex)).append("\n");
+            writeTIF(w, passenger, passengerIndex);
             
             // SSR - DOCS for passport information
             for (TravelDocument document : passenger.getDocuments()) {
-                sb.append(generateSSR_DOCS(document, passenger, passengerIndex)).append("\n");
+                writeSSR_DOCS(w, document, passenger, passengerIndex);
             }
             
             // SSR - TKNE for tickets (for each flight)
-            int flightIndex = 1;
-            for (Flight flight : reservation.getFlights().stream()
-                    .sorted((f1, f2) -> Integer.compare(f1.getSegmentNumber(), f2.getSegmentNumber()))
-                    .collect(Collectors.toList())) {
-                sb.append(generateSSR_TKNE(flight, passengerIndex, flightIndex)).append("\n");
-                flightIndex++;
+            for (int f = 0; f < sortedFlights.size(); f++) {
+                writeSSR_TKNE(w, random, flightFragments[f], passengerIndex, f + 1);
             }
             
             passengerIndex++;
         }
         
         // TVL segments for each flight with associated data
-        for (Flight flight : reservation.getFlights().stream()
-                .sorted((f1, f2) -> Integer.compare(f1.getSegmentNumber(), f2.getSegmentNumber()))
-                .collect(Collectors.toList())) {
-            // TVL - Travel product information
-            sb.append(generateTVL(flight)).append("\n");
+        for (int f = 0; f < sortedFlights.size(); f++) {
+            Flight flight = sortedFlights.get(f);
+            FlightFragments ff = flightFragments[f];
             
-            // TRA - Transport details (for codeshare flights)
-            if (isCodeshare(flight)) {
-                sb.append(generateTRA(flight)).append("\n");
-            }
+            // TVL - Travel product information, followed by TRA for codeshare flights
+            ff.tvl().writeTo(w);
             
             // RPI - Reporting flight information (passenger count and status)
-            sb.append(generateRPI(reservation.getPassengers().size(), flight.getFlightStatus())).append("\n");
+            writeRPI(w, passengerCount, flight.getFlightStatus());
             
             // APD - Equipment Type (aircraft)
-            sb.append("APD").append(DATA_ELEMENT_SEPARATOR).append(flight.getAircraftType())
-                .append(SEGMENT_TERMINATOR).append("\n");
+            ff.apd().writeTo(w);
             
             // SSR - SEAT information for all passengers on this flight
-            Map<Long, Integer> passengerIdToIndex = new HashMap<>();
-            int paxIdx = 1;
-            for (Passenger pax : reservation.getPassengers()) {
-                if (pax.getId() != null) passengerIdToIndex.put(pax.getId(), paxIdx);
-                paxIdx++;
-            }
-            Long fid = flight.getId();
-            List<SeatAssignment> seatsForFlight = reservation.getPassengers().stream()
-                .flatMap(p -> p.getSeats().stream())
-                .filter(s -> fid != null && fid.equals(s.getFlightId()))
-                .sorted(Comparator.comparingInt(s -> passengerIdToIndex.getOrDefault(s.getPassengerId(), 0)))
-                .collect(Collectors.toList());
-
+            List<ReservationRenderIndex.SeatRef> seatsForFlight = index.getSeats(f);
             if (!seatsForFlight.isEmpty()) {
-                StringBuilder seatListBuilder = new StringBuilder();
-                for (SeatAssignment seat : seatsForFlight) {
-                    int idx = passengerIdToIndex.getOrDefault(seat.getPassengerId(), 1);
-                    seatListBuilder.append(DATA_ELEMENT_SEPARATOR)
-                        .append(seat.getSeatNumber())
-                        .append(COMPONENT_SEPARATOR).append(COMPONENT_SEPARATOR)
-                        .append(idx);
-                }
-                sb.append(generateSSR_SEAT(flight, reservation.getPassengers().size(), seatListBuilder.toString())).append("\n");
+                writeSSR_SEAT(w, ff, passengerCount, seatsForFlight);
             }
             
             // SSR - TKNE for tickets on this flight
-            int paxIndex = 1;
-            for (Passenger passenger : reservation.getPassengers()) {
-                sb.append(generateSSR_TKNE_Simple(flight, paxIndex)).append("\n");
-                paxIndex++;
+            for (int paxIndex = 1; paxIndex <= passengerCount; paxIndex++) {
+                writeSSR_TKNE_Simple(w, random, ff, paxIndex);
             }
             
             // RCI - Record locator after each flight
-            sb.append(generateRCI(reservation)).append("\n");
+            writeRCI(w, reservation);
         }
         
-        // Count segments (excluding UNA which is not counted)
-        String[] lines = sb.toString().split("\\r?\\n");
-        long segmentCount = java.util.Arrays.stream(lines)
-            .filter(l -> !l.startsWith("UNA"))
-            .count();
-        
         // UNT - Message Trailer
-        sb.append(generateUNT((int)segmentCount + 1, messageRefNumber)).append("\n");
-        
-        // UNE - Functional group trailer
-        sb.append(generateUNE(interchangeRefNumber)).append("\n");
-        
-        // UNZ - Interchange Trailer
-        sb.append(generateUNZ(interchangeRefNumber)).append("\n");
-        
-        return sb.toString();
+        w.writeMessageTrailer(messageRefNumber);
     }
     
-    private String generateUNB(String interchangeRef, String sender, String receiver) {
-        LocalDateTime dateTime = LocalDateTime.now();
-        String date = dateTime.format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String time = dateTime.format(DateTimeFormatter.ofPattern("HHmm"));
-        
-        return "UNB" + DATA_ELEMENT_SEPARATOR + "IATA" + COMPONENT_SEPARATOR + "1" +
-               DATA_ELEMENT_SEPARATOR + sender +
-               DATA_ELEMENT_SEPARATOR + receiver +
-               DATA_ELEMENT_SEPARATOR + date + COMPONENT_SEPARATOR + time +
-               DATA_ELEMENT_SEPARATOR + interchangeRef +
-               DATA_ELEMENT_SEPARATOR + "PNRGOV" + SEGMENT_TERMINATOR;
-    }
-    
-    private String generateUNG(String groupRef, String sender, String receiver) {
-        LocalDateTime dateTime = LocalDateTime.now();
-        String date = dateTime.format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String time = dateTime.format(DateTimeFormatter.ofPattern("HHmm"));
-        
-        return "UNG" + DATA_ELEMENT_SEPARATOR + "PNRGOV" +
-               DATA_ELEMENT_SEPARATOR + sender +
-               DATA_ELEMENT_SEPARATOR + receiver +
-               DATA_ELEMENT_SEPARATOR + date + COMPONENT_SEPARATOR + time +
-               DATA_ELEMENT_SEPARATOR + groupRef +
-               DATA_ELEMENT_SEPARATOR + "IA" +
-               DATA_ELEMENT_SEPARATOR + "11" + COMPONENT_SEPARATOR + "1" + SEGMENT_TERMINATOR;
+    /** Parts of a flight's segments that do not change between passengers or occurrences. */
+    private record FlightFragments(RenderedFragment tvl, RenderedFragment apd, RenderedFragment route) { }
+    
+    private FlightFragments renderFlightFragments(Flight flight) {
+        return new FlightFragments(
+            RenderedFragment.render(fw -> {
+                writeTVL(fw, flight);
+                if (isCodeshare(flight)) {
+                    writeTRA(fw, flight);
+                }
+            }),
+            RenderedFragment.render(fw -> fw.segment("APD").element(flight.getAircraftType()).end()),
+            // ":airline:::from:to" shared by SSR TKNE and SSR SEAT; not a complete segment
+            RenderedFragment.render(fw -> fw.component(flight.getAirlineCode())
+                .component().component()
+                .component(flight.getDepartureAirport()).component(flight.getArrivalAirport())));
+    }
+    
+    private void writeUNB(EdifactWriter w, LocalDateTime dateTime, String interchangeRef, String sender,
+                          String receiver) {
+        w.segment("UNB").element("IATA").component("1")
+            .element(sender)
+            .element(receiver)
+            .element().appendDate(dateTime).component().appendTime(dateTime)
+            .element(interchangeRef)
+            .element("PNRGOV").end();
     }
     
-    private String generateUNH(String messageRef, Reservation reservation) {
+    private void writeUNG(EdifactWriter w, LocalDateTime dateTime, String groupRef, String sender,
+                          String receiver) {
+        w.segment("UNG").element("PNRGOV")
+            .element(sender)
+            .element(receiver)
+            .element().appendDate(dateTime).component().appendTime(dateTime)
+            .element(groupRef)
+            .element("IA")
+            .element("11").component("1").end();
+    }
+    
+    private void writeUNH(EdifactWriter w, String messageRef, Reservation reservation) {
         Flight flight = reservation.getFlights().isEmpty() ? null : reservation.getFlights().get(0);
-        String flightInfo;
+            
+        w.segment("UNH").element(messageRef)
+            .element("PNRGOV").component("11").component("1").component("IA")
+            .element();
         if (flight != null) {
-            String depDate = flight.getDepartureDate().format(DateTimeFormatter.ofPattern("ddMMyy"));
-            String depTime = flight.getDepartureDate().format(DateTimeFormatter.ofPattern("HHmm"));
-            flightInfo = flight.getAirlineCode() + flight.getFlightNumber() + "/" + depDate + "/" + depTime;
+            w.append(flight.getAirlineCode()).append(flight.getFlightNumber())
+                .append('/').appendDate(flight.getDepartureDate())
+                .append('/').appendTime(flight.getDepartureDate());
         } else {
-            flightInfo = "XXXX/000000/0000";
+            w.append("XXXX/000000/0000");
         }
-            
-        return "UNH" + DATA_ELEMENT_SEPARATOR + messageRef +
-               DATA_ELEMENT_SEPARATOR + "PNRGOV" + COMPONENT_SEPARATOR + "11" + COMPONENT_SEPARATOR + "1" + 
-               COMPONENT_SEPARATOR + "IA" +
-               DATA_ELEMENT_SEPARATOR + flightInfo + SEGMENT_TERMINATOR;
+        w.end();
     }
     
-    private String generateMSG() {
-        return "MSG" + DATA_ELEMENT_SEPARATOR + COMPONENT_SEPARATOR + "22" + SEGMENT_TERMINATOR;
+    private void writeMSG(EdifactWriter w) {
+        w.segment("MSG").element().component("22").end();
     }
     
-    private String generateORG(String airlineCode) {
-        return "ORG" + DATA_ELEMENT_SEPARATOR + airlineCode + SEGMENT_TERMINATOR;
+    private void writeORG(EdifactWriter w, String airlineCode) {
+        w.segment("ORG").element(airlineCode).end();
     }
     
-    private String generateBookingORG(String agencyCode) {
+    private void writeBookingORG(EdifactWriter w, String agencyCode) {
         String airline = "XX";
-        return "ORG" + DATA_ELEMENT_SEPARATOR + airline + COMPONENT_SEPARATOR + agencyCode + SEGMENT_TERMINATOR;
+        w.segment("ORG").element(airline).component(agencyCode).end();
     }
     
     /**
-     * Generates the Level 0 (header) TVL segment for the reporting flight.
+     * Writes the Level 0 (header) TVL segment for the reporting flight.
      * Per PNRGOV spec 5.29.1: C306 contains the OPERATING airline designator only.
      * No reservation booking designator (RBD/service class) in this form.
      */
-    private String generateHeaderTVL(Flight flight) {
-        String depDate = flight.getDepartureDate().format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String depTime = flight.getDepartureDate().format(DateTimeFormatter.ofPattern("HHmm"));
-        String arrDate = flight.getArrivalDate().format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String arrTime = flight.getArrivalDate().format(DateTimeFormatter.ofPattern("HHmm"));
-
+    private void writeHeaderTVL(EdifactWriter w, Flight flight) {
         // Level 0 TVL always contains the operating carrier code (C306:1), never the marketing carrier
         String operatingCode = (flight.getOperatingCarrier() != null && !flight.getOperatingCarrier().isEmpty())
             ? flight.getOperatingCarrier()
@@ -258,38 +338,37 @@ public class EdifactGenerator {
             ? flight.getOperatingFlightNumber()
             : flight.getFlightNumber();
 
-        return "TVL" + DATA_ELEMENT_SEPARATOR + depDate + COMPONENT_SEPARATOR + depTime + COMPONENT_SEPARATOR +
-               arrDate + COMPONENT_SEPARATOR + arrTime +
-               DATA_ELEMENT_SEPARATOR + flight.getDepartureAirport() +
-               DATA_ELEMENT_SEPARATOR + flight.getArrivalAirport() +
-               DATA_ELEMENT_SEPARATOR + operatingCode +
-               DATA_ELEMENT_SEPARATOR + opFlightNum + COMPONENT_SEPARATOR + flight.getServiceClass() + SEGMENT_TERMINATOR;
+        writeTVLDateTimes(w, flight)
+            .element(flight.getDepartureAirport())
+            .element(flight.getArrivalAirport())
+            .element(operatingCode)
+            .element(opFlightNum).component(flight.getServiceClass()).end();
     }
 
     /**
-     * Generates a GR.5 (flight itinerary) TVL segment.
+     * Writes a GR.5 (flight itinerary) TVL segment.
      * Per PNRGOV spec 5.29.2: C306:1 = marketing airline, C306:2 = operating airline (when different).
      * Includes the reservation booking designator (service class).
      * Per spec 5.29.3: Use TRA segment for operating carrier details; C306:2 is still populated here.
      */
-    private String generateTVL(Flight flight) {
-        String depDate = flight.getDepartureDate().format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String depTime = flight.getDepartureDate().format(DateTimeFormatter.ofPattern("HHmm"));
-        String arrDate = flight.getArrivalDate().format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String arrTime = flight.getArrivalDate().format(DateTimeFormatter.ofPattern("HHmm"));
+    private void writeTVL(EdifactWriter w, Flight flight) {
+        writeTVLDateTimes(w, flight)
+            .element(flight.getDepartureAirport())
+            .element(flight.getArrivalAirport())
+            .element(flight.getAirlineCode());
 
         // GR.5 TVL: marketing carrier in C306:1; operating carrier in C306:2 for codeshare flights
-        String carrierCode = isCodeshare(flight)
-            ? flight.getAirlineCode() + COMPONENT_SEPARATOR + flight.getOperatingCarrier()
-            : flight.getAirlineCode();
+        if (isCodeshare(flight)) {
+            w.component(flight.getOperatingCarrier());
+        }
 
-        return "TVL" + DATA_ELEMENT_SEPARATOR + depDate + COMPONENT_SEPARATOR + depTime + COMPONENT_SEPARATOR +
-               arrDate + COMPONENT_SEPARATOR + arrTime +
-               DATA_ELEMENT_SEPARATOR + flight.getDepartureAirport() +
-               DATA_ELEMENT_SEPARATOR + flight.getArrivalAirport() +
-               DATA_ELEMENT_SEPARATOR + carrierCode +
-               DATA_ELEMENT_SEPARATOR + flight.getFlightNumber() + COMPONENT_SEPARATOR +
-               flight.getServiceClass() + SEGMENT_TERMINATOR;
+        w.element(flight.getFlightNumber()).component(flight.getServiceClass()).end();
+    }
+    
+    private EdifactWriter writeTVLDateTimes(EdifactWriter w, Flight flight) {
+        return w.segment("TVL")
+            .element().appendDate(flight.getDepartureDate()).component().appendTime(flight.getDepartureDate())
+            .component().appendDate(flight.getArrivalDate()).component().appendTime(flight.getArrivalDate());
     }
     
     private boolean isCodeshare(Flight flight) {
@@ -297,119 +376,96 @@ public class EdifactGenerator {
                !flight.getAirlineCode().equals(flight.getOperatingCarrier());
     }
     
-    private String generateTRA(Flight flight) {
+    private void writeTRA(EdifactWriter w, Flight flight) {
         // Use the operating carrier's own flight number if stored, otherwise fall back to the marketing flight number
         String opFlightNum = (flight.getOperatingFlightNumber() != null && !flight.getOperatingFlightNumber().isEmpty())
             ? flight.getOperatingFlightNumber()
             : flight.getFlightNumber();
-        return "TRA" + DATA_ELEMENT_SEPARATOR + flight.getOperatingCarrier() +
-               DATA_ELEMENT_SEPARATOR + opFlightNum + COMPONENT_SEPARATOR + "D" + SEGMENT_TERMINATOR;
+        w.segment("TRA").element(flight.getOperatingCarrier())
+            .element(opFlightNum).component("D").end();
     }
     
-    private String generateTIF(Passenger passenger, int passengerIndex) {
+    private void writeTIF(EdifactWriter w, Passenger passenger, int passengerIndex) {
         String paxType = "ADT".equals(passenger.getPassengerType()) ? "A" : passenger.getPassengerType();
         
-        return "TIF" + DATA_ELEMENT_SEPARATOR + passenger.getLastName().toUpperCase() +
-               DATA_ELEMENT_SEPARATOR + passenger.getFirstName().toUpperCase() + " " + passenger.getTitle() +
-               COMPONENT_SEPARATOR + paxType +
-               COMPONENT_SEPARATOR + passengerIndex + ".1" + SEGMENT_TERMINATOR;
+        w.segment("TIF").element().appendUpper(passenger.getLastName())
+            .element().appendUpper(passenger.getFirstName()).append(' ').append(passenger.getTitle())
+            .component(paxType)
+            .component(passengerIndex).append(".1").end();
     }
     
-    private String generateRPI(int passengerCount, String status) {
-        return "RPI" + DATA_ELEMENT_SEPARATOR + passengerCount +
-               DATA_ELEMENT_SEPARATOR + status + SEGMENT_TERMINATOR;
+    private void writeRPI(EdifactWriter w, int passengerCount, String status) {
+        w.segment("RPI").element(passengerCount).element(status).end();
     }
     
-    private String generateIFT(String text) {
-        return "IFT" + DATA_ELEMENT_SEPARATOR + "4" + COMPONENT_SEPARATOR + "28" +
-               DATA_ELEMENT_SEPARATOR + text + SEGMENT_TERMINATOR;
+    private void writeIFT(EdifactWriter w, String airlineCode, String contact) {
+        w.segment("IFT").element("4").component("28")
+            .element(airlineCode).append(' ').appendUpper(contact).end();
     }
     
-    private String generateRCI(Reservation reservation) {
+    private void writeRCI(EdifactWriter w, Reservation reservation) {
         String airline = reservation.getFlights().isEmpty() ? "XX" : 
             reservation.getFlights().get(0).getAirlineCode();
-        String date = reservation.getCreatedDate().format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String time = reservation.getCreatedDate().format(DateTimeFormatter.ofPattern("HHmm"));
+        LocalDateTime created = reservation.getCreatedDate();
         
-        return "RCI" + DATA_ELEMENT_SEPARATOR + airline + COMPONENT_SEPARATOR + reservation.getRecordLocator() +
-               COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + date + COMPONENT_SEPARATOR + time + SEGMENT_TERMINATOR;
+        w.segment("RCI").element(airline).component(reservation.getRecordLocator())
+            .component().component().appendDate(created).component().appendTime(created).end();
     }
     
-    private String generateTransactionDAT(LocalDateTime transactionDate) {
-        String date = transactionDate.format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String time = transactionDate.format(DateTimeFormatter.ofPattern("HHmm"));
-        
-        return "DAT" + DATA_ELEMENT_SEPARATOR + "700" +
-               COMPONENT_SEPARATOR + date +
-               COMPONENT_SEPARATOR + time + SEGMENT_TERMINATOR;
-    }
-    
-    private String generateSSR_TKNE(Flight flight, int passengerIndex, int flightIndex) {
-        String ticketNumber = "139" + (1000000 + random.nextInt(9000000)) + "000C" + flightIndex;
-        
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "TKNE" + COMPONENT_SEPARATOR + "HK" + COMPONENT_SEPARATOR + "1" +
-               COMPONENT_SEPARATOR + flight.getAirlineCode() +
-               COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR +
-               flight.getDepartureAirport() + COMPONENT_SEPARATOR + flight.getArrivalAirport() +
-               COMPONENT_SEPARATOR + ticketNumber +
-               DATA_ELEMENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + passengerIndex + ".1" + 
-               SEGMENT_TERMINATOR;
+    private void writeTransactionDAT(EdifactWriter w, LocalDateTime transactionDate) {
+        w.segment("DAT").element("700")
+            .component().appendDate(transactionDate).component().appendTime(transactionDate).end();
     }
     
-    private String generateSSR_TKNE_Simple(Flight flight, int passengerIndex) {
-        String ticketNumber = "139" + (1000000 + random.nextInt(9000000)) + "000C1";
+    private void writeSSR_TKNE(EdifactWriter w, RandomGenerator random, FlightFragments flight, int passengerIndex,
+                               int flightIndex) {
+        int ticketSerial = 1000000 + random.nextInt(9000000);
         
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "TKNE" + COMPONENT_SEPARATOR + "HK" + COMPONENT_SEPARATOR + "1" +
-               COMPONENT_SEPARATOR + flight.getAirlineCode() +
-               COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR +
-               flight.getDepartureAirport() + COMPONENT_SEPARATOR + flight.getArrivalAirport() +
-               COMPONENT_SEPARATOR + "." + ticketNumber + SEGMENT_TERMINATOR;
+        w.segment("SSR").element("TKNE").component("HK").component("1");
+        flight.route().writeTo(w);
+        w.component("139").append(ticketSerial).append("000C").append(flightIndex)
+            .element().component().component(passengerIndex).append(".1").end();
     }
     
-    private String generateSSR_DOCS(TravelDocument document, Passenger passenger, int passengerIndex) {
-        String dob = passenger.getDateOfBirth().format(DateTimeFormatter.ofPattern("ddMMMyy")).toUpperCase();
-        String expiry = document.getExpiryDate().format(DateTimeFormatter.ofPattern("ddMMMyy")).toUpperCase();
+    private void writeSSR_TKNE_Simple(EdifactWriter w, RandomGenerator random, FlightFragments flight,
+                                      int passengerIndex) {
+        int ticketSerial = 1000000 + random.nextInt(9000000);
         
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "DOCS" + COMPONENT_SEPARATOR + "HK" + COMPONENT_SEPARATOR + "1" +
-               COMPONENT_SEPARATOR + document.getIssuingCountry() +
-               COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR +
-               COMPONENT_SEPARATOR + "/P/" + document.getNationality() + "/" + document.getDocumentNumber() +
-               "/" + document.getIssuingCountry() + "/" + dob + "/" + passenger.getGender() + "/" + expiry +
-               "/" + passenger.getLastName().toUpperCase() + "/" + passenger.getFirstName().toUpperCase() +
-               DATA_ELEMENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + passengerIndex + ".1" + 
-               SEGMENT_TERMINATOR;
+        w.segment("SSR").element("TKNE").component("HK").component("1");
+        flight.route().writeTo(w);
+        w.component(".139").append(ticketSerial).append("000C1").end();
     }
     
-    private String generateSSR_SEAT(Flight flight, int passengerCount, String seatList) {
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "SEAT" + COMPONENT_SEPARATOR + "HK" + COMPONENT_SEPARATOR +
-               passengerCount +
-               COMPONENT_SEPARATOR + flight.getAirlineCode() +
-               COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR +
-               flight.getDepartureAirport() + COMPONENT_SEPARATOR + flight.getArrivalAirport() +
-               seatList + SEGMENT_TERMINATOR;
+    private void writeSSR_DOCS(EdifactWriter w, TravelDocument document, Passenger passenger, int passengerIndex) {
+        w.segment("SSR").element("DOCS").component("HK").component("1")
+            .component(document.getIssuingCountry())
+            .component().component().component().component()
+            .component("/P/").append(document.getNationality()).append('/').append(document.getDocumentNumber())
+            .append('/').append(document.getIssuingCountry())
+            .append('/').appendDateWithMonthName(passenger.getDateOfBirth())
+            .append('/').append(passenger.getGender())
+            .append('/').appendDateWithMonthName(document.getExpiryDate())
+            .append('/').appendUpper(passenger.getLastName())
+            .append('/').appendUpper(passenger.getFirstName())
+            .element().component().component(passengerIndex).append(".1").end();
     }
     
-    private String generateUNT(int segmentCount, String messageRef) {
-        return "UNT" + DATA_ELEMENT_SEPARATOR + segmentCount +
-               DATA_ELEMENT_SEPARATOR + messageRef + SEGMENT_TERMINATOR;
-    }
-    
-    private String generateUNE(String groupRef) {
-        return "UNE" + DATA_ELEMENT_SEPARATOR + "1" +
-               DATA_ELEMENT_SEPARATOR + groupRef + SEGMENT_TERMINATOR;
-    }
-    
-    private String generateUNZ(String interchangeRef) {
-        return "UNZ" + DATA_ELEMENT_SEPARATOR + "1" +
-               DATA_ELEMENT_SEPARATOR + interchangeRef + SEGMENT_TERMINATOR;
+    private void writeSSR_SEAT(EdifactWriter w, FlightFragments flight, int passengerCount,
+                               List<ReservationRenderIndex.SeatRef> seats) {
+        w.segment("SSR").element("SEAT").component("HK").component(passengerCount);
+        flight.route().writeTo(w);
+        for (ReservationRenderIndex.SeatRef seat : seats) {
+            w.element(seat.seatNumber()).component().component(seat.passengerOrdinal());
+        }
+        w.end();
     }
     
-    private String generateMessageReference() {
-        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("ddMMyyHHmmss"));
+    private String generateMessageReference(GenerationContext context) {
+        return context.now().format(REFERENCE_FMT);
     }
     
-    private String generateInterchangeReference() {
-        return LocalDateTime.now().format(DateTimeFormatter.ofPattern("ddMMyyHHmmss")) + 
-               (100 + random.nextInt(900));
+    String generateInterchangeReference(GenerationContext context) {
+        return context.now().format(REFERENCE_FMT) + 
+               (100 + context.random().nextInt(900));
     }
 }
@@ -1,12 +1,30 @@
 package com.pnrgov.core.services;
 
+import com.pnrgov.core.edifact.EdifactWriter;
+import com.pnrgov.core.edifact.FlightFragmentCache;
+import com.pnrgov.core.edifact.MessageBatch;
+import com.pnrgov.core.edifact.MessageSplitter;
+import com.pnrgov.core.edifact.RenderedFragment;
+import com.pnrgov.core.edifact.ReservationRenderIndex;
 import com.pnrgov.core.models.*;
 import org.springframework.stereotype.Service;
 
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.time.Clock;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.ObjIntConsumer;
+import java.util.random.RandomGenerator;
 
 /**
  * Generates Flight Manifest PNRGOV EDIFACT messages with multiple PNRs.
@@ -16,43 +34,191 @@ import java.util.stream.Collectors;
 @Service
 public class FlightManifestGenerator {
 
-    private static final String SEGMENT_TERMINATOR = "'";
-    private static final String DATA_ELEMENT_SEPARATOR = "+";
-    private static final String COMPONENT_SEPARATOR = ":";
+    /** Carriers and ports of generated manifests, as {@link ReferenceData} ids. */
+    private static final int[] AIRLINES =
+            ReferenceData.airlines("AA", "UA", "DL", "SW", "B6", "JB", "AS", "F9", "NK", "G4");
+    private static final int[] PORTS =
+            ReferenceData.airports("JFK", "LAX", "ORD", "DEN", "BOS", "SFO", "ATL", "MIA", "LHR", "CDG");
 
-    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("ddMMyy");
-    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HHmm");
-    private static final DateTimeFormatter DOB_FMT = DateTimeFormatter.ofPattern("ddMMMyy");
-    private static final DateTimeFormatter DEP_DATE_FMT = DateTimeFormatter.ofPattern("yyMMdd");
+    private static final LocalDate DEFAULT_DOB = LocalDate.of(1980, 1, 1);
+    private static final LocalDate DEFAULT_EXPIRY = LocalDate.of(2030, 1, 1);
 
-    private static final String[] AIRLINES = {"AA", "UA", "DL", "SW", "B6", "JB", "AS", "F9", "NK", "G4"};
-    private static final String[] PORTS = {"JFK", "LAX", "ORD", "DEN", "BOS", "SFO", "ATL", "MIA", "LHR", "CDG"};
+    /**
+     * PNRs of 1-4 passengers, generated against the reporting flight. The spec is resolved first,
+     * so the EQN pass can replay the passenger count and seating from the PNR's seed.
+     * <p>
+     * Every PNR flies the reporting flight alone, so the codeshare and through-flight draws do
+     * not show in a manifest, as they never did when generated flights were swapped for it.
+     */
+    private static final ReservationSpec MANIFEST_PNR_SPEC = ReservationSpec.mixed(1, 4, 1, 1);
 
     private final SampleDataGenerator sampleDataGenerator;
-    private final Random random = new Random();
+    private final Clock clock;
 
-    public FlightManifestGenerator(SampleDataGenerator sampleDataGenerator) {
+    public FlightManifestGenerator(SampleDataGenerator sampleDataGenerator, Clock clock) {
         this.sampleDataGenerator = sampleDataGenerator;
+        this.clock = clock;
     }
 
     public String generateFlightManifest(int pnrCount, String airline, String flightNumber, String receiver) {
+        return generateFlightManifest(ManifestOptions.builder()
+                .pnrCount(pnrCount)
+                .airline(airline)
+                .flightNumber(flightNumber)
+                .receiver(receiver)
+                .build());
+    }
+
+    public String generateFlightManifest(ManifestOptions options) {
         StringBuilder sb = new StringBuilder();
-        String messageRefNumber = generateMessageReference();
-        String interchangeRefNumber = generateInterchangeReference();
+        writeFlightManifest(options, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Streams a flight manifest interchange to the given sink.
+     * Reservations are generated, rendered and dropped one at a time, so heap use does not grow
+     * with the PNR count when the sink is a stream or file.
+     */
+    public void writeFlightManifest(ManifestOptions options, Appendable out) {
+        EdifactWriter w = new EdifactWriter(out);
+        writeManifest(options, context(options), w, true);
+        w.flush();
+    }
+
+    /**
+     * Renders the manifest's UNH..UNT message(s) once, without an envelope, for
+     * {@link #writeInterchange} to wrap for each receiver.
+     */
+    public MessageBatch renderFlightManifest(ManifestOptions options) {
+        return renderFlightManifest(options, context(options));
+    }
+
+    private MessageBatch renderFlightManifest(ManifestOptions options, GenerationContext context) {
+        StringBuilder sb = new StringBuilder();
+        EdifactWriter w = new EdifactWriter(sb);
+        String sender = writeManifest(options, context, w, false);
+        w.flush();
+        return new MessageBatch(sender, sb.toString(), w.getGroupMessageCount());
+    }
+
+    /**
+     * Wraps an already rendered manifest in an interchange for one receiver. Only UNA/UNB/UNG and
+     * UNE/UNZ are written; the messages are copied as they are.
+     */
+    public void writeInterchange(MessageBatch batch, String receiver, Appendable out) {
+        writeInterchange(batch, receiver, out, GenerationContext.create(clock));
+    }
 
-        if (airline == null || airline.isEmpty()) airline = AIRLINES[random.nextInt(AIRLINES.length)];
+    public void writeInterchange(MessageBatch batch, String receiver, Appendable out, GenerationContext context) {
+        if (receiver == null || receiver.isEmpty()) receiver = "USCBP";
+        String interchangeRefNumber = generateInterchangeReference(context.random());
+
+        EdifactWriter w = new EdifactWriter(out);
+        w.writeServiceStringAdvice();
+        writeUNB(w, context.now(), interchangeRefNumber, batch.sender(), receiver);
+        writeUNG(w, context.now(), interchangeRefNumber, batch.sender(), receiver);
+        batch.writeTo(w);
+        w.writeGroupTrailer(interchangeRefNumber);
+        w.writeInterchangeTrailer(interchangeRefNumber);
+        w.flush();
+    }
+
+    /**
+     * Generates the manifest once and returns one interchange per receiver, in the given order.
+     * The receivers get identical messages; only the envelopes differ.
+     */
+    public Map<String, String> generateFlightManifestForReceivers(ManifestOptions options,
+                                                                   Collection<String> receivers) {
+        GenerationContext context = context(options);
+        MessageBatch batch = renderFlightManifest(options, context);
+        Map<String, String> interchanges = new LinkedHashMap<>();
+        for (String receiver : receivers) {
+            StringBuilder sb = new StringBuilder(batch.messages().length() + 256);
+            writeInterchange(batch, receiver, sb, context);
+            interchanges.put(receiver, sb.toString());
+        }
+        return interchanges;
+    }
+
+    /**
+     * Streams the manifest to one sink per receiver in a single generation pass: the messages are
+     * written once and copied to every sink, each inside its own envelope. The interchanges are
+     * the same as those of {@link #generateFlightManifestForReceivers}, but none is held in memory.
+     *
+     * @param outputByReceiver sink of each receiver's interchange, in envelope order
+     */
+    public void writeFlightManifestForReceivers(ManifestOptions options,
+                                                Map<String, ? extends Appendable> outputByReceiver) {
+        GenerationContext context = context(options);
+        List<String> receivers = new ArrayList<>(outputByReceiver.keySet());
+        EdifactWriter[] envelopes = new EdifactWriter[receivers.size()];
+        String[] interchangeRefs = new String[receivers.size()];
+        EdifactWriter w = new EdifactWriter(new FanOutWriter(outputByReceiver.values()));
+        // Envelopes draw their references after the manifest's own draws, as writeInterchange does
+        writeManifest(options, context, w, false, sender -> {
+            for (int r = 0; r < envelopes.length; r++) {
+                String receiver = receivers.get(r);
+                if (receiver == null || receiver.isEmpty()) receiver = "USCBP";
+                interchangeRefs[r] = generateInterchangeReference(context.random());
+                EdifactWriter envelope = new EdifactWriter(outputByReceiver.get(receivers.get(r)));
+                envelope.writeServiceStringAdvice();
+                writeUNB(envelope, context.now(), interchangeRefs[r], sender, receiver);
+                writeUNG(envelope, context.now(), interchangeRefs[r], sender, receiver);
+                envelope.flush();
+                envelopes[r] = envelope;
+            }
+        });
+        w.flush();
+        for (int r = 0; r < envelopes.length; r++) {
+            envelopes[r].appendRenderedMessages("", w.getGroupMessageCount());
+            envelopes[r].writeGroupTrailer(interchangeRefs[r]);
+            envelopes[r].writeInterchangeTrailer(interchangeRefs[r]);
+            envelopes[r].flush();
+        }
+    }
+
+    private String writeManifest(ManifestOptions options, GenerationContext context, EdifactWriter w,
+                                 boolean envelope) {
+        return writeManifest(options, context, w, envelope, null);
+    }
+
+    /**
+     * Writes the manifest's messages, inside a full interchange envelope when {@code envelope} is
+     * set. Returns the sender (the manifested airline).
+     *
+     * @param beforeMessages called with the sender once every draw from the context's random
+     *                       source is done and before the first message is written; may be null
+     */
+    private String writeManifest(ManifestOptions options, GenerationContext context, EdifactWriter w,
+                                 boolean envelope, Consumer<String> beforeMessages) {
+        RandomGenerator random = context.random();
+        LocalDateTime now = context.now();
+        int pnrCount = options.getPnrCount();
+        String airline = options.getAirline();
+        String flightNumber = options.getFlightNumber();
+        String receiver = options.getReceiver();
+
+        int messageRefBase = random.nextInt(999999) + 1;
+        String interchangeRefNumber = generateInterchangeReference(random);
+
+        if (airline == null || airline.isEmpty()) {
+            airline = ReferenceData.airlineCode(AIRLINES[random.nextInt(AIRLINES.length)]);
+        }
         if (receiver == null || receiver.isEmpty()) receiver = "USCBP";
 
         // Generate manifested flight details
-        LocalDateTime departureDateTime = LocalDateTime.now().plusDays(random.nextInt(30) + 1);
+        LocalDateTime departureDateTime = now.plusDays(random.nextInt(30) + 1);
         String departureTime = String.format("%02d%02d", random.nextInt(24), random.nextInt(60));
         String arrivalTime   = String.format("%02d%02d", random.nextInt(24), random.nextInt(60));
 
-        String originPort = PORTS[random.nextInt(PORTS.length)];
-        String destPort;
+        int originPortId = PORTS[random.nextInt(PORTS.length)];
+        int destPortId;
         do {
-            destPort = PORTS[random.nextInt(PORTS.length)];
-        } while (destPort.equals(originPort));
+            destPortId = PORTS[random.nextInt(PORTS.length)];
+        } while (destPortId == originPortId);
+        String originPort = ReferenceData.airportCode(originPortId);
+        String destPort = ReferenceData.airportCode(destPortId);
 
         if (flightNumber == null || flightNumber.isEmpty()) {
             flightNumber = String.format("%04d", random.nextInt(9900) + 100);
@@ -90,420 +256,659 @@ public class FlightManifestGenerator {
                 .aircraftType("320")
                 .build();
 
-        // Generate multiple PNRs
-        List<Reservation> reservations = new ArrayList<>();
+        // PNRs are generated lazily from per-PNR seeds: a cheap first pass resolves each PNR's spec
+        // to sum the passenger counts for EQN, then each reservation is regenerated, rendered and
+        // released one at a time.
+        long pnrSeed = random.nextLong();
+
+        // Seated passenger k of the manifest takes the k-th seat of a shuffled seat order, so seats
+        // on the shared reporting flight are unique and do not depend on the order PNRs are
+        // rendered in. Only PNRs that start within the cabin's capacity need their offset.
+        SeatMap seatMap = SeatMap.forAircraft(reportingFlight.getAircraftType());
+        int[] seatOrder = shuffledSeats(random, seatMap.capacity());
+        int[] firstSeated = new int[Math.min(pnrCount, 64)];
+        int seatedPnrs = 0;
+        long passengerSum = 0;
+        int seatedSum = 0;
         for (int i = 0; i < pnrCount; i++) {
-            int passengerCount = random.nextInt(4) + 1;
-            boolean includeCodeshare = random.nextInt(3) == 0; // Less frequent
-            boolean includeThruFlight = random.nextInt(3) == 0; // Less frequent
-            boolean includeBags = random.nextInt(2) == 0;
-            boolean includeSeats = random.nextInt(2) == 0;
-            boolean includeDocuments = random.nextInt(2) == 0;
-            boolean includePayment = random.nextInt(2) == 0;
-            boolean includePhoneNumbers = random.nextInt(2) == 0;
-            boolean includeAgencyInfo = random.nextInt(2) == 0;
-            boolean includeCreditCard = includePayment && random.nextInt(2) == 0;
-
-            // For manifests, generate only 1 flight which will be replaced by reporting flight
-            Reservation reservation = sampleDataGenerator.generateRandomReservation(
-                    passengerCount,
-                    1,                  // flightCount: always 1, replaced by reporting flight
-                    includeBags,
-                    includeSeats,
-                    includeDocuments,
-                    includePayment,
-                    includeCodeshare,
-                    includeThruFlight,
-                    includePhoneNumbers,
-                    includeAgencyInfo,
-                    includeCreditCard
-            );
-
-            // Replace the generated flight with the reporting flight and update seat associations
-            Flight oldFlight = reservation.getFlights().isEmpty() ? null : reservation.getFlights().get(0);
-            reservation.getFlights().clear();
-            reservation.getFlights().add(reportingFlight);
-
-            // Update all seat assignments that reference the old flight to reference the reporting flight
-            for (Passenger pax : reservation.getPassengers()) {
-                for (SeatAssignment seat : pax.getSeats()) {
-                    if (oldFlight != null && seat.getFlight() == oldFlight) {
-                        seat.setFlight(reportingFlight);
-                    }
+            ReservationSpec drawn = MANIFEST_PNR_SPEC.resolve(pnrContext(context, pnrSeed, i).random());
+            passengerSum += drawn.getMinPassengers();
+            if (seatedSum < seatOrder.length) {
+                if (i == firstSeated.length) {
+                    firstSeated = Arrays.copyOf(firstSeated, Math.min(pnrCount, i * 2));
+                }
+                firstSeated[i] = seatedSum;
+                seatedPnrs = i + 1;
+                if (drawn.getSeatsProbability() > 0) {
+                    seatedSum += drawn.getMinPassengers();
                 }
             }
+        }
+        final String totalPassengers = Long.toString(passengerSum);
+        ManifestFlight seatedFlight = new ManifestFlight(List.of(reportingFlight), seatMap, seatOrder,
+                Arrays.copyOf(firstSeated, seatedPnrs));
 
-            reservations.add(reservation);
+        if (beforeMessages != null) {
+            beforeMessages.accept(airline);
         }
 
-        int totalPassengers = reservations.stream().mapToInt(r -> r.getPassengers().size()).sum();
+        if (envelope) {
+            // UNA – Service string advice
+            w.writeServiceStringAdvice();
 
-        // UNA – Service string advice
-        sb.append("UNA:+.?*'").append("\n");
+            // UNB – Interchange Header
+            writeUNB(w, now, interchangeRefNumber, airline, receiver);
 
-        // UNB – Interchange Header
-        sb.append(generateUNB(interchangeRefNumber, airline, receiver)).append("\n");
+            // UNG – Functional group header
+            writeUNG(w, now, interchangeRefNumber, airline, receiver);
+        }
 
-        // UNG – Functional group header
-        sb.append(generateUNG(interchangeRefNumber, airline, receiver)).append("\n");
+        // Header segments, repeated at the start of every part when the message is split
+        MessageSplitter.PartHeader messageHeader = (hw, messageRef, partNumber, lastPart) -> {
+            // UNH – Message Header
+            writeUNH(hw, messageRef, manifestAirline, manifestFlight, departureDateTime, departureTime,
+                    partNumber, lastPart);
+
+            // MSG – Message action details
+            writeMSG(hw);
+
+            // ORG – Originator
+            writeORG(hw, manifestAirline);
+
+            // TVL – Reporting (manifested) flight
+            writeTVLHeader(hw, departureDateTime, departureTime, arrivalTime,
+                    manifestOriginPort, manifestDestPort, manifestAirline, manifestFlight);
+
+            // EQN – Total passengers on the manifested flight, the same in every part
+            hw.segment("EQN").element(totalPassengers).end();
+        };
+        IntFunction<String> messageRefs = partNumber -> generateMessageReference(messageRefBase, partNumber);
+
+        // PNR records for each reservation; flight-invariant fragments are rendered once per manifest
+        FlightFragmentCache<FlightFragments> fragments = new FlightFragmentCache<>(this::renderFlightFragments);
+        Executor executor = options.getExecutor() != null ? options.getExecutor() : ForkJoinPool.commonPool();
+        int parallelism = executor instanceof ForkJoinPool pool
+                ? pool.getParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        boolean parallel = options.isParallel() && parallelism > 1;
+
+        if (options.getMaxPnrsPerMessage() <= 0 && options.getMaxMessageSize() <= 0) {
+            messageHeader.write(w, messageRefs.apply(1), 1, true);
+            if (parallel) {
+                writePnrsInParallel(w::appendRendered, executor, parallelism, pnrCount, pnrSeed, context,
+                        seatedFlight, airline, fragments);
+            } else {
+                for (int i = 0; i < pnrCount; i++) {
+                    writeManifestPnr(w, pnrContext(context, pnrSeed, i), i, seatedFlight, airline, fragments);
+                }
+            }
 
-        // UNH – Message Header
-        sb.append(generateUNH(messageRefNumber, airline, flightNumber, departureDateTime, originPort, destPort)).append("\n");
+            // UNT – Message Trailer
+            w.writeMessageTrailer(messageRefs.apply(1));
+        } else {
+            // UNH..UNT parts are opened and closed by the splitter as PNR sections arrive
+            MessageSplitter splitter = new MessageSplitter(w, messageHeader, messageRefs,
+                    options.getMaxPnrsPerMessage(), options.getMaxMessageSize(), pnrCount);
+            if (parallel) {
+                writePnrsInParallel(splitter::append, executor, parallelism, pnrCount, pnrSeed, context,
+                        seatedFlight, airline, fragments);
+            } else {
+                writePnrSections(splitter::append, pnrCount, pnrSeed, context, seatedFlight, airline, fragments);
+            }
+            splitter.finish();
+        }
 
-        // MSG – Message action details
-        sb.append(generateMSG()).append("\n");
+        if (envelope) {
+            // UNE – Functional group trailer
+            w.writeGroupTrailer(interchangeRefNumber);
 
-        // ORG – Originator
-        sb.append(generateORG(airline)).append("\n");
+            // UNZ – Interchange Trailer
+            w.writeInterchangeTrailer(interchangeRefNumber);
+        }
+        return airline;
+    }
 
-        // TVL – Reporting (manifested) flight
-        sb.append(generateTVLHeader(departureDateTime, departureTime, arrivalTime,
-                originPort, destPort, airline, flightNumber)).append("\n");
+    private GenerationContext context(ManifestOptions options) {
+        return GenerationContext.create(clock, options.getSeed(), options.getReferenceTime());
+    }
 
-        // EQN – Total passengers on the manifested flight
-        sb.append("EQN").append(DATA_ELEMENT_SEPARATOR)
-                .append(totalPassengers).append(SEGMENT_TERMINATOR).append("\n");
+    /**
+     * Routes a flight's reservations to the jurisdictions their itineraries touch, using the
+     * airport countries of {@link ReferenceData}, and returns one manifest interchange per country.
+     *
+     * @param receiverByCountry jurisdictions to report to, by ISO country code, with the receiver
+     *                          of each; iteration order is kept in the result
+     */
+    public Map<String, String> routeFlightManifest(Flight reportingFlight, List<Reservation> reservations,
+                                                   Map<String, String> receiverByCountry) {
+        Map<String, StringBuilder> outputs = new LinkedHashMap<>();
+        for (String country : receiverByCountry.keySet()) {
+            outputs.put(country, new StringBuilder());
+        }
+        writeFlightManifestsByCountry(reportingFlight, reservations, receiverByCountry, outputs::get,
+                GenerationContext.create(clock));
+        Map<String, String> interchanges = new LinkedHashMap<>();
+        outputs.forEach((country, sb) -> interchanges.put(country, sb.toString()));
+        return interchanges;
+    }
 
-        // PNR records for each reservation
-        for (Reservation reservation : reservations) {
-            sb.append(generatePnrFromReservation(reservation, airline));
+    /**
+     * Writes one manifest interchange per jurisdiction in a single rendering pass. A reservation is
+     * sent to every country in which one of its flights departs or arrives. Its PNR section is
+     * rendered once and copied to each of those outputs; reservations touching none of the
+     * jurisdictions are skipped. Every output has its own EQN, counting only the passengers routed
+     * to it, and its own trailers.
+     * <p>
+     * Airports are classified by their {@link ReferenceData} country id, so routing is a pair of
+     * array reads per airport; airports and countries that are not registered route nowhere.
+     *
+     * @param receiverByCountry jurisdictions to report to, by ISO country code, with the receiver of each
+     * @param outputForCountry  sink for each jurisdiction's interchange
+     * @param context           source of references, ticket numbers and envelope timestamps
+     */
+    public void writeFlightManifestsByCountry(Flight reportingFlight, List<Reservation> reservations,
+                                              Map<String, String> receiverByCountry,
+                                              Function<String, Appendable> outputForCountry,
+                                              GenerationContext context) {
+        RandomGenerator random = context.random();
+        List<String> countries = new ArrayList<>(receiverByCountry.keySet());
+        int[] outputByCountry = new int[ReferenceData.countryCount()];
+        Arrays.fill(outputByCountry, -1);
+        for (int c = 0; c < countries.size(); c++) {
+            int country = ReferenceData.country(countries.get(c));
+            if (country != ReferenceData.UNKNOWN) {
+                outputByCountry[country] = c;
+            }
         }
 
-        // Segment count (UNA is not counted in EDIFACT segment count)
-        String[] allLines = sb.toString().split("[\r\n]+");
-        long segmentCount = Arrays.stream(allLines)
-                .filter(l -> !l.isEmpty() && !l.startsWith("UNA"))
-                .count();
+        // Classify once: which outputs each reservation goes to, and the EQN of each output
+        int[][] routes = new int[reservations.size()][];
+        int[] passengerTotals = new int[countries.size()];
+        boolean[] touched = new boolean[countries.size()];
+        int[] scratch = new int[countries.size()];
+        for (int i = 0; i < routes.length; i++) {
+            Reservation reservation = reservations.get(i);
+            int routeCount = 0;
+            for (Flight flight : reservation.getFlights()) {
+                routeCount = addRoute(outputByCountry, flight.getDepartureAirport(), touched, scratch, routeCount);
+                routeCount = addRoute(outputByCountry, flight.getArrivalAirport(), touched, scratch, routeCount);
+            }
+            routes[i] = Arrays.copyOf(scratch, routeCount);
+            for (int r = 0; r < routeCount; r++) {
+                touched[scratch[r]] = false;
+                passengerTotals[scratch[r]] += reservation.getPassengers().size();
+            }
+        }
 
-        // UNT – Message Trailer
-        sb.append(generateUNT((int) segmentCount + 1, messageRefNumber)).append("\n");
+        // Envelope and header of every output
+        String airline = reportingFlight.getAirlineCode();
+        String flightNumber = reportingFlight.getFlightNumber();
+        LocalDateTime departure = reportingFlight.getDepartureDate();
+        String departureTime = String.format("%02d%02d", departure.getHour(), departure.getMinute());
+        LocalDateTime arrival = reportingFlight.getArrivalDate();
+        String arrivalTime = String.format("%02d%02d", arrival.getHour(), arrival.getMinute());
+
+        EdifactWriter[] writers = new EdifactWriter[countries.size()];
+        String[] interchangeRefs = new String[countries.size()];
+        String[] messageRefs = new String[countries.size()];
+        for (int c = 0; c < writers.length; c++) {
+            String receiver = receiverByCountry.get(countries.get(c));
+            interchangeRefs[c] = generateInterchangeReference(random);
+            messageRefs[c] = generateMessageReference(random.nextInt(999999) + 1, 1);
+            EdifactWriter w = new EdifactWriter(outputForCountry.apply(countries.get(c)));
+            w.writeServiceStringAdvice();
+            writeUNB(w, context.now(), interchangeRefs[c], airline, receiver);
+            writeUNG(w, context.now(), interchangeRefs[c], airline, receiver);
+            writeUNH(w, messageRefs[c], airline, flightNumber, departure, departureTime, 1, true);
+            writeMSG(w);
+            writeORG(w, airline);
+            writeTVLHeader(w, departure, departureTime, arrivalTime, reportingFlight.getDepartureAirport(),
+                    reportingFlight.getArrivalAirport(), airline, flightNumber);
+            w.segment("EQN").element(passengerTotals[c]).end();
+            writers[c] = w;
+        }
 
-        // UNE – Functional group trailer
-        sb.append(generateUNE(interchangeRefNumber)).append("\n");
+        // Render each routed reservation once and copy it to its outputs
+        FlightFragmentCache<FlightFragments> fragments = new FlightFragmentCache<>(this::renderFlightFragments);
+        StringBuilder section = new StringBuilder(2048);
+        EdifactWriter sectionWriter = new EdifactWriter(section);
+        for (int i = 0; i < routes.length; i++) {
+            if (routes[i].length == 0) {
+                continue;
+            }
+            int segmentsBefore = sectionWriter.getMessageSegmentCount();
+            writePnrFromReservation(sectionWriter, reservations.get(i), airline, random, fragments);
+            sectionWriter.flush();
+            int segmentCount = sectionWriter.getMessageSegmentCount() - segmentsBefore;
+            for (int c : routes[i]) {
+                writers[c].appendRendered(section, segmentCount);
+            }
+            section.setLength(0);
+        }
 
-        // UNZ – Interchange Trailer
-        sb.append(generateUNZ(interchangeRefNumber)).append("\n");
+        for (int c = 0; c < writers.length; c++) {
+            writers[c].writeMessageTrailer(messageRefs[c]);
+            writers[c].writeGroupTrailer(interchangeRefs[c]);
+            writers[c].writeInterchangeTrailer(interchangeRefs[c]);
+            writers[c].flush();
+        }
+    }
 
-        return sb.toString();
+    /** Records the jurisdiction of an airport once per reservation; returns the new route count. */
+    private static int addRoute(int[] outputByCountry, String airportCode,
+                                boolean[] touched, int[] routes, int routeCount) {
+        int airport = ReferenceData.airport(airportCode);
+        int c = airport == ReferenceData.UNKNOWN ? -1 : outputByCountry[ReferenceData.countryOfAirport(airport)];
+        if (c < 0 || touched[c]) {
+            return routeCount;
+        }
+        touched[c] = true;
+        routes[routeCount] = c;
+        return routeCount + 1;
     }
 
-    // ── PNR section ──────────────────────────────────────────────────────────
+    private static GenerationContext pnrContext(GenerationContext manifest, long pnrSeed, int pnrIndex) {
+        return manifest.indexed(pnrSeed, pnrIndex);
+    }
 
-    private String generatePnrFromReservation(Reservation reservation, String manifestAirline) {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Generates and renders one PNR. Every random draw, including ticket numbers, comes from the
+     * PNR's own source, which is what makes parallel output identical to sequential output.
+     */
+    private void writeManifestPnr(EdifactWriter w, GenerationContext pnrContext, int pnrIndex,
+                                  ManifestFlight seatedFlight, String airline,
+                                  FlightFragmentCache<FlightFragments> fragments) {
+        Reservation reservation = sampleDataGenerator.generateReservation(MANIFEST_PNR_SPEC, pnrContext,
+                seatedFlight.itinerary(), seatedFlight.seatPlan(pnrIndex));
+        writePnrFromReservation(w, reservation, airline, pnrContext.random(), fragments);
+    }
+
+    /**
+     * Renders PNR sections one after another into a reused buffer and hands each to the sink,
+     * so that the sink can measure a section before placing it.
+     */
+    private void writePnrSections(ObjIntConsumer<CharSequence> sink, int pnrCount, long pnrSeed,
+                                  GenerationContext context, ManifestFlight seatedFlight, String airline,
+                                  FlightFragmentCache<FlightFragments> fragments) {
+        StringBuilder section = new StringBuilder(2048);
+        EdifactWriter sectionWriter = new EdifactWriter(section);
+        for (int i = 0; i < pnrCount; i++) {
+            int segmentsBefore = sectionWriter.getMessageSegmentCount();
+            writeManifestPnr(sectionWriter, pnrContext(context, pnrSeed, i), i, seatedFlight, airline, fragments);
+            sectionWriter.flush();
+            sink.accept(section, sectionWriter.getMessageSegmentCount() - segmentsBefore);
+            section.setLength(0);
+        }
+    }
+
+    /**
+     * Renders PNR sections on the configured pool into private buffers and hands them to the sink
+     * in PNR order. Only a bounded window of sections is in flight, so memory stays flat.
+     */
+    private void writePnrsInParallel(ObjIntConsumer<CharSequence> sink, Executor executor, int parallelism, int pnrCount,
+                                     long pnrSeed, GenerationContext context, ManifestFlight seatedFlight,
+                                     String airline, FlightFragmentCache<FlightFragments> fragments) {
+        int window = parallelism * 4;
+
+        Deque<CompletableFuture<RenderedSection>> inFlight = new ArrayDeque<>(window);
+        int next = 0;
+        int written = 0;
+        while (written < pnrCount) {
+            while (next < pnrCount && inFlight.size() < window) {
+                final int pnrIndex = next++;
+                inFlight.addLast(CompletableFuture.supplyAsync(() -> {
+                    StringBuilder section = new StringBuilder(2048);
+                    EdifactWriter sectionWriter = new EdifactWriter(section);
+                    writeManifestPnr(sectionWriter, pnrContext(context, pnrSeed, pnrIndex), pnrIndex, seatedFlight,
+                            airline, fragments);
+                    sectionWriter.flush();
+                    return new RenderedSection(section, sectionWriter.getMessageSegmentCount());
+                }, executor));
+            }
+            RenderedSection section = inFlight.removeFirst().join();
+            sink.accept(section.segments(), section.segmentCount());
+            written++;
+        }
+    }
+
+    private record RenderedSection(StringBuilder segments, int segmentCount) { }
+
+    /** The seats of a cabin in a random order drawn from the manifest's source. */
+    private static int[] shuffledSeats(RandomGenerator random, int capacity) {
+        int[] order = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            int j = random.nextInt(i + 1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        return order;
+    }
+
+    /**
+     * The reporting flight, its cabin shared by every PNR of the manifest, and the position of each
+     * PNR's first seated passenger in the seat order. PNRs past the end of the array start beyond
+     * the cabin's capacity.
+     */
+    private record ManifestFlight(List<Flight> itinerary, SeatMap seatMap, int[] seatOrder, int[] firstSeated) {
+
+        /** Seats passenger {@code p} of PNR {@code pnrIndex} on the seat order's next seat. */
+        SeatPlan seatPlan(int pnrIndex) {
+            int first = pnrIndex < firstSeated.length ? firstSeated[pnrIndex] : seatOrder.length;
+            return new SeatPlan() {
+                @Override
+                public SeatMap seatMap(int leg) {
+                    return seatMap;
+                }
+
+                @Override
+                public int preferredSeat(int leg, int passenger, RandomGenerator random) {
+                    int ordinal = first + passenger;
+                    return ordinal < seatOrder.length ? seatOrder[ordinal] : -1;
+                }
+            };
+        }
+    }
+
+    private void writePnrFromReservation(EdifactWriter w, Reservation reservation, String manifestAirline,
+                                         RandomGenerator random, FlightFragmentCache<FlightFragments> fragments) {
+        ReservationRenderIndex index = ReservationRenderIndex.of(reservation);
+        List<Flight> sortedFlights = index.getSortedFlights();
+        FlightFragments[] flightFragments = new FlightFragments[sortedFlights.size()];
+        for (int f = 0; f < flightFragments.length; f++) {
+            flightFragments[f] = fragments.get(sortedFlights.get(f));
+        }
 
         // SRC – Start of PNR section
-        sb.append("SRC").append(SEGMENT_TERMINATOR).append("\n");
+        w.segment("SRC").end();
 
         // RCI – Reservation control information
         String airlineCode = reservation.getFlights().isEmpty()
                 ? manifestAirline
                 : reservation.getFlights().get(0).getAirlineCode();
-        sb.append(generateRCI(reservation, airlineCode)).append("\n");
+        writeRCI(w, reservation, airlineCode);
 
         // DAT – Last PNR transaction date/time
-        sb.append(generateTransactionDAT(reservation.getCreatedDate())).append("\n");
+        writeTransactionDAT(w, reservation.getCreatedDate());
 
         // IFT – OSI free text contact details
         if (reservation.getContactPhone() != null && !reservation.getContactPhone().isEmpty()) {
-            sb.append(generateIFT(airlineCode + " PHONE " + reservation.getContactPhone().toUpperCase())).append("\n");
+            writeIFT(w, airlineCode, " PHONE ", reservation.getContactPhone());
         }
         if (reservation.getContactEmail() != null && !reservation.getContactEmail().isEmpty()) {
-            sb.append(generateIFT(airlineCode + " EMAIL " + reservation.getContactEmail().toUpperCase())).append("\n");
+            writeIFT(w, airlineCode, " EMAIL ", reservation.getContactEmail());
         }
 
         // ORG – Booking agent
         String agencyCode = (reservation.getAgencyCode() != null && !reservation.getAgencyCode().isEmpty())
                 ? reservation.getAgencyCode()
                 : "TTY";
-        sb.append(generateBookingORG(agencyCode)).append("\n");
+        writeBookingORG(w, agencyCode);
 
         // Per-passenger segments
+        int passengerCount = index.getPassengerCount();
         int passengerIndex = 1;
-        for (Passenger passenger : reservation.getPassengers()) {
+        for (Passenger passenger : index.getPassengers()) {
             // TIF – Traveller information
-            sb.append(generateTIF(passenger, passengerIndex)).append("\n");
+            writeTIF(w, passenger, passengerIndex);
 
             // SSR DOCS – Passport information
             for (TravelDocument document : passenger.getDocuments()) {
-                sb.append(generateSSR_DOCS(document, passenger, passengerIndex)).append("\n");
+                writeSSR_DOCS(w, document, passenger, passengerIndex);
             }
 
             // SSR TKNE – Ticket numbers for each flight
-            List<Flight> sortedFlights = reservation.getFlights().stream()
-                    .sorted(Comparator.comparingInt(f -> f.getSegmentNumber() != null ? f.getSegmentNumber() : 0))
-                    .collect(Collectors.toList());
-            int flightIndex = 1;
-            for (Flight flight : sortedFlights) {
-                sb.append(generateSSR_TKNE(flight, passengerIndex, flightIndex)).append("\n");
-                flightIndex++;
+            for (int f = 0; f < sortedFlights.size(); f++) {
+                writeSSR_TKNE(w, random, flightFragments[f], passengerIndex, f + 1);
             }
 
             passengerIndex++;
         }
 
         // TVL + RPI + APD + SSR SEAT + SSR TKNE + RCI per flight
-        List<Flight> sortedFlightsForTVL = reservation.getFlights().stream()
-                .sorted(Comparator.comparingInt(f -> f.getSegmentNumber() != null ? f.getSegmentNumber() : 0))
-                .collect(Collectors.toList());
+        for (int f = 0; f < sortedFlights.size(); f++) {
+            Flight flight = sortedFlights.get(f);
+            FlightFragments ff = flightFragments[f];
 
-        // Build passenger ID to index map for proper seat ordering
-        Map<Long, Integer> passengerIdToIndex = new HashMap<>();
-        int pIdx = 1;
-        for (Passenger p : reservation.getPassengers()) {
-            if (p.getId() != null) passengerIdToIndex.put(p.getId(), pIdx);
-            pIdx++;
-        }
-
-        for (Flight flight : sortedFlightsForTVL) {
             // TVL – Flight segment
-            sb.append(generateTVLFlight(flight)).append("\n");
+            ff.tvl().writeTo(w);
 
             // RPI – Reporting flight information
             String status = flight.getFlightStatus() != null ? flight.getFlightStatus() : "HK";
-            sb.append(generateRPI(reservation.getPassengers().size(), status)).append("\n");
+            writeRPI(w, passengerCount, status);
 
             // APD – Equipment type
-            String aircraftType = flight.getAircraftType() != null ? flight.getAircraftType() : "320";
-            sb.append("APD").append(DATA_ELEMENT_SEPARATOR).append(aircraftType)
-                    .append(SEGMENT_TERMINATOR).append("\n");
+            ff.apd().writeTo(w);
 
             // SSR SEAT – Seat assignments for this flight
-            final Flight currentFlight = flight;
-            List<SeatAssignment> seatsForFlight = reservation.getPassengers().stream()
-                    .flatMap(p -> p.getSeats().stream())
-                    .filter(s -> {
-                        if (currentFlight.getId() != null)
-                            return currentFlight.getId().equals(s.getFlightId());
-                        return s.getFlight() == currentFlight; // unpersisted flight: use reference equality
-                    })
-                    .sorted(Comparator.comparingInt(s -> passengerIdToIndex.getOrDefault(s.getPassengerId(), 0)))
-                    .collect(Collectors.toList());
-
+            List<ReservationRenderIndex.SeatRef> seatsForFlight = index.getSeats(f);
             if (!seatsForFlight.isEmpty()) {
-                StringBuilder seatListBuilder = new StringBuilder();
-                for (SeatAssignment seat : seatsForFlight) {
-                    int seatPaxIdx = passengerIdToIndex.getOrDefault(seat.getPassengerId(), 1);
-                    seatListBuilder.append(DATA_ELEMENT_SEPARATOR)
-                            .append(seat.getSeatNumber())
-                            .append(COMPONENT_SEPARATOR).append(COMPONENT_SEPARATOR)
-                            .append(seatPaxIdx);
-                }
-                sb.append(generateSSR_SEAT(flight, reservation.getPassengers().size(), seatListBuilder.toString())).append("\n");
+                writeSSR_SEAT(w, ff, passengerCount, seatsForFlight);
             }
 
             // SSR TKNE – Ticket number for each passenger on this flight
-            int ssrPaxIndex = 1;
-            for (Passenger passenger : reservation.getPassengers()) {
-                sb.append(generateSSR_TKNE_Simple(flight, ssrPaxIndex)).append("\n");
-                ssrPaxIndex++;
+            for (int ssrPaxIndex = 1; ssrPaxIndex <= passengerCount; ssrPaxIndex++) {
+                writeSSR_TKNE_Simple(w, random, ff, ssrPaxIndex);
             }
 
             // RCI – Record locator after each flight
-            sb.append(generateRCI(reservation, airlineCode)).append("\n");
+            writeRCI(w, reservation, airlineCode);
         }
-
-        return sb.toString();
     }
 
-    // ── Interchange / envelope segments ─────────────────────────────────────
+    /** Parts of a flight's segments that are identical for every PNR on that flight. */
+    private record FlightFragments(RenderedFragment tvl, RenderedFragment apd, RenderedFragment route) { }
+
+    private FlightFragments renderFlightFragments(Flight flight) {
+        String aircraftType = flight.getAircraftType() != null ? flight.getAircraftType() : "320";
+        return new FlightFragments(
+                RenderedFragment.render(fw -> writeTVLFlight(fw, flight)),
+                RenderedFragment.render(fw -> fw.segment("APD").element(aircraftType).end()),
+                // ":airline:::from:to" shared by SSR TKNE and SSR SEAT; not a complete segment
+                RenderedFragment.render(fw -> fw.component(flight.getAirlineCode())
+                        .component().component()
+                        .component(flight.getDepartureAirport()).component(flight.getArrivalAirport())));
+    }
 
-    private String generateUNB(String interchangeRef, String sender, String receiver) {
-        LocalDateTime now = LocalDateTime.now();
-        String date = now.format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String time = now.format(TIME_FMT);
-        return "UNB" + DATA_ELEMENT_SEPARATOR + "IATA" + COMPONENT_SEPARATOR + "1"
-                + DATA_ELEMENT_SEPARATOR + sender
-                + DATA_ELEMENT_SEPARATOR + receiver
-                + DATA_ELEMENT_SEPARATOR + date + COMPONENT_SEPARATOR + time
-                + DATA_ELEMENT_SEPARATOR + interchangeRef
-                + DATA_ELEMENT_SEPARATOR + "PNRGOV" + SEGMENT_TERMINATOR;
+    private void writeUNB(EdifactWriter w, LocalDateTime now, String interchangeRef, String sender, String receiver) {
+        w.segment("UNB").element("IATA").component("1")
+                .element(sender)
+                .element(receiver)
+                .element().appendDate(now).component().appendTime(now)
+                .element(interchangeRef)
+                .element("PNRGOV").end();
     }
 
-    private String generateUNG(String groupRef, String sender, String receiver) {
-        LocalDateTime now = LocalDateTime.now();
-        String date = now.format(DateTimeFormatter.ofPattern("ddMMyy"));
-        String time = now.format(TIME_FMT);
-        return "UNG" + DATA_ELEMENT_SEPARATOR + "PNRGOV"
-                + DATA_ELEMENT_SEPARATOR + sender
-                + DATA_ELEMENT_SEPARATOR + receiver
-                + DATA_ELEMENT_SEPARATOR + date + COMPONENT_SEPARATOR + time
-                + DATA_ELEMENT_SEPARATOR + groupRef
-                + DATA_ELEMENT_SEPARATOR + "IA"
-                + DATA_ELEMENT_SEPARATOR + "11" + COMPONENT_SEPARATOR + "1" + SEGMENT_TERMINATOR;
+    private void writeUNG(EdifactWriter w, LocalDateTime now, String groupRef, String sender, String receiver) {
+        w.segment("UNG").element("PNRGOV")
+                .element(sender)
+                .element(receiver)
+                .element().appendDate(now).component().appendTime(now)
+                .element(groupRef)
+                .element("IA")
+                .element("11").component("1").end();
     }
 
-    private String generateUNH(String messageRef, String airline, String flightNumber,
-                                LocalDateTime departureDate, String origin, String destination) {
+    /**
+     * UNH with the common access reference airline+flight/ddMMyy/HHmm, which is identical in every
+     * part of a split message. Parts carry the status of transfer: 01:C, 02, ..., NN:F.
+     */
+    private void writeUNH(EdifactWriter w, String messageRef, String airline, String flightNumber,
+                          LocalDateTime departureDate, String departureTime, int partNumber, boolean lastPart) {
+        w.segment("UNH").element(messageRef)
+                .element("PNRGOV").component("11").component("1").component("IA")
+                .element(airline);
         // Pad flight number left to 4 chars with zeros
-        String paddedFlight = flightNumber.length() >= 4 ? flightNumber
-                : "0000".substring(0, 4 - flightNumber.length()) + flightNumber;
-        String flightInfo = airline + paddedFlight + departureDate.format(DEP_DATE_FMT) + origin + destination + "001";
-        return "UNH" + DATA_ELEMENT_SEPARATOR + messageRef
-                + DATA_ELEMENT_SEPARATOR + "PNRGOV" + COMPONENT_SEPARATOR + "11"
-                + COMPONENT_SEPARATOR + "1" + COMPONENT_SEPARATOR + "IA"
-                + DATA_ELEMENT_SEPARATOR + flightInfo + SEGMENT_TERMINATOR;
+        for (int i = flightNumber.length(); i < 4; i++) {
+            w.append('0');
+        }
+        w.append(flightNumber).append('/').appendDate(departureDate).append('/').append(departureTime);
+        if (partNumber > 1 || !lastPart) {
+            w.element().appendPadded(partNumber, 2);
+            if (partNumber == 1) {
+                w.component("C");
+            } else if (lastPart) {
+                w.component("F");
+            }
+        }
+        w.end();
     }
 
-    private String generateMSG() {
-        return "MSG" + DATA_ELEMENT_SEPARATOR + COMPONENT_SEPARATOR + "22" + SEGMENT_TERMINATOR;
+    private void writeMSG(EdifactWriter w) {
+        w.segment("MSG").element().component("22").end();
     }
 
-    private String generateORG(String airlineCode) {
-        return "ORG" + DATA_ELEMENT_SEPARATOR + airlineCode + SEGMENT_TERMINATOR;
+    private void writeORG(EdifactWriter w, String airlineCode) {
+        w.segment("ORG").element(airlineCode).end();
     }
 
-    private String generateBookingORG(String agencyCode) {
-        return "ORG" + DATA_ELEMENT_SEPARATOR + "XX" + COMPONENT_SEPARATOR + agencyCode + SEGMENT_TERMINATOR;
+    private void writeBookingORG(EdifactWriter w, String agencyCode) {
+        w.segment("ORG").element("XX").component(agencyCode).end();
     }
 
-    // ── TVL segments ─────────────────────────────────────────────────────────
-
     /** Manifest-level TVL (header reporting flight). */
-    private String generateTVLHeader(LocalDateTime departureDate, String departureTime,
-                                     String arrivalTime, String origin, String destination,
-                                     String airline, String flightNumber) {
-        String depDate = departureDate.format(DATE_FMT);
-        String arrDate = departureDate.format(DATE_FMT);
-        return "TVL" + DATA_ELEMENT_SEPARATOR + depDate + COMPONENT_SEPARATOR + departureTime
-                + COMPONENT_SEPARATOR + arrDate + COMPONENT_SEPARATOR + arrivalTime
-                + DATA_ELEMENT_SEPARATOR + origin
-                + DATA_ELEMENT_SEPARATOR + destination
-                + DATA_ELEMENT_SEPARATOR + airline
-                + DATA_ELEMENT_SEPARATOR + flightNumber + COMPONENT_SEPARATOR + "Y" + SEGMENT_TERMINATOR;
+    private void writeTVLHeader(EdifactWriter w, LocalDateTime departureDate, String departureTime,
+                                String arrivalTime, String origin, String destination,
+                                String airline, String flightNumber) {
+        w.segment("TVL").element().appendDate(departureDate).component(departureTime)
+                .component().appendDate(departureDate).component(arrivalTime)
+                .element(origin)
+                .element(destination)
+                .element(airline)
+                .element(flightNumber).component("Y").end();
     }
 
     /** Per-PNR flight TVL segment. */
-    private String generateTVLFlight(Flight flight) {
-        String depDate = flight.getDepartureDate().format(DATE_FMT);
-        String depTime = flight.getDepartureDate().format(TIME_FMT);
-        String arrDate = flight.getArrivalDate().format(DATE_FMT);
-        String arrTime = flight.getArrivalDate().format(TIME_FMT);
+    private void writeTVLFlight(EdifactWriter w, Flight flight) {
         String sc = flight.getServiceClass() != null ? flight.getServiceClass() : "Y";
-        return "TVL" + DATA_ELEMENT_SEPARATOR + depDate + COMPONENT_SEPARATOR + depTime
-                + COMPONENT_SEPARATOR + arrDate + COMPONENT_SEPARATOR + arrTime
-                + DATA_ELEMENT_SEPARATOR + flight.getDepartureAirport()
-                + DATA_ELEMENT_SEPARATOR + flight.getArrivalAirport()
-                + DATA_ELEMENT_SEPARATOR + flight.getAirlineCode()
-                + DATA_ELEMENT_SEPARATOR + flight.getFlightNumber() + COMPONENT_SEPARATOR + sc
-                + SEGMENT_TERMINATOR;
+        w.segment("TVL")
+                .element().appendDate(flight.getDepartureDate()).component().appendTime(flight.getDepartureDate())
+                .component().appendDate(flight.getArrivalDate()).component().appendTime(flight.getArrivalDate())
+                .element(flight.getDepartureAirport())
+                .element(flight.getArrivalAirport())
+                .element(flight.getAirlineCode())
+                .element(flight.getFlightNumber()).component(sc).end();
     }
 
-    // ── Passenger segments ───────────────────────────────────────────────────
-
-    private String generateTIF(Passenger passenger, int passengerIndex) {
+    private void writeTIF(EdifactWriter w, Passenger passenger, int passengerIndex) {
         String paxType = "ADT".equals(passenger.getPassengerType()) ? "A"
                 : (passenger.getPassengerType() != null ? passenger.getPassengerType() : "A");
         String title = passenger.getTitle() != null ? passenger.getTitle() : "";
-        return "TIF" + DATA_ELEMENT_SEPARATOR + passenger.getLastName().toUpperCase()
-                + DATA_ELEMENT_SEPARATOR + passenger.getFirstName().toUpperCase() + " " + title
-                + COMPONENT_SEPARATOR + paxType
-                + COMPONENT_SEPARATOR + passengerIndex + ".1" + SEGMENT_TERMINATOR;
+        w.segment("TIF").element().appendUpper(passenger.getLastName())
+                .element().appendUpper(passenger.getFirstName()).append(' ').append(title)
+                .component(paxType)
+                .component(passengerIndex).append(".1").end();
     }
 
-    private String generateRPI(int passengerCount, String status) {
-        return "RPI" + DATA_ELEMENT_SEPARATOR + passengerCount
-                + DATA_ELEMENT_SEPARATOR + status + SEGMENT_TERMINATOR;
+    private void writeRPI(EdifactWriter w, int passengerCount, String status) {
+        w.segment("RPI").element(passengerCount).element(status).end();
     }
 
-    private String generateIFT(String text) {
-        return "IFT" + DATA_ELEMENT_SEPARATOR + "4" + COMPONENT_SEPARATOR + "28"
-                + DATA_ELEMENT_SEPARATOR + text + SEGMENT_TERMINATOR;
+    private void writeIFT(EdifactWriter w, String airlineCode, String label, String contact) {
+        w.segment("IFT").element("4").component("28")
+                .element(airlineCode).append(label).appendUpper(contact).end();
     }
 
-    private String generateRCI(Reservation reservation, String airline) {
-        String date = reservation.getCreatedDate().format(DATE_FMT);
-        String time = reservation.getCreatedDate().format(TIME_FMT);
-        return "RCI" + DATA_ELEMENT_SEPARATOR + airline
-                + COMPONENT_SEPARATOR + reservation.getRecordLocator()
-                + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + date + COMPONENT_SEPARATOR + time
-                + SEGMENT_TERMINATOR;
+    private void writeRCI(EdifactWriter w, Reservation reservation, String airline) {
+        LocalDateTime created = reservation.getCreatedDate();
+        w.segment("RCI").element(airline)
+                .component(reservation.getRecordLocator())
+                .component().component().appendDate(created).component().appendTime(created).end();
     }
 
-    private String generateTransactionDAT(LocalDateTime transactionDate) {
-        String date = transactionDate.format(DATE_FMT);
-        String time = transactionDate.format(TIME_FMT);
-        return "DAT" + DATA_ELEMENT_SEPARATOR + "700"
-                + COMPONENT_SEPARATOR + date + COMPONENT_SEPARATOR + time + SEGMENT_TERMINATOR;
+    private void writeTransactionDAT(EdifactWriter w, LocalDateTime transactionDate) {
+        w.segment("DAT").element("700")
+                .component().appendDate(transactionDate).component().appendTime(transactionDate).end();
     }
 
-    private String generateSSR_DOCS(TravelDocument document, Passenger passenger, int passengerIndex) {
-        String dob = passenger.getDateOfBirth() != null
-                ? passenger.getDateOfBirth().format(DOB_FMT).toUpperCase()
-                : "01JAN80";
-        String expiry = document.getExpiryDate() != null
-                ? document.getExpiryDate().format(DOB_FMT).toUpperCase()
-                : "01JAN30";
+    private void writeSSR_DOCS(EdifactWriter w, TravelDocument document, Passenger passenger, int passengerIndex) {
+        LocalDate dob    = passenger.getDateOfBirth() != null ? passenger.getDateOfBirth() : DEFAULT_DOB;
+        LocalDate expiry = document.getExpiryDate() != null ? document.getExpiryDate() : DEFAULT_EXPIRY;
         String gender          = passenger.getGender() != null ? passenger.getGender() : "U";
         String nationality     = document.getNationality() != null ? document.getNationality() : "US";
         String issuingCountry  = document.getIssuingCountry() != null ? document.getIssuingCountry() : "US";
 
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "DOCS" + COMPONENT_SEPARATOR + "HK"
-                + COMPONENT_SEPARATOR + "1"
-                + COMPONENT_SEPARATOR + issuingCountry
-                + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR
-                + COMPONENT_SEPARATOR + "/P/" + nationality + "/" + document.getDocumentNumber()
-                + "/" + issuingCountry + "/" + dob + "/" + gender + "/" + expiry
-                + "/" + passenger.getLastName().toUpperCase() + "/" + passenger.getFirstName().toUpperCase()
-                + DATA_ELEMENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + passengerIndex + ".1"
-                + SEGMENT_TERMINATOR;
+        w.segment("SSR").element("DOCS").component("HK").component("1")
+                .component(issuingCountry)
+                .component().component().component().component()
+                .component("/P/").append(nationality).append('/').append(document.getDocumentNumber())
+                .append('/').append(issuingCountry)
+                .append('/').appendDateWithMonthName(dob)
+                .append('/').append(gender)
+                .append('/').appendDateWithMonthName(expiry)
+                .append('/').appendUpper(passenger.getLastName())
+                .append('/').appendUpper(passenger.getFirstName())
+                .element().component().component(passengerIndex).append(".1").end();
     }
 
-    private String generateSSR_TKNE(Flight flight, int passengerIndex, int flightIndex) {
-        String ticketNumber = "139" + (random.nextInt(9000000) + 1000000) + "000C" + flightIndex;
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "TKNE" + COMPONENT_SEPARATOR + "HK"
-                + COMPONENT_SEPARATOR + "1"
-                + COMPONENT_SEPARATOR + flight.getAirlineCode()
-                + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR
-                + flight.getDepartureAirport() + COMPONENT_SEPARATOR + flight.getArrivalAirport()
-                + COMPONENT_SEPARATOR + ticketNumber
-                + DATA_ELEMENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + passengerIndex + ".1"
-                + SEGMENT_TERMINATOR;
+    private void writeSSR_TKNE(EdifactWriter w, RandomGenerator random, FlightFragments flight, int passengerIndex,
+                               int flightIndex) {
+        int ticketSerial = random.nextInt(9000000) + 1000000;
+        w.segment("SSR").element("TKNE").component("HK").component("1");
+        flight.route().writeTo(w);
+        w.component("139").append(ticketSerial).append("000C").append(flightIndex)
+                .element().component().component(passengerIndex).append(".1").end();
     }
 
-    private String generateSSR_TKNE_Simple(Flight flight, int passengerIndex) {
-        String ticketNumber = "139" + (random.nextInt(9000000) + 1000000) + "000C1";
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "TKNE" + COMPONENT_SEPARATOR + "HK"
-                + COMPONENT_SEPARATOR + "1"
-                + COMPONENT_SEPARATOR + flight.getAirlineCode()
-                + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR
-                + flight.getDepartureAirport() + COMPONENT_SEPARATOR + flight.getArrivalAirport()
-                + COMPONENT_SEPARATOR + "." + ticketNumber + SEGMENT_TERMINATOR;
+    private void writeSSR_TKNE_Simple(EdifactWriter w, RandomGenerator random, FlightFragments flight, int passengerIndex) {
+        int ticketSerial = random.nextInt(9000000) + 1000000;
+        w.segment("SSR").element("TKNE").component("HK").component("1");
+        flight.route().writeTo(w);
+        w.component(".139").append(ticketSerial).append("000C1").end();
     }
 
-    private String generateSSR_SEAT(Flight flight, int passengerCount, String seatList) {
-        return "SSR" + DATA_ELEMENT_SEPARATOR + "SEAT" + COMPONENT_SEPARATOR + "HK"
-                + COMPONENT_SEPARATOR + passengerCount
-                + COMPONENT_SEPARATOR + flight.getAirlineCode()
-                + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR + COMPONENT_SEPARATOR
-                + flight.getDepartureAirport() + COMPONENT_SEPARATOR + flight.getArrivalAirport()
-                + seatList + SEGMENT_TERMINATOR;
+    private void writeSSR_SEAT(EdifactWriter w, FlightFragments flight, int passengerCount,
+                               List<ReservationRenderIndex.SeatRef> seats) {
+        w.segment("SSR").element("SEAT").component("HK").component(passengerCount);
+        flight.route().writeTo(w);
+        for (ReservationRenderIndex.SeatRef seat : seats) {
+            w.element(seat.seatNumber()).component().component(seat.passengerOrdinal());
+        }
+        w.end();
     }
 
-    // ── Trailer segments ─────────────────────────────────────────────────────
-
-    private String generateUNT(int segmentCount, String messageRef) {
-        return "UNT" + DATA_ELEMENT_SEPARATOR + segmentCount
-                + DATA_ELEMENT_SEPARATOR + messageRef + SEGMENT_TERMINATOR;
+    /** Consecutive references from a random base, unique for up to 999999 parts per interchange. */
+    private String generateMessageReference(int base, int partNumber) {
+        return String.format("%06d", (base + partNumber - 2) % 999999 + 1);
     }
 
-    private String generateUNE(String groupRef) {
-        return "UNE" + DATA_ELEMENT_SEPARATOR + "1"
-                + DATA_ELEMENT_SEPARATOR + groupRef + SEGMENT_TERMINATOR;
+    private String generateInterchangeReference(RandomGenerator random) {
+        return String.valueOf(1000000000000L + (long) (random.nextDouble() * 8999999999999L));
     }
 
-    private String generateUNZ(String interchangeRef) {
-        return "UNZ" + DATA_ELEMENT_SEPARATOR + "1"
-                + DATA_ELEMENT_SEPARATOR + interchangeRef + SEGMENT_TERMINATOR;
-    }
+    /** Copies everything written to it to each of its sinks. */
+    private static final class FanOutWriter extends Writer {
 
-    // ── References ───────────────────────────────────────────────────────────
+        private final List<Appendable> sinks;
 
-    private String generateMessageReference() {
-        return String.format("%06d", random.nextInt(999999) + 1);
-    }
+        FanOutWriter(Collection<? extends Appendable> sinks) {
+            this.sinks = List.copyOf(sinks);
+        }
 
-    private String generateInterchangeReference() {
-        return String.valueOf(1000000000000L + (long) (random.nextDouble() * 8999999999999L));
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            for (Appendable sink : sinks) {
+                if (sink instanceof Writer writer) {
+                    writer.write(chars, offset, length);
+                } else if (sink instanceof StringBuilder sb) {
+                    sb.append(chars, offset, length);
+                } else {
+                    sink.append(CharBuffer.wrap(chars, offset, length));
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            for (Appendable sink : sinks) {
+                if (sink instanceof Flushable flushable) {
+                    flushable.flush();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
     }
 }
@@ -0,0 +1,67 @@
+package com.pnrgov.core.services;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Random source and reference time of one generation run. Every random draw and every date of
+ * the generated data is taken from here, so a seeded context replays its output byte for byte.
+ * <p>
+ * Unseeded contexts draw from {@link ThreadLocalRandom}, which keeps its state per thread, so
+ * concurrent requests never contend on a shared seed. Seeded contexts use a
+ * {@link SplittableRandom} and must stay on one thread; {@link #split()} derives independent
+ * contexts for work handed to other threads.
+ *
+ * @param seeded whether the output must replay; seeded runs draw record locators from
+ *               {@code random} instead of the {@link RecordLocatorAllocator}, so callers that
+ *               store seeded reservations must replace the locator with an allocated one
+ */
+public record GenerationContext(RandomGenerator random, LocalDateTime now, boolean seeded) {
+
+    /** A fresh, unseeded context reading the time once from the clock. */
+    public static GenerationContext create(Clock clock) {
+        return new GenerationContext(ThreadLocalRandom.current(), LocalDateTime.now(clock), false);
+    }
+
+    /**
+     * @param seed          fixes every random draw; {@code null} for fresh random data
+     * @param referenceTime replaces the clock; when {@code null} a seeded run uses the start of
+     *                      the current day, so identical requests on the same day match exactly
+     */
+    public static GenerationContext create(Clock clock, Long seed, LocalDateTime referenceTime) {
+        if (seed == null) {
+            return new GenerationContext(ThreadLocalRandom.current(),
+                    referenceTime != null ? referenceTime : LocalDateTime.now(clock), false);
+        }
+        return new GenerationContext(new SplittableRandom(seed),
+                referenceTime != null ? referenceTime : LocalDate.now(clock).atStartOfDay(), true);
+    }
+
+    /**
+     * Context of the {@code index}-th item of a run. Items get independent sources that depend
+     * only on the item seed and the index, so they can be generated in any order or on any
+     * thread and still come out the same. Seeds are spread with a SplitMix64 finalizer so
+     * neighbouring items do not get correlated sequences.
+     */
+    public GenerationContext indexed(long seed, long index) {
+        long z = seed + (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new GenerationContext(new SplittableRandom(z ^ (z >>> 31)), now, seeded);
+    }
+
+    /**
+     * A context with its own random source and the same reference time. Split contexts of a
+     * seeded context are themselves reproducible.
+     */
+    public GenerationContext split() {
+        if (random instanceof SplittableRandom splittable) {
+            return new GenerationContext(splittable.split(), now, seeded);
+        }
+        return this;
+    }
+}
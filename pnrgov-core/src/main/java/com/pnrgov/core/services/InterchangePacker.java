@@ -0,0 +1,113 @@
+package com.pnrgov.core.services;
+
+import com.pnrgov.core.edifact.EdifactWriter;
+import com.pnrgov.core.models.Reservation;
+
+import java.util.function.Consumer;
+
+/**
+ * Packs the PNRGOV messages of many reservations into as few interchanges as the limits allow,
+ * instead of one UNA/UNB/UNG...UNE/UNZ envelope per reservation. An interchange is closed and
+ * handed to the sink once it holds {@code maxMessages} messages or the next message would take
+ * it over {@code maxInterchangeSize}; a message is never split across interchanges.
+ * <p>
+ * Not thread-safe; create one packer per bulk run.
+ */
+public class InterchangePacker {
+
+    /** A closed interchange together with what it contains. */
+    public record PackedInterchange(String interchangeRef, String content, int messageCount,
+                                    int passengerCount, int flightCount) { }
+
+    private final EdifactGenerator generator;
+    private final GenerationContext context;
+    private final String sender;
+    private final String receiver;
+    private final int maxMessages;
+    private final int maxInterchangeSize;
+    private final Consumer<PackedInterchange> sink;
+
+    private final StringBuilder interchange = new StringBuilder(8192);
+    private final EdifactWriter w = new EdifactWriter(interchange);
+    private final StringBuilder message = new StringBuilder(4096);
+    private final EdifactWriter messageWriter = new EdifactWriter(message);
+
+    private String interchangeRef;
+    private int size;
+    private int messageCount;
+    private int passengerCount;
+    private int flightCount;
+    /** Message references keep counting across interchanges, so they are unique in each one. */
+    private int messageSequence;
+
+    /**
+     * @param context            source of ticket numbers, references and envelope timestamps
+     * @param sender             UNB/UNG sender; {@code null} for the reporting carrier of the
+     *                           first reservation in each interchange
+     * @param maxMessages        messages per interchange, or {@code <= 0} for no limit
+     * @param maxInterchangeSize bytes per interchange from UNA through UNZ, or {@code <= 0} for no
+     *                           limit; the writer emits ASCII only, so chars count as bytes
+     */
+    public InterchangePacker(EdifactGenerator generator, GenerationContext context, String sender, String receiver,
+                             int maxMessages, int maxInterchangeSize, Consumer<PackedInterchange> sink) {
+        this.generator = generator;
+        this.context = context;
+        this.sender = sender;
+        this.receiver = receiver;
+        this.maxMessages = maxMessages > 0 ? maxMessages : Integer.MAX_VALUE;
+        this.maxInterchangeSize = maxInterchangeSize > 0 ? maxInterchangeSize : Integer.MAX_VALUE;
+        this.sink = sink;
+    }
+
+    public void add(Reservation reservation) {
+        message.setLength(0);
+        generator.writeMessage(messageWriter, context, reservation, Integer.toString(++messageSequence));
+        messageWriter.flush();
+
+        if (interchangeRef != null && (messageCount == maxMessages || !fits(message.length()))) {
+            closeInterchange();
+        }
+        if (interchangeRef == null) {
+            openInterchange(reservation);
+        }
+        w.appendRenderedMessage(message);
+        size += message.length();
+        messageCount++;
+        passengerCount += reservation.getPassengers().size();
+        flightCount += reservation.getFlights().size();
+    }
+
+    /** Closes the open interchange, if any. */
+    public void finish() {
+        if (interchangeRef != null) {
+            closeInterchange();
+        }
+    }
+
+    private void openInterchange(Reservation first) {
+        interchangeRef = generator.generateInterchangeReference(context);
+        generator.writeInterchangeHeader(w, context, interchangeRef,
+                sender != null ? sender : generator.defaultSender(first), receiver);
+        w.flush();
+        size = interchange.length();
+    }
+
+    private void closeInterchange() {
+        generator.writeInterchangeTrailer(w, interchangeRef);
+        w.flush();
+        sink.accept(new PackedInterchange(interchangeRef, interchange.toString(),
+                messageCount, passengerCount, flightCount));
+        interchange.setLength(0);
+        interchangeRef = null;
+        messageCount = 0;
+        passengerCount = 0;
+        flightCount = 0;
+    }
+
+    private boolean fits(int messageLength) {
+        // "UNE+count+ref'\n" and "UNZ+1+ref'\n"
+        int trailerSize = 4 + Integer.toString(messageCount + 1).length() + 1 + interchangeRef.length() + 2
+                + 6 + interchangeRef.length() + 2;
+        return (long) size + messageLength + trailerSize <= maxInterchangeSize;
+    }
+}
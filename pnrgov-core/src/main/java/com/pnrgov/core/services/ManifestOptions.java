@@ -0,0 +1,55 @@
+package com.pnrgov.core.services;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.Executor;
+
+/**
+ * Parameters for {@link FlightManifestGenerator#writeFlightManifest(ManifestOptions, Appendable)}.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ManifestOptions {
+    @Builder.Default
+    private int pnrCount = 5;
+
+    /** Marketing carrier of the manifested flight; random when empty. */
+    private String airline;
+
+    /** Flight number of the manifested flight; random when empty. */
+    private String flightNumber;
+
+    @Builder.Default
+    private String receiver = "USCBP";
+
+    /** Fixes every random draw of the manifest; {@code null} for a fresh random manifest. */
+    private Long seed;
+
+    /**
+     * Replaces the clock as the reference for every generated date; with a seed and no reference
+     * time the start of the current day is used.
+     */
+    private LocalDateTime referenceTime;
+
+    /**
+     * Generates and renders PNR sections concurrently. The output is identical to sequential
+     * mode for the same seed.
+     */
+    private boolean parallel;
+
+    /** Pool used in parallel mode; defaults to the common fork/join pool. */
+    private Executor executor;
+
+    /** Splits the manifest into message parts of at most this many PNRs; 0 for no limit. */
+    private int maxPnrsPerMessage;
+
+    /**
+     * Splits the manifest into message parts of at most this many bytes from UNH through
+     * UNT; 0 for no limit. A PNR larger than the limit is sent in a part of its own.
+     */
+    private int maxMessageSize;
+}
@@ -0,0 +1,139 @@
+package com.pnrgov.core.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.random.RandomGenerator;
+
+/**
+ * Word list packed into one UTF-8 {@code byte[]} with an offset table: entry {@code i} is
+ * {@code data[offsets[i] .. offsets[i + 1])}. A 100k-entry list of names costs about a fifth of
+ * the equivalent {@code String[]}, and loading allocates two arrays instead of two objects per entry.
+ * <p>
+ * Sampling returns an index; the entry becomes a String only when {@link #get} is called, and
+ * {@link #appendTo} copies it into a builder without any intermediate String.
+ */
+public final class PackedDictionary {
+
+    private final byte[] data;
+    private final int[] offsets;
+    private final boolean ascii;
+
+    private PackedDictionary(byte[] data, int[] offsets) {
+        this.data = data;
+        this.offsets = offsets;
+        boolean allAscii = true;
+        for (int i = 0; i < offsets[offsets.length - 1] && allAscii; i++) {
+            allAscii = data[i] >= 0;
+        }
+        this.ascii = allAscii;
+    }
+
+    /**
+     * Reads one entry per line of UTF-8 text. Surrounding whitespace is trimmed; blank lines and
+     * lines starting with {@code #} are skipped. Entries are compacted in place in the buffer the
+     * stream was read into, so loading makes one pass and no per-entry objects.
+     */
+    public static PackedDictionary load(InputStream in) throws IOException {
+        byte[] data = in.readAllBytes();
+        int[] offsets = new int[Math.max(16, data.length / 8)];
+        int count = 0;
+        int write = 0;
+        // Skip a UTF-8 byte order mark
+        int position = data.length >= 3 && data[0] == (byte) 0xEF && data[1] == (byte) 0xBB && data[2] == (byte) 0xBF
+                ? 3 : 0;
+        while (position < data.length) {
+            int end = position;
+            while (end < data.length && data[end] != '\n') {
+                end++;
+            }
+            int next = end + 1;
+            while (position < end && isSpace(data[position])) {
+                position++;
+            }
+            while (end > position && isSpace(data[end - 1])) {
+                end--;
+            }
+            if (end > position && data[position] != '#') {
+                if (count + 1 >= offsets.length) {
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                }
+                offsets[count++] = write;
+                System.arraycopy(data, position, data, write, end - position);
+                write += end - position;
+            }
+            position = next;
+        }
+        offsets[count] = write;
+        return new PackedDictionary(write < data.length - data.length / 4 ? Arrays.copyOf(data, write) : data,
+                Arrays.copyOf(offsets, count + 1));
+    }
+
+    public static PackedDictionary of(String... entries) {
+        byte[][] encoded = new byte[entries.length][];
+        int length = 0;
+        for (int i = 0; i < entries.length; i++) {
+            encoded[i] = entries[i].getBytes(StandardCharsets.UTF_8);
+            length += encoded[i].length;
+        }
+        byte[] data = new byte[length];
+        int[] offsets = new int[entries.length + 1];
+        for (int i = 0; i < entries.length; i++) {
+            System.arraycopy(encoded[i], 0, data, offsets[i], encoded[i].length);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        return new PackedDictionary(data, offsets);
+    }
+
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /** Index of a uniformly drawn entry. */
+    public int sample(RandomGenerator random) {
+        return random.nextInt(size());
+    }
+
+    public String get(int index) {
+        int start = offsets[index];
+        return new String(data, start, offsets[index + 1] - start,
+                ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /** First character of the entry. */
+    public char firstChar(int index) {
+        return ascii ? (char) data[offsets[index]] : get(index).charAt(0);
+    }
+
+    public StringBuilder appendTo(StringBuilder sb, int index) {
+        if (!ascii) {
+            return sb.append(get(index));
+        }
+        for (int i = offsets[index], end = offsets[index + 1]; i < end; i++) {
+            sb.append((char) data[i]);
+        }
+        return sb;
+    }
+
+    /** Appends the entry in lower case. */
+    public StringBuilder appendLowerCaseTo(StringBuilder sb, int index) {
+        if (!ascii) {
+            return sb.append(get(index).toLowerCase(Locale.ROOT));
+        }
+        for (int i = offsets[index], end = offsets[index + 1]; i < end; i++) {
+            char c = (char) data[i];
+            sb.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+        }
+        return sb;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,191 @@
+package com.pnrgov.core.services;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out record locators that are unique for the lifetime of the allocator, without a
+ * database round-trip per locator.
+ * <p>
+ * Locators are six characters from a 32-letter alphabet, so every locator is a 30-bit number.
+ * The allocator counts through that space and scrambles each count with a keyed Feistel
+ * permutation, which is a bijection: distinct counts give distinct locators, and consecutive
+ * locators still look random. Threads reserve blocks of counts from a shared cursor and allocate
+ * from their own block, so the cursor is touched once per {@value #BLOCK_SIZE} locators.
+ * <p>
+ * Locators that already exist, typically those stored in the reservation table at startup, are
+ * passed to the constructor. They are inverted back to their counts and kept in a sorted
+ * {@code int[]}, four bytes each, and the allocator skips those counts.
+ * <p>
+ * Uniqueness holds within one allocator. Processes that write to the same table concurrently
+ * must each exclude what the others allocate.
+ */
+public class RecordLocatorAllocator {
+
+    private static final String ALPHABET = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
+    private static final int LENGTH = 6;
+    private static final int BITS = 30;
+    private static final int HALF_BITS = BITS / 2;
+    private static final int HALF_MASK = (1 << HALF_BITS) - 1;
+    private static final int ROUNDS = 4;
+    private static final int BLOCK_SIZE = 4096;
+
+    /** Number of distinct locators, 32^6. */
+    public static final long CAPACITY = 1L << BITS;
+
+    private static final byte[] CHAR_VALUES = new byte[128];
+
+    static {
+        Arrays.fill(CHAR_VALUES, (byte) -1);
+        for (int i = 0; i < ALPHABET.length(); i++) {
+            CHAR_VALUES[ALPHABET.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final int[] roundKeys = new int[ROUNDS];
+    private final int[] excluded;
+    private final AtomicLong cursor = new AtomicLong();
+    private final ThreadLocal<Block> blocks = ThreadLocal.withInitial(Block::new);
+
+    /**
+     * @param key      selects the permutation; use a random key so that allocators of different
+     *                 runs hand out their locators in different orders
+     * @param existing locators that must never be allocated; strings that are not well-formed
+     *                 locators cannot collide and are ignored
+     */
+    public RecordLocatorAllocator(long key, Iterable<String> existing) {
+        long z = key;
+        for (int i = 0; i < ROUNDS; i++) {
+            z += 0x9E3779B97F4A7C15L;
+            roundKeys[i] = (int) (mix(z) >>> 32);
+        }
+
+        int[] counts = new int[64];
+        int size = 0;
+        for (String locator : existing) {
+            int value = decode(locator);
+            if (value < 0) {
+                continue;
+            }
+            if (size == counts.length) {
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            counts[size++] = unscramble(value);
+        }
+        Arrays.sort(counts, 0, size);
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (distinct == 0 || counts[i] != counts[distinct - 1]) {
+                counts[distinct++] = counts[i];
+            }
+        }
+        this.excluded = Arrays.copyOf(counts, distinct);
+    }
+
+    public RecordLocatorAllocator(long key) {
+        this(key, List.of());
+    }
+
+    /**
+     * Allocates the next locator. Safe to call from any number of threads.
+     *
+     * @throws IllegalStateException when all {@link #CAPACITY} locators are taken
+     */
+    public String next() {
+        Block block = blocks.get();
+        while (true) {
+            if (block.next == block.end) {
+                long start = cursor.getAndAdd(BLOCK_SIZE);
+                if (start >= CAPACITY) {
+                    throw new IllegalStateException("Record locator space exhausted");
+                }
+                block.next = (int) start;
+                block.end = (int) Math.min(start + BLOCK_SIZE, CAPACITY);
+            }
+            int count = block.next++;
+            if (excluded.length == 0 || Arrays.binarySearch(excluded, count) < 0) {
+                return encode(scramble(count));
+            }
+        }
+    }
+
+    /** Number of existing locators the allocator skips. */
+    public int getExcludedCount() {
+        return excluded.length;
+    }
+
+    /** Counts reserved so far, including unused remainders of thread blocks. */
+    public long getReservedCount() {
+        return Math.min(cursor.get(), CAPACITY);
+    }
+
+    /** The locator of a 30-bit value, most significant character first. */
+    static String encode(int value) {
+        char[] chars = new char[LENGTH];
+        for (int i = LENGTH - 1; i >= 0; i--) {
+            chars[i] = ALPHABET.charAt(value & 31);
+            value >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /** The 30-bit value of a locator, or -1 when it is not a well-formed locator. */
+    static int decode(String locator) {
+        if (locator == null || locator.length() != LENGTH) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            char c = locator.charAt(i);
+            int digit = c < 128 ? CHAR_VALUES[c] : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 5) | digit;
+        }
+        return value;
+    }
+
+    int scramble(int count) {
+        int left = count >>> HALF_BITS;
+        int right = count & HALF_MASK;
+        for (int i = 0; i < ROUNDS; i++) {
+            int next = left ^ round(right, roundKeys[i]);
+            left = right;
+            right = next;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    int unscramble(int value) {
+        int left = value >>> HALF_BITS;
+        int right = value & HALF_MASK;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            int previous = right ^ round(left, roundKeys[i]);
+            right = left;
+            left = previous;
+        }
+        return (left << HALF_BITS) | right;
+    }
+
+    private static int round(int half, int key) {
+        int h = (half ^ key) * 0x9E3779B1;
+        h ^= h >>> 15;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h & HALF_MASK;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** Counts reserved by one thread; only that thread reads or writes it. */
+    private static final class Block {
+        int next;
+        int end;
+    }
+}
@@ -0,0 +1,255 @@
+package com.pnrgov.core.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Airports, airlines and countries known to the generators and renderers, each numbered with a
+ * small int id in registration order. Ids index flat arrays, so attributes such as the country
+ * of an airport are an array read, and routing or filtering can compare ints instead of Strings.
+ * <p>
+ * Code lookup is a perfect hash: a code's characters are read as digits of a number, which
+ * indexes a table of ids. Three-letter airport codes need 26^3 slots, two-character airline codes
+ * 36^2 and country codes 26^2, so every lookup is one table read with no collisions to resolve.
+ * The code Strings handed out are the registry's own instances, shared by every entity that
+ * carries them.
+ */
+public final class ReferenceData {
+
+    /** Id returned for a code that is not registered. */
+    public static final int UNKNOWN = -1;
+
+    // Filled during class initialisation, then frozen into the arrays below
+    private static final List<String> REGISTERED_COUNTRIES = new ArrayList<>();
+    private static final List<String> REGISTERED_AIRPORTS = new ArrayList<>();
+    private static final List<Integer> REGISTERED_AIRPORT_COUNTRIES = new ArrayList<>();
+    private static final List<String> REGISTERED_AIRLINES = new ArrayList<>();
+
+    private static final short[] COUNTRY_TABLE = new short[26 * 26];
+    private static final short[] AIRPORT_TABLE = new short[26 * 26 * 26];
+    private static final short[] AIRLINE_TABLE = new short[36 * 36];
+
+    private static final String[] COUNTRIES;
+    private static final String[] AIRPORTS;
+    private static final short[] AIRPORT_COUNTRY;
+    private static final String[] AIRLINES;
+
+    // Ids below these are the ones drawn at random; later ones only resolve codes
+    private static final int RANDOM_COUNTRY_COUNT;
+    private static final int RANDOM_AIRLINE_COUNT;
+
+    static {
+        // Countries of passengers and documents first, then those that only have airports
+        registerCountries("IS", "US", "GB", "DE", "FR", "ES", "IT", "CA", "SE", "NO",
+                "DK", "FI", "NL", "BE", "CH", "AT", "PL", "LT", "LV", "EE",
+                "BR", "AR", "CL", "PE", "CO", "VE", "UY", "PY", "BO", "EC", "MX");
+        RANDOM_COUNTRY_COUNT = REGISTERED_COUNTRIES.size();
+        registerCountries("CZ", "HU", "IE", "PT", "GR", "TR", "RS");
+
+        // A few codes are city or placeholder codes, mapped to the country they are listed with
+        registerAirports("IS", "KEF");
+        registerAirports("DK", "CPH");
+        registerAirports("SE", "ARN");
+        registerAirports("NO", "OSL");
+        registerAirports("FI", "HEL");
+        registerAirports("LV", "RIX");
+        registerAirports("EE", "TLL");
+        registerAirports("LT", "VNO");
+        registerAirports("PL", "WAW");
+        registerAirports("CZ", "PRG");
+        registerAirports("HU", "BUD");
+        registerAirports("GB", "LHR", "LGW", "STN", "MAN", "EDI", "GLA");
+        registerAirports("IE", "DUB", "CRK", "SNN");
+        registerAirports("FR", "CDG", "ORY", "LYS", "NCE", "MPL");
+        registerAirports("NL", "AMS", "RTM", "EIN");
+        registerAirports("BE", "BRU");
+        registerAirports("DK", "BLL");
+        registerAirports("CH", "ZRH");
+        registerAirports("AT", "VIE");
+        registerAirports("PT", "LIS", "OPO");
+        registerAirports("DE", "FRA", "DHM", "MUC", "BER", "COL", "DUS", "HAM", "GBF", "BRE");
+        registerAirports("ES", "MAD", "SVQ", "AGP", "VLC", "IBZ", "PMI", "ALC", "BCN");
+        registerAirports("IT", "MXP", "MIL", "VCE", "BOL", "FCO", "CIA", "NAP", "PMO", "TRN");
+        registerAirports("GR", "ATH");
+        registerAirports("TR", "IST");
+        registerAirports("RS", "BEG");
+        registerAirports("US", "JFK", "LGA", "EWR", "BOS", "PHL", "WAS", "IAD", "BNA", "ATL", "TPA", "MIA", "FLL",
+                "MCO", "ORD", "MDW", "DTW", "CLE", "IND", "MSY", "MEM", "AUS", "SAT", "HOU", "IAH", "DFW", "DAL",
+                "DEN", "PHX", "LAS", "SLC", "SFO", "SJC", "OAK", "LAX", "LGB", "ONT", "PDX");
+        registerAirports("CA", "YYZ", "YUL", "YVR", "YEG", "YWG", "YYJ");
+        registerAirports("MX", "MEX", "CUN", "PVR", "CZM", "XEL");
+        registerAirports("BR", "GIG", "SDU", "GRU", "VCP");
+        registerAirports("AR", "EZE", "AEP");
+        registerAirports("CL", "SCL");
+        registerAirports("UY", "MVD");
+        registerAirports("PE", "LIM");
+        registerAirports("CO", "BOG", "MDE", "CTG");
+        registerAirports("VE", "CCS");
+
+        // Airlines of sample reservations first, then those only manifests pick
+        registerAirlines("FI", "W6", "SK", "OG", "W4", "BA", "LH", "AF", "KL", "DL",
+                "AA", "UA", "EK", "QF", "SQ", "AY", "IB", "LX", "OS", "SN");
+        RANDOM_AIRLINE_COUNT = REGISTERED_AIRLINES.size();
+        registerAirlines("SW", "B6", "JB", "AS", "F9", "NK", "G4");
+
+        COUNTRIES = REGISTERED_COUNTRIES.toArray(String[]::new);
+        AIRPORTS = REGISTERED_AIRPORTS.toArray(String[]::new);
+        AIRPORT_COUNTRY = new short[AIRPORTS.length];
+        for (int a = 0; a < AIRPORTS.length; a++) {
+            AIRPORT_COUNTRY[a] = REGISTERED_AIRPORT_COUNTRIES.get(a).shortValue();
+        }
+        AIRLINES = REGISTERED_AIRLINES.toArray(String[]::new);
+    }
+
+    private ReferenceData() {
+    }
+
+    /** Id of an airport code, or {@link #UNKNOWN}. */
+    public static int airport(String code) {
+        int key = letterKey(code, 3);
+        return key < 0 ? UNKNOWN : AIRPORT_TABLE[key] - 1;
+    }
+
+    /** Id of an airline code, or {@link #UNKNOWN}. */
+    public static int airline(String code) {
+        int key = alphanumericKey(code);
+        return key < 0 ? UNKNOWN : AIRLINE_TABLE[key] - 1;
+    }
+
+    /** Id of an ISO 3166 alpha-2 country code, or {@link #UNKNOWN}. */
+    public static int country(String code) {
+        int key = letterKey(code, 2);
+        return key < 0 ? UNKNOWN : COUNTRY_TABLE[key] - 1;
+    }
+
+    /** Ids of the given airline codes, which must be registered. */
+    public static int[] airlines(String... codes) {
+        int[] ids = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            ids[i] = require(airline(codes[i]), codes[i]);
+        }
+        return ids;
+    }
+
+    /** Ids of the given airport codes, which must be registered. */
+    public static int[] airports(String... codes) {
+        int[] ids = new int[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            ids[i] = require(airport(codes[i]), codes[i]);
+        }
+        return ids;
+    }
+
+    public static String airportCode(int airport) {
+        return AIRPORTS[airport];
+    }
+
+    public static String airlineCode(int airline) {
+        return AIRLINES[airline];
+    }
+
+    public static String countryCode(int country) {
+        return COUNTRIES[country];
+    }
+
+    /** Country id of an airport id. */
+    public static int countryOfAirport(int airport) {
+        return AIRPORT_COUNTRY[airport];
+    }
+
+    /** ISO 3166 alpha-2 country of the airport, or {@code null} for an unknown code. */
+    public static String countryOfAirport(String airportCode) {
+        int airport = airport(airportCode);
+        return airport < 0 ? null : COUNTRIES[AIRPORT_COUNTRY[airport]];
+    }
+
+    public static int airportCount() {
+        return AIRPORTS.length;
+    }
+
+    public static int airlineCount() {
+        return AIRLINES.length;
+    }
+
+    public static int countryCount() {
+        return COUNTRIES.length;
+    }
+
+    /** Airlines of sample reservations: ids {@code 0} up to this count. */
+    public static int randomAirlineCount() {
+        return RANDOM_AIRLINE_COUNT;
+    }
+
+    /** Countries of passengers and documents: ids {@code 0} up to this count. */
+    public static int randomCountryCount() {
+        return RANDOM_COUNTRY_COUNT;
+    }
+
+    private static void registerCountries(String... codes) {
+        for (String code : codes) {
+            register(COUNTRY_TABLE, letterKey(code, 2), REGISTERED_COUNTRIES, code);
+        }
+    }
+
+    private static void registerAirports(String country, String... codes) {
+        int countryId = require(country(country), country);
+        for (String code : codes) {
+            register(AIRPORT_TABLE, letterKey(code, 3), REGISTERED_AIRPORTS, code);
+            REGISTERED_AIRPORT_COUNTRIES.add(countryId);
+        }
+    }
+
+    private static void registerAirlines(String... codes) {
+        for (String code : codes) {
+            register(AIRLINE_TABLE, alphanumericKey(code), REGISTERED_AIRLINES, code);
+        }
+    }
+
+    private static void register(short[] table, int key, List<String> codes, String code) {
+        if (key < 0 || table[key] != 0) {
+            throw new IllegalStateException("Invalid or duplicate code " + code);
+        }
+        codes.add(code);
+        table[key] = (short) codes.size();
+    }
+
+    private static int require(int id, String code) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Unknown code " + code);
+        }
+        return id;
+    }
+
+    /** The code read as a base-26 number, or -1 unless it is {@code length} upper-case letters. */
+    private static int letterKey(String code, int length) {
+        if (code == null || code.length() != length) {
+            return -1;
+        }
+        int key = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = code.charAt(i) - 'A';
+            if (digit < 0 || digit >= 26) {
+                return -1;
+            }
+            key = key * 26 + digit;
+        }
+        return key;
+    }
+
+    /** A two-character code of letters and digits read as a base-36 number, or -1. */
+    private static int alphanumericKey(String code) {
+        if (code == null || code.length() != 2) {
+            return -1;
+        }
+        int key = 0;
+        for (int i = 0; i < 2; i++) {
+            char c = code.charAt(i);
+            int digit = c >= 'A' && c <= 'Z' ? c - 'A' : c >= '0' && c <= '9' ? 26 + c - '0' : -1;
+            if (digit < 0) {
+                return -1;
+            }
+            key = key * 36 + digit;
+        }
+        return key;
+    }
+}
@@ -0,0 +1,157 @@
+package com.pnrgov.core.services;
+
+import com.pnrgov.core.models.Reservation;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Warm pool of pre-generated reservations for common generation profiles. Each profile keeps a
+ * bounded lock-free {@link RingBuffer} that background threads top up, so an interactive request
+ * takes a reservation in O(1) instead of generating it on the request thread. When a profile's
+ * buffer is empty, or the spec matches no profile, the reservation is generated inline.
+ * <p>
+ * Pooled reservations are unseeded and dated when they are generated, which is at most one
+ * refill interval plus the time they wait in the buffer before they are taken. Requests that
+ * must be reproducible should generate directly from a seeded {@link GenerationContext}.
+ */
+public class ReservationPool implements AutoCloseable {
+
+    /** Point-in-time metrics of one profile. */
+    public record PoolStats(String profile, int capacity, int depth, long hits, long misses,
+                            long refilled, double refillRatePerSecond) { }
+
+    private final SampleDataGenerator generator;
+    private final Clock clock;
+    private final int capacity;
+    private final List<Profile> profiles = new ArrayList<>();
+    private ScheduledExecutorService refillExecutor;
+
+    /**
+     * @param capacity reservations buffered per profile, rounded up to a power of two
+     */
+    public ReservationPool(SampleDataGenerator generator, Clock clock, int capacity) {
+        this.generator = generator;
+        this.clock = clock;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Registers a profile. Profiles must be added before {@link #start}, and the spec must not be
+     * changed afterwards.
+     */
+    public ReservationPool addProfile(String name, ReservationSpec spec) {
+        if (refillExecutor != null) {
+            throw new IllegalStateException("Pool already started");
+        }
+        profiles.add(new Profile(name, spec, new RingBuffer<>(capacity)));
+        return this;
+    }
+
+    /**
+     * Starts topping up every profile on daemon threads. Each pass fills a profile to capacity;
+     * the next pass starts {@code refillInterval} after the previous one ended.
+     */
+    public synchronized void start(int refillThreads, Duration refillInterval) {
+        if (refillExecutor != null) {
+            return;
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        refillExecutor = Executors.newScheduledThreadPool(Math.max(1, refillThreads), runnable -> {
+            Thread thread = new Thread(runnable, "reservation-pool-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Profile profile : profiles) {
+            refillExecutor.scheduleWithFixedDelay(() -> refill(profile),
+                    0, refillInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Takes a pooled reservation of the given spec, or generates one inline when there is none.
+     * Never returns the same reservation twice.
+     */
+    public Reservation take(ReservationSpec spec) {
+        Profile profile = find(spec);
+        if (profile != null) {
+            Reservation pooled = profile.buffer.poll();
+            if (pooled != null) {
+                profile.hits.increment();
+                return pooled;
+            }
+            profile.misses.increment();
+        }
+        return generator.generateReservation(spec, GenerationContext.create(clock));
+    }
+
+    public List<PoolStats> getStats() {
+        List<PoolStats> stats = new ArrayList<>(profiles.size());
+        for (Profile profile : profiles) {
+            stats.add(new PoolStats(profile.name, profile.buffer.capacity(), profile.buffer.size(),
+                    profile.hits.sum(), profile.misses.sum(), profile.refilled.sum(), profile.refillRate));
+        }
+        return stats;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (refillExecutor != null) {
+            refillExecutor.shutdownNow();
+        }
+    }
+
+    private Profile find(ReservationSpec spec) {
+        for (Profile profile : profiles) {
+            if (profile.spec.equals(spec)) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    private void refill(Profile profile) {
+        int room = profile.buffer.capacity() - profile.buffer.size();
+        if (room <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        GenerationContext context = GenerationContext.create(clock);
+        int added = 0;
+        while (added < room && !Thread.currentThread().isInterrupted()) {
+            if (!profile.buffer.offer(generator.generateReservation(profile.spec, context))) {
+                break;
+            }
+            added++;
+        }
+        profile.refilled.add(added);
+        long elapsed = System.nanoTime() - start;
+        if (added > 0 && elapsed > 0) {
+            profile.refillRate = added * 1e9 / elapsed;
+        }
+    }
+
+    private static final class Profile {
+        final String name;
+        final ReservationSpec spec;
+        final RingBuffer<Reservation> buffer;
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder refilled = new LongAdder();
+        /** Reservations per second during the last refill pass. */
+        volatile double refillRate;
+
+        Profile(String name, ReservationSpec spec, RingBuffer<Reservation> buffer) {
+            this.name = name;
+            this.spec = spec;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.pnrgov.core.services;
+
+import lombok.*;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Shape of the reservations to generate: passenger and flight count ranges, and the probability
+ * of each optional feature. A probability of 1 always includes the feature and 0 never does;
+ * neither consumes a random draw, so a spec with fixed counts and 0/1 probabilities generates
+ * exactly what the matching {@code generateRandomReservation} call would.
+ * <p>
+ * Specs compare by value, which is how {@link ReservationPool} matches a request to a profile.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@EqualsAndHashCode
+public class ReservationSpec {
+    @Builder.Default
+    private int minPassengers = 2;
+    @Builder.Default
+    private int maxPassengers = 2;
+    @Builder.Default
+    private int minFlights = 2;
+    @Builder.Default
+    private int maxFlights = 2;
+
+    @Builder.Default
+    private double bagsProbability = 1;
+    @Builder.Default
+    private double seatsProbability = 1;
+    @Builder.Default
+    private double documentsProbability = 1;
+    @Builder.Default
+    private double paymentProbability = 1;
+    /**
+     * Codeshare and through-flight settings shape generated flights only; a reservation generated
+     * on a given itinerary still draws them but flies the itinerary as it is.
+     */
+    @Builder.Default
+    private double codeshareProbability = 0;
+    @Builder.Default
+    private double thruFlightProbability = 0;
+    @Builder.Default
+    private double phoneNumbersProbability = 1;
+    @Builder.Default
+    private double agencyInfoProbability = 1;
+
+    /** Probability of a credit card given that the reservation has a payment. */
+    @Builder.Default
+    private double creditCardProbability = 1;
+
+    /** Fixed counts and features, as passed to {@code generateRandomReservation}. */
+    public static ReservationSpec of(int passengerCount, int flightCount, boolean includeBags,
+                                     boolean includeSeats, boolean includeDocuments, boolean includePayment,
+                                     boolean includeCodeshare, boolean includeThruFlight,
+                                     boolean includePhoneNumbers, boolean includeAgencyInfo,
+                                     boolean includeCreditCard) {
+        return ReservationSpec.builder()
+                .minPassengers(passengerCount).maxPassengers(passengerCount)
+                .minFlights(flightCount).maxFlights(flightCount)
+                .bagsProbability(rate(includeBags))
+                .seatsProbability(rate(includeSeats))
+                .documentsProbability(rate(includeDocuments))
+                .paymentProbability(rate(includePayment))
+                .codeshareProbability(rate(includeCodeshare))
+                .thruFlightProbability(rate(includeThruFlight))
+                .phoneNumbersProbability(rate(includePhoneNumbers))
+                .agencyInfoProbability(rate(includeAgencyInfo))
+                .creditCardProbability(rate(includeCreditCard))
+                .build();
+    }
+
+    /**
+     * Counts drawn from the ranges and every feature drawn per reservation: codeshares and
+     * through flights one in three, everything else one in two.
+     */
+    public static ReservationSpec mixed(int minPassengers, int maxPassengers, int minFlights, int maxFlights) {
+        return ReservationSpec.builder()
+                .minPassengers(minPassengers).maxPassengers(maxPassengers)
+                .minFlights(minFlights).maxFlights(maxFlights)
+                .bagsProbability(0.5)
+                .seatsProbability(0.5)
+                .documentsProbability(0.5)
+                .paymentProbability(0.5)
+                .codeshareProbability(1.0 / 3)
+                .thruFlightProbability(1.0 / 3)
+                .phoneNumbersProbability(0.5)
+                .agencyInfoProbability(0.5)
+                .creditCardProbability(0.5)
+                .build();
+    }
+
+    /**
+     * Draws the counts and features of one reservation. The passenger count is always the first
+     * draw, so {@link #drawPassengerCount} on a fresh copy of the same source predicts it.
+     *
+     * @return a spec with fixed counts and only 0/1 probabilities
+     */
+    public ReservationSpec resolve(RandomGenerator random) {
+        int passengers = drawPassengerCount(random);
+        int flights = draw(random, minFlights, maxFlights);
+        double bags = draw(random, bagsProbability);
+        double seats = draw(random, seatsProbability);
+        double documents = draw(random, documentsProbability);
+        double payment = draw(random, paymentProbability);
+        double codeshare = draw(random, codeshareProbability);
+        double thruFlight = draw(random, thruFlightProbability);
+        double phoneNumbers = draw(random, phoneNumbersProbability);
+        double agencyInfo = draw(random, agencyInfoProbability);
+        double creditCard = payment > 0 ? draw(random, creditCardProbability) : 0;
+        return ReservationSpec.builder()
+                .minPassengers(passengers).maxPassengers(passengers)
+                .minFlights(flights).maxFlights(flights)
+                .bagsProbability(bags)
+                .seatsProbability(seats)
+                .documentsProbability(documents)
+                .paymentProbability(payment)
+                .codeshareProbability(codeshare)
+                .thruFlightProbability(thruFlight)
+                .phoneNumbersProbability(phoneNumbers)
+                .agencyInfoProbability(agencyInfo)
+                .creditCardProbability(creditCard)
+                .build();
+    }
+
+    public int drawPassengerCount(RandomGenerator random) {
+        return draw(random, minPassengers, maxPassengers);
+    }
+
+    private static int draw(RandomGenerator random, int min, int max) {
+        return min >= max ? min : random.nextInt(min, max + 1);
+    }
+
+    private static double draw(RandomGenerator random, double probability) {
+        if (probability >= 1 || probability <= 0) {
+            return rate(probability >= 1);
+        }
+        return rate(random.nextDouble() < probability);
+    }
+
+    private static double rate(boolean include) {
+        return include ? 1 : 0;
+    }
+}
@@ -0,0 +1,74 @@
+package com.pnrgov.core.services;
+
+import com.pnrgov.core.models.Reservation;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Generates the reservations of an index range on demand. Reservation {@code i} is generated from
+ * {@link GenerationContext#indexed} of the run seed and {@code i}, so every split is an
+ * independently seeded substream and the output does not depend on how the range was divided.
+ */
+final class ReservationSpliterator implements Spliterator<Reservation> {
+
+    private final SampleDataGenerator generator;
+    private final ReservationSpec spec;
+    private final long seed;
+    private final GenerationContext context;
+    private long index;
+    private final long fence;
+
+    ReservationSpliterator(SampleDataGenerator generator, ReservationSpec spec, long seed, GenerationContext context,
+                           long origin, long fence) {
+        this.generator = generator;
+        this.spec = spec;
+        this.seed = seed;
+        this.context = context;
+        this.index = origin;
+        this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super Reservation> action) {
+        if (index >= fence) {
+            return false;
+        }
+        action.accept(generate(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super Reservation> action) {
+        long i = index;
+        index = fence;
+        for (; i < fence; i++) {
+            action.accept(generate(i));
+        }
+    }
+
+    @Override
+    public Spliterator<Reservation> trySplit() {
+        long origin = index;
+        long mid = (origin + fence) >>> 1;
+        if (mid <= origin) {
+            return null;
+        }
+        index = mid;
+        return new ReservationSpliterator(generator, spec, seed, context, origin, mid);
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    private Reservation generate(long i) {
+        return generator.generateReservation(spec, context.indexed(seed, i));
+    }
+}
@@ -0,0 +1,300 @@
+package com.pnrgov.core.services;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Routes flown between the airports of {@link ReferenceData}, built once at class
+ * initialisation. Hubs connect to each other up to long-haul range; other airports connect to
+ * hubs and to nearby airports, and always to their nearest hub, so an itinerary can keep
+ * flying from any airport.
+ * <p>
+ * Routes are stored as adjacency arrays: the routes out of airport {@code a} are ids
+ * {@code offsets[a] .. offsets[a + 1]}, each with its destination and block time. Picking the
+ * next leg of an itinerary is one random index into that range.
+ */
+public final class RouteGraph {
+
+    private static final double EARTH_RADIUS_KM = 6371;
+    /** Cruise speed plus a fixed allowance for taxi, climb and descent. */
+    private static final double KM_PER_MINUTE = 13.5;
+    private static final int TAXI_MINUTES = 30;
+
+    private static final double HUB_RANGE_KM = 11_000;
+    private static final double SPOKE_RANGE_KM = 2_500;
+    private static final double REGIONAL_RANGE_KM = 1_200;
+    /** Airports closer than this serve the same city and have no route between them. */
+    private static final double SAME_CITY_KM = 100;
+
+    private static final int DOMESTIC_CONNECTION_MINUTES = 45;
+    private static final int INTERNATIONAL_CONNECTION_MINUTES = 75;
+
+    private static final String[] HUBS = {
+            "KEF", "CPH", "ARN", "OSL", "HEL", "LHR", "DUB", "CDG", "AMS", "FRA", "MUC", "ZRH", "VIE",
+            "MAD", "BCN", "LIS", "FCO", "WAW", "IST",
+            "JFK", "EWR", "BOS", "ATL", "MIA", "ORD", "IAH", "DFW", "DEN", "LAX", "SFO",
+            "YYZ", "YUL", "YVR", "MEX", "BOG", "LIM", "GRU", "SCL", "EZE"
+    };
+
+    private static final double[] LATITUDE = new double[ReferenceData.airportCount()];
+    private static final double[] LONGITUDE = new double[ReferenceData.airportCount()];
+    private static final boolean[] LOCATED = new boolean[ReferenceData.airportCount()];
+
+    private static final int[] OFFSETS;
+    private static final short[] DESTINATIONS;
+    private static final short[] BLOCK_MINUTES;
+
+    static {
+        // Approximate positions; city and placeholder codes sit at the city they stand for
+        locate("KEF", 63.99, -22.61);
+        locate("CPH", 55.62, 12.66);
+        locate("ARN", 59.65, 17.92);
+        locate("OSL", 60.19, 11.10);
+        locate("HEL", 60.32, 24.96);
+        locate("RIX", 56.92, 23.97);
+        locate("TLL", 59.41, 24.83);
+        locate("VNO", 54.63, 25.29);
+        locate("WAW", 52.17, 20.97);
+        locate("PRG", 50.10, 14.26);
+        locate("BUD", 47.44, 19.26);
+        locate("LHR", 51.47, -0.45);
+        locate("LGW", 51.15, -0.18);
+        locate("STN", 51.88, 0.24);
+        locate("MAN", 53.35, -2.27);
+        locate("EDI", 55.95, -3.37);
+        locate("GLA", 55.87, -4.43);
+        locate("DUB", 53.42, -6.27);
+        locate("CRK", 51.84, -8.49);
+        locate("SNN", 52.70, -8.92);
+        locate("CDG", 49.01, 2.55);
+        locate("ORY", 48.72, 2.38);
+        locate("LYS", 45.73, 5.09);
+        locate("NCE", 43.66, 7.21);
+        locate("MPL", 43.58, 3.96);
+        locate("AMS", 52.31, 4.76);
+        locate("RTM", 51.96, 4.44);
+        locate("EIN", 51.45, 5.37);
+        locate("BRU", 50.90, 4.48);
+        locate("BLL", 55.74, 9.15);
+        locate("ZRH", 47.46, 8.55);
+        locate("VIE", 48.11, 16.57);
+        locate("LIS", 38.77, -9.13);
+        locate("OPO", 41.24, -8.68);
+        locate("FRA", 50.03, 8.56);
+        locate("DHM", 51.52, 7.61);
+        locate("MUC", 48.35, 11.79);
+        locate("BER", 52.37, 13.50);
+        locate("COL", 50.87, 7.14);
+        locate("DUS", 51.29, 6.77);
+        locate("HAM", 53.63, 9.99);
+        locate("GBF", 49.95, 7.26);
+        locate("BRE", 53.05, 8.79);
+        locate("MAD", 40.47, -3.56);
+        locate("SVQ", 37.42, -5.90);
+        locate("AGP", 36.67, -4.50);
+        locate("VLC", 39.49, -0.48);
+        locate("IBZ", 38.87, 1.37);
+        locate("PMI", 39.55, 2.74);
+        locate("ALC", 38.28, -0.56);
+        locate("BCN", 41.30, 2.08);
+        locate("MXP", 45.63, 8.72);
+        locate("MIL", 45.46, 9.19);
+        locate("VCE", 45.51, 12.35);
+        locate("BOL", 44.53, 11.29);
+        locate("FCO", 41.80, 12.25);
+        locate("CIA", 41.80, 12.59);
+        locate("NAP", 40.89, 14.29);
+        locate("PMO", 38.18, 13.10);
+        locate("TRN", 45.20, 7.65);
+        locate("ATH", 37.94, 23.94);
+        locate("IST", 41.26, 28.74);
+        locate("BEG", 44.82, 20.29);
+        locate("JFK", 40.64, -73.78);
+        locate("LGA", 40.78, -73.87);
+        locate("EWR", 40.69, -74.17);
+        locate("BOS", 42.36, -71.01);
+        locate("PHL", 39.87, -75.24);
+        locate("WAS", 38.90, -77.04);
+        locate("IAD", 38.95, -77.46);
+        locate("BNA", 36.12, -86.68);
+        locate("ATL", 33.64, -84.43);
+        locate("TPA", 27.98, -82.53);
+        locate("MIA", 25.80, -80.29);
+        locate("FLL", 26.07, -80.15);
+        locate("MCO", 28.43, -81.31);
+        locate("ORD", 41.98, -87.90);
+        locate("MDW", 41.79, -87.75);
+        locate("DTW", 42.21, -83.35);
+        locate("CLE", 41.41, -81.85);
+        locate("IND", 39.72, -86.29);
+        locate("MSY", 29.99, -90.26);
+        locate("MEM", 35.04, -89.98);
+        locate("AUS", 30.19, -97.67);
+        locate("SAT", 29.53, -98.47);
+        locate("HOU", 29.65, -95.28);
+        locate("IAH", 29.99, -95.34);
+        locate("DFW", 32.90, -97.04);
+        locate("DAL", 32.85, -96.85);
+        locate("DEN", 39.86, -104.67);
+        locate("PHX", 33.43, -112.01);
+        locate("LAS", 36.08, -115.15);
+        locate("SLC", 40.79, -111.98);
+        locate("SFO", 37.62, -122.38);
+        locate("SJC", 37.36, -121.93);
+        locate("OAK", 37.72, -122.22);
+        locate("LAX", 33.94, -118.41);
+        locate("LGB", 33.82, -118.15);
+        locate("ONT", 34.06, -117.60);
+        locate("PDX", 45.59, -122.60);
+        locate("YYZ", 43.68, -79.63);
+        locate("YUL", 45.47, -73.74);
+        locate("YVR", 49.19, -123.18);
+        locate("YEG", 53.31, -113.58);
+        locate("YWG", 49.91, -97.24);
+        locate("YYJ", 48.65, -123.43);
+        locate("MEX", 19.44, -99.07);
+        locate("CUN", 21.04, -86.87);
+        locate("PVR", 20.68, -105.25);
+        locate("CZM", 20.52, -86.93);
+        locate("XEL", 19.43, -99.13);
+        locate("GIG", -22.81, -43.25);
+        locate("SDU", -22.91, -43.16);
+        locate("GRU", -23.43, -46.47);
+        locate("VCP", -23.01, -47.13);
+        locate("EZE", -34.82, -58.54);
+        locate("AEP", -34.56, -58.42);
+        locate("SCL", -33.39, -70.79);
+        locate("MVD", -34.84, -56.03);
+        locate("LIM", -12.02, -77.11);
+        locate("BOG", 4.70, -74.15);
+        locate("MDE", 6.16, -75.42);
+        locate("CTG", 10.44, -75.51);
+        locate("CCS", 10.60, -66.99);
+
+        int airports = ReferenceData.airportCount();
+        for (int a = 0; a < airports; a++) {
+            if (!LOCATED[a]) {
+                throw new IllegalStateException("No position for airport " + ReferenceData.airportCode(a));
+            }
+        }
+
+        boolean[] hub = new boolean[airports];
+        for (int h : ReferenceData.airports(HUBS)) {
+            hub[h] = true;
+        }
+
+        // Routes are symmetric; collect each direction into a dense matrix first, 124^2 flags
+        boolean[][] route = new boolean[airports][airports];
+        for (int a = 0; a < airports; a++) {
+            int nearestHub = -1;
+            double nearestHubKm = Double.MAX_VALUE;
+            for (int b = 0; b < airports; b++) {
+                double km = distanceKm(a, b);
+                if (a == b || km < SAME_CITY_KM) {
+                    continue;
+                }
+                double range = hub[a] && hub[b] ? HUB_RANGE_KM
+                        : hub[a] || hub[b] ? SPOKE_RANGE_KM
+                        : REGIONAL_RANGE_KM;
+                if (km <= range) {
+                    route[a][b] = route[b][a] = true;
+                }
+                if (hub[b] && km < nearestHubKm) {
+                    nearestHub = b;
+                    nearestHubKm = km;
+                }
+            }
+            if (nearestHub >= 0) {
+                route[a][nearestHub] = route[nearestHub][a] = true;
+            }
+        }
+
+        OFFSETS = new int[airports + 1];
+        for (int a = 0; a < airports; a++) {
+            int degree = 0;
+            for (int b = 0; b < airports; b++) {
+                degree += route[a][b] ? 1 : 0;
+            }
+            if (degree == 0) {
+                throw new IllegalStateException("No routes from airport " + ReferenceData.airportCode(a));
+            }
+            OFFSETS[a + 1] = OFFSETS[a] + degree;
+        }
+        DESTINATIONS = new short[OFFSETS[airports]];
+        BLOCK_MINUTES = new short[OFFSETS[airports]];
+        for (int a = 0, r = 0; a < airports; a++) {
+            for (int b = 0; b < airports; b++) {
+                if (route[a][b]) {
+                    DESTINATIONS[r] = (short) b;
+                    BLOCK_MINUTES[r++] = (short) (TAXI_MINUTES + Math.round(distanceKm(a, b) / KM_PER_MINUTE));
+                }
+            }
+        }
+    }
+
+    private RouteGraph() {
+    }
+
+    /**
+     * A random route out of the airport, avoiding the given destination when the airport has
+     * any other route. Pass {@link ReferenceData#UNKNOWN} to avoid nothing.
+     *
+     * @return a route id
+     */
+    public static int randomRoute(int airport, int avoid, RandomGenerator random) {
+        int first = OFFSETS[airport];
+        int degree = OFFSETS[airport + 1] - first;
+        int index = random.nextInt(degree);
+        if (DESTINATIONS[first + index] == avoid && degree > 1) {
+            index = index + 1 == degree ? 0 : index + 1;
+        }
+        return first + index;
+    }
+
+    /** Airport id the route flies to. */
+    public static int destination(int route) {
+        return DESTINATIONS[route];
+    }
+
+    /** Scheduled gate-to-gate time of the route. */
+    public static int blockMinutes(int route) {
+        return BLOCK_MINUTES[route];
+    }
+
+    /** Number of routes out of the airport. */
+    public static int degree(int airport) {
+        return OFFSETS[airport + 1] - OFFSETS[airport];
+    }
+
+    public static int routeCount() {
+        return DESTINATIONS.length;
+    }
+
+    /**
+     * Shortest legal connection at {@code via} between a flight from {@code from} and one to
+     * {@code to}: longer when either flight crosses a border.
+     */
+    public static int minimumConnectionMinutes(int from, int via, int to) {
+        int country = ReferenceData.countryOfAirport(via);
+        return ReferenceData.countryOfAirport(from) == country && ReferenceData.countryOfAirport(to) == country
+                ? DOMESTIC_CONNECTION_MINUTES : INTERNATIONAL_CONNECTION_MINUTES;
+    }
+
+    private static void locate(String code, double latitude, double longitude) {
+        int airport = ReferenceData.airport(code);
+        if (airport < 0) {
+            throw new IllegalStateException("Unknown airport " + code);
+        }
+        LATITUDE[airport] = Math.toRadians(latitude);
+        LONGITUDE[airport] = Math.toRadians(longitude);
+        LOCATED[airport] = true;
+    }
+
+    /** Great-circle distance by the haversine formula. */
+    private static double distanceKm(int a, int b) {
+        double dLat = LATITUDE[b] - LATITUDE[a];
+        double dLon = LONGITUDE[b] - LONGITUDE[a];
+        double h = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(LATITUDE[a]) * Math.cos(LATITUDE[b]) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
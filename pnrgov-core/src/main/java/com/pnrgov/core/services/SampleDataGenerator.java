@@ -4,79 +4,59 @@ import com.pnrgov.core.models.*;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.random.RandomGenerator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Generates random sample data for testing PNRGOV generation
  */
 @Service
 public class SampleDataGenerator {
-    private static final Random random = new Random();
-
-    private static final String[] FIRST_NAMES = {
-            "JOHN", "JANE", "MICHAEL", "SARAH", "DAVID", "EMILY", "ROBERT", "LISA",
-            "WILLIAM", "JENNIFER", "JAMES", "MARIA", "THOMAS", "ANNA", "DANIEL", "EMMA",
-            "KRISTJAN", "GUDRUN", "SIGURDUR", "HELGA", "OLAFUR", "BJORK", "MAGNUS", "HANNA",
-            "SVEN", "INGRID", "LARS", "ASTRID", "ANDERS", "SOFIA", "HENRIK", "ELSA"
-    };
-
-    private static final String[] LAST_NAMES = {
-            "SMITH", "JOHNSON", "WILLIAMS", "BROWN", "JONES", "GARCIA", "MILLER", "DAVIS",
-            "RODRIGUEZ", "MARTINEZ", "HERNANDEZ", "LOPEZ", "GONZALEZ", "WILSON", "ANDERSON", "TAYLOR",
-            "JONSSON", "KARLSSON", "NIELSEN", "HANSEN", "OLSEN", "PETERSEN", "LARSEN", "ERIKSSON",
-            "MAGNUSSON", "STEFANSSON", "GUNNARSSON", "JOHANNSSON", "SIGURDSSON", "BJORNSSON"
-    };
 
     private static final String[] TITLES = {"MR", "MRS", "MS", "MISS", "DR"};
 
-    private static final String[] AIRLINES = {
-            "FI", "W6", "SK", "OG", "W4", "BA", "LH", "AF", "KL", "DL",
-            "AA", "UA", "EK", "QF", "SQ", "AY", "IB", "LX", "OS", "SN"
-    };
-
-    private static final String[] AIRPORTS = {
-            "KEF", "CPH", "ARN", "OSL", "HEL", "RIX", "TLL", "VNO", "WAW", "PRG", "BUD",
-            "LHR", "LGW", "STN", "MAN", "EDI", "GLA", "DUB", "CRK", "SNN",
-            "CDG", "ORY", "LYS", "NCE", "MPL",
-            "AMS", "RTM", "EIN", "BRU", "BLL", "ZRH", "VIE", "LIS", "OPO",
-            "FRA", "DHM", "MUC", "BER", "COL", "DUS", "HAM", "GBF", "BRE",
-            "MAD", "SVQ", "AGP", "VLC", "IBZ", "PMI", "ALC", "BCN",
-            "MXP", "MIL", "VCE", "BOL", "FCO", "CIA", "NAP", "PMO", "TRN",
-            "ATH", "IST", "BEG",
-            "JFK", "LGA", "EWR", "BOS", "PHL", "WAS", "IAD", "BNA", "ATL", "TPA", "MIA", "FLL", "MCO",
-            "ORD", "MDW", "DTW", "CLE", "IND", "MSY", "MEM", "AUS", "SAT", "HOU", "IAH", "DFW", "DAL",
-            "DEN", "PHX", "LAS", "SLC", "SFO", "SJC", "OAK", "LAX", "LGB", "ONT", "PDX",
-            "YYZ", "YUL", "YVR", "YEG", "YWG", "YYJ",
-            "MEX", "CUN", "PVR", "CZM", "XEL",
-            "GIG", "SDU", "GRU", "VCP", "EZE", "AEP", "SCL", "MVD", "LIM", "BOG", "MDE", "CTG", "CCS"
-    };
-
-    private static final String[] COUNTRIES = {
-            "IS", "US", "GB", "DE", "FR", "ES", "IT", "CA", "SE", "NO",
-            "DK", "FI", "NL", "BE", "CH", "AT", "PL", "LT", "LV", "EE",
-            "BR", "AR", "CL", "PE", "CO", "VE", "UY", "PY", "BO", "EC", "MX"
-    };
-
-    private static final String[] CITIES = {
-            "REYKJAVIK", "COPENHAGEN", "LONDON", "PARIS", "FRANKFURT", "AMSTERDAM",
-            "BRUSSELS", "ZURICH", "STOCKHOLM", "OSLO", "VILNIUS", "ROME", "MADRID",
-            "NEW YORK", "LOS ANGELES", "CHICAGO", "BOSTON", "TORONTO", "MONTREAL"
-    };
-
     private static final String[] CARD_TYPES = {"VI", "CA", "AX", "DC", "MC"};
 
-    private static final String[] EMAIL_DOMAINS = {
-            "gmail.com", "hotmail.com", "yahoo.com", "outlook.com", "icloud.com",
-            "example.com", "mail.com", "protonmail.com"
-    };
-
     private static final String[] PHONE_COUNTRY_CODES = {
             "354", "45", "46", "47", "44", "33", "49", "31", "32",
             "41", "1", "370", "372", "371", "358"
     };
 
+    /** Ground time of a through flight at its intermediate stop, before up to 30 minutes of delay. */
+    private static final int THRU_STOP_MINUTES = 40;
+
+    private final Clock clock;
+    private final RecordLocatorAllocator recordLocators;
+    private final PackedDictionary firstNames;
+    private final PackedDictionary lastNames;
+    private final PackedDictionary cities;
+    private final PackedDictionary streets;
+    private final PackedDictionary emailDomains;
+    private final TravelerPopulation population;
+
+    /**
+     * @param population travelers to draw passengers from; without one, every passenger is a new
+     *                   random identity
+     */
+    public SampleDataGenerator(Clock clock, RecordLocatorAllocator recordLocators, SampleDictionaries dictionaries,
+                               Optional<TravelerPopulation> population) {
+        this.clock = clock;
+        this.recordLocators = recordLocators;
+        this.firstNames = dictionaries.firstNames();
+        this.lastNames = dictionaries.lastNames();
+        this.cities = dictionaries.cities();
+        this.streets = dictionaries.streets();
+        this.emailDomains = dictionaries.emailDomains();
+        this.population = population.orElse(null);
+    }
+
     public Reservation generateRandomReservation() {
         return generateRandomReservation(2, 2, true, true, true, true, false, false, true, true, true);
     }
@@ -93,162 +73,306 @@ public class SampleDataGenerator {
             boolean includePhoneNumbers,
             boolean includeAgencyInfo,
             boolean includeCreditCard) {
+        return generateRandomReservation(GenerationContext.create(clock), passengerCount, flightCount, includeBags,
+                includeSeats, includeDocuments, includePayment, includeCodeshare, includeThruFlight, includePhoneNumbers,
+                includeAgencyInfo, includeCreditCard);
+    }
+
+    /**
+     * Draws counts and features from the spec, then generates the reservation, all from the
+     * given context.
+     */
+    public Reservation generateReservation(ReservationSpec spec, GenerationContext context) {
+        ReservationSpec drawn = spec.resolve(context.random());
+        return generateRandomReservation(context,
+                drawn.getMinPassengers(),
+                drawn.getMinFlights(),
+                drawn.getBagsProbability() > 0,
+                drawn.getSeatsProbability() > 0,
+                drawn.getDocumentsProbability() > 0,
+                drawn.getPaymentProbability() > 0,
+                drawn.getCodeshareProbability() > 0,
+                drawn.getThruFlightProbability() > 0,
+                drawn.getPhoneNumbersProbability() > 0,
+                drawn.getAgencyInfoProbability() > 0,
+                drawn.getCreditCardProbability() > 0);
+    }
+
+    public Stream<Reservation> generateReservations(ReservationSpec spec, long count) {
+        return generateReservations(spec, count, GenerationContext.create(clock));
+    }
+
+    /**
+     * A lazy stream of {@code count} reservations. Each reservation is generated when the stream
+     * pulls it, so any count can be consumed in constant memory. The stream is sequential;
+     * {@code .parallel()} splits it into independently seeded ranges, and the reservations are
+     * the same whichever way it is run. The seed of the run is the first draw from the context.
+     */
+    public Stream<Reservation> generateReservations(ReservationSpec spec, long count, GenerationContext context) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count must not be negative: " + count);
+        }
+        long seed = context.random().nextLong();
+        return StreamSupport.stream(
+                new ReservationSpliterator(this, spec, seed, context, 0, count), false);
+    }
+
+    /**
+     * Generates a reservation drawing every random value and every date from the given context,
+     * so a seeded context reproduces the same reservation and separate contexts can be used from
+     * separate threads.
+     */
+    public Reservation generateRandomReservation(
+            GenerationContext context,
+            int passengerCount,
+            int flightCount,
+            boolean includeBags,
+            boolean includeSeats,
+            boolean includeDocuments,
+            boolean includePayment,
+            boolean includeCodeshare,
+            boolean includeThruFlight,
+            boolean includePhoneNumbers,
+            boolean includeAgencyInfo,
+            boolean includeCreditCard) {
+        RandomGenerator random = context.random();
+        LocalDateTime now = context.now();
+
+        Reservation reservation = generateReservationHeader(context, includePhoneNumbers, includeAgencyInfo);
+        List<Flight> flights = generateItinerary(random, now, flightCount, includeCodeshare, includeThruFlight);
+        reservation.getFlights().addAll(flights);
+
+        // Each reservation has its own flights, so its cabins start empty
+        List<SeatMap> seatMaps = new ArrayList<>(includeSeats ? flights.size() : 0);
+        for (int f = 0; includeSeats && f < flights.size(); f++) {
+            seatMaps.add(SeatMap.forAircraft(flights.get(f).getAircraftType()));
+        }
+        addPassengers(reservation, random, now, passengerCount, SeatPlan.of(seatMaps),
+                includeBags, includeSeats, includeDocuments, includePhoneNumbers);
+
+        if (includePayment && includeCreditCard) {
+            reservation.getPayments().add(generateRandomPayment(random, now, reservation));
+        }
+
+        return reservation;
+    }
+
+    /**
+     * Generates a reservation whose passengers travel on the given itinerary instead of generated
+     * flights. The flights are added as given, not copied, so reservations on the same flight share
+     * it; codeshare and through flights are whatever the itinerary contains. The spec's flight
+     * count, codeshare and through-flight settings are ignored.
+     *
+     * @param seats the cabins of the itinerary's flights; pass shared seat maps to keep seats
+     *              unique across every reservation on a flight
+     */
+    public Reservation generateReservation(ReservationSpec spec, GenerationContext context,
+                                           List<Flight> itinerary, SeatPlan seats) {
+        ReservationSpec drawn = spec.resolve(context.random());
+        RandomGenerator random = context.random();
+        LocalDateTime now = context.now();
+
+        Reservation reservation = generateReservationHeader(context,
+                drawn.getPhoneNumbersProbability() > 0, drawn.getAgencyInfoProbability() > 0);
+        reservation.getFlights().addAll(itinerary);
+        addPassengers(reservation, random, now, drawn.getMinPassengers(), seats,
+                drawn.getBagsProbability() > 0,
+                drawn.getSeatsProbability() > 0,
+                drawn.getDocumentsProbability() > 0,
+                drawn.getPhoneNumbersProbability() > 0);
+
+        if (drawn.getPaymentProbability() > 0 && drawn.getCreditCardProbability() > 0) {
+            reservation.getPayments().add(generateRandomPayment(random, now, reservation));
+        }
 
-        String contactFirstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
-        String contactLastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
-        String emailDomain = EMAIL_DOMAINS[random.nextInt(EMAIL_DOMAINS.length)];
+        return reservation;
+    }
+
+    /**
+     * Generates the flights of one itinerary: a through flight of two legs under one flight number,
+     * then a codeshare flight, then connecting flights, {@code flightCount} in all. Several
+     * reservations can then be generated against it.
+     */
+    public List<Flight> generateItinerary(GenerationContext context, int flightCount,
+                                          boolean includeCodeshare, boolean includeThruFlight) {
+        return generateItinerary(context.random(), context.now(), flightCount, includeCodeshare, includeThruFlight);
+    }
+
+    private Reservation generateReservationHeader(GenerationContext context, boolean includePhoneNumbers,
+                                                  boolean includeAgencyInfo) {
+        RandomGenerator random = context.random();
+        LocalDateTime now = context.now();
+
+        int contactFirstName = firstNames.sample(random);
+        int contactLastName = lastNames.sample(random);
+        int emailDomain = emailDomains.sample(random);
         String phoneCountryCode = PHONE_COUNTRY_CODES[random.nextInt(PHONE_COUNTRY_CODES.length)];
 
-        Reservation reservation = Reservation.builder()
-                .recordLocator(generateRecordLocator())
-                .bookingDate(LocalDate.now().minusDays(random.nextInt(30) + 1))
-                .createdDate(LocalDateTime.now().minusDays(random.nextInt(30) + 1))
+        return Reservation.builder()
+                .recordLocator(context.seeded() ? generateRecordLocator(random) : recordLocators.next())
+                .bookingDate(now.toLocalDate().minusDays(random.nextInt(30) + 1))
+                .createdDate(now.minusDays(random.nextInt(30) + 1))
                 .bookingChannel("WEB")
-                .agencyCode(includeAgencyInfo ? generateAgencyCode() : "")
+                .agencyCode(includeAgencyInfo ? generateAgencyCode(random) : "")
                 .status("HK")
-                .contactFirstName(contactFirstName)
-                .contactLastName(contactLastName)
-                .contactEmail(contactFirstName.toLowerCase() + "." + contactLastName.toLowerCase() + "@" + emailDomain)
-                .contactPhone(includePhoneNumbers ? phoneCountryCode + random.nextInt(9000000) + 1000000 : "")
+                .contactFirstName(firstNames.get(contactFirstName))
+                .contactLastName(lastNames.get(contactLastName))
+                .contactEmail(email(contactFirstName, contactLastName, emailDomain))
+                .contactPhone(includePhoneNumbers ? phoneCountryCode + (random.nextInt(9000000) + 1000000) : "")
                 .build();
+    }
 
+    /**
+     * Flies the itinerary along {@link RouteGraph} routes: each leg departs from where the
+     * previous one arrived, no earlier than the minimum connection time after its arrival.
+     */
+    private List<Flight> generateItinerary(RandomGenerator random, LocalDateTime now, int flightCount,
+                                           boolean includeCodeshare, boolean includeThruFlight) {
+        List<Flight> flights = new ArrayList<>(Math.max(flightCount, 0));
         int segmentNumber = 1;
+        int airport = randomAirport(random);
+        int previous = ReferenceData.UNKNOWN;
+        LocalDateTime arrival = null;
 
         if (includeThruFlight && flightCount > 0) {
             String thruFlightNumber = String.valueOf(random.nextInt(9900) + 100);
-            String thruAirline = AIRLINES[random.nextInt(AIRLINES.length)];
-            LocalDateTime departureDate = LocalDateTime.now().plusDays(random.nextInt(60) + 1);
-
-            String firstAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-            String middleAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-            while (middleAirport.equals(firstAirport)) {
-                middleAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-            }
-
-            reservation.getFlights().add(Flight.builder()
-                    .flightNumber(thruFlightNumber)
-                    .airlineCode(thruAirline)
-                    .departureAirport(firstAirport)
-                    .arrivalAirport(middleAirport)
-                    .departureDate(departureDate)
-                    .arrivalDate(departureDate.plusHours(random.nextInt(4) + 2))
-                    .aircraftType(random.nextInt(2) == 0 ? "738" : "777")
-                    .serviceClass("Y")
-                    .operatingCarrier(thruAirline)
-                    .flightStatus("HK")
-                    .segmentNumber(segmentNumber++)
-                    .build());
-
-            String finalAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-            while (finalAirport.equals(middleAirport) || finalAirport.equals(firstAirport)) {
-                finalAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            String thruAirline = ReferenceData.airlineCode(randomAirline(random));
+            String aircraftType = random.nextInt(2) == 0 ? "738" : "777";
+
+            for (int leg = 0; leg < 2; leg++) {
+                int route = RouteGraph.randomRoute(airport, previous, random);
+                // Through passengers stay on board while the aircraft turns around
+                LocalDateTime departureDate = leg == 0
+                        ? nextDeparture(random, now, arrival, previous, airport, route)
+                        : arrival.plusMinutes(THRU_STOP_MINUTES + 5 * random.nextInt(7));
+                arrival = departureDate.plusMinutes(RouteGraph.blockMinutes(route));
+
+                flights.add(Flight.builder()
+                        .flightNumber(thruFlightNumber)
+                        .airlineCode(thruAirline)
+                        .departureAirport(ReferenceData.airportCode(airport))
+                        .arrivalAirport(ReferenceData.airportCode(RouteGraph.destination(route)))
+                        .departureDate(departureDate)
+                        .arrivalDate(arrival)
+                        .aircraftType(aircraftType)
+                        .serviceClass("Y")
+                        .operatingCarrier(thruAirline)
+                        .flightStatus("HK")
+                        .segmentNumber(segmentNumber++)
+                        .build());
+                previous = airport;
+                airport = RouteGraph.destination(route);
             }
 
-            LocalDateTime secondLegDeparture = departureDate.plusHours(random.nextInt(4) + 3);
-            reservation.getFlights().add(Flight.builder()
-                    .flightNumber(thruFlightNumber)
-                    .airlineCode(thruAirline)
-                    .departureAirport(middleAirport)
-                    .arrivalAirport(finalAirport)
-                    .departureDate(secondLegDeparture)
-                    .arrivalDate(secondLegDeparture.plusHours(random.nextInt(4) + 2))
-                    .aircraftType(random.nextInt(2) == 0 ? "738" : "777")
-                    .serviceClass("Y")
-                    .operatingCarrier(thruAirline)
-                    .flightStatus("HK")
-                    .segmentNumber(segmentNumber++)
-                    .build());
-
             flightCount = Math.max(0, flightCount - 2);
         }
 
         if (includeCodeshare && flightCount > 0) {
-            String marketingCarrier = AIRLINES[random.nextInt(AIRLINES.length)];
-            String operatingCarrier = AIRLINES[random.nextInt(AIRLINES.length)];
-            while (operatingCarrier.equals(marketingCarrier)) {
-                operatingCarrier = AIRLINES[random.nextInt(AIRLINES.length)];
-            }
-
-            String departureAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-            String arrivalAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-            while (arrivalAirport.equals(departureAirport)) {
-                arrivalAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
+            int marketingCarrier = randomAirline(random);
+            int operatingCarrier = randomAirline(random);
+            while (operatingCarrier == marketingCarrier) {
+                operatingCarrier = randomAirline(random);
             }
 
-            LocalDateTime departureDate = LocalDateTime.now().plusDays(random.nextInt(60) + 1);
+            int route = RouteGraph.randomRoute(airport, previous, random);
+            LocalDateTime departureDate = nextDeparture(random, now, arrival, previous, airport, route);
+            arrival = departureDate.plusMinutes(RouteGraph.blockMinutes(route));
             String serviceClass = switch (random.nextInt(3)) {
                 case 1 -> "C";
                 case 2 -> "F";
                 default -> "Y";
             };
 
-            reservation.getFlights().add(Flight.builder()
+            flights.add(Flight.builder()
                     .flightNumber(String.valueOf(random.nextInt(9900) + 100))
-                    .airlineCode(marketingCarrier)
+                    .airlineCode(ReferenceData.airlineCode(marketingCarrier))
                     // Operating carrier uses its own distinct flight number
                     .operatingFlightNumber(String.valueOf(random.nextInt(9900) + 100))
-                    .departureAirport(departureAirport)
-                    .arrivalAirport(arrivalAirport)
+                    .departureAirport(ReferenceData.airportCode(airport))
+                    .arrivalAirport(ReferenceData.airportCode(RouteGraph.destination(route)))
                     .departureDate(departureDate)
-                    .arrivalDate(departureDate.plusHours(random.nextInt(13) + 2))
+                    .arrivalDate(arrival)
                     .aircraftType(random.nextInt(2) == 0 ? "738" : "777")
                     .serviceClass(serviceClass)
-                    .operatingCarrier(operatingCarrier)
+                    .operatingCarrier(ReferenceData.airlineCode(operatingCarrier))
                     .flightStatus("HK")
                     .segmentNumber(segmentNumber++)
                     .build());
+            previous = airport;
+            airport = RouteGraph.destination(route);
 
             flightCount--;
         }
 
-        String currentArrivalAirport = reservation.getFlights().isEmpty() ?
-                AIRPORTS[random.nextInt(AIRPORTS.length)] :
-                reservation.getFlights().get(reservation.getFlights().size() - 1).getArrivalAirport();
-
         for (int i = 0; i < flightCount; i++) {
-            Flight flight = generateConnectedFlight(segmentNumber++, currentArrivalAirport);
-            reservation.getFlights().add(flight);
-            currentArrivalAirport = flight.getArrivalAirport();
+            int route = RouteGraph.randomRoute(airport, previous, random);
+            Flight flight = generateConnectedFlight(random, segmentNumber++, airport, route,
+                    nextDeparture(random, now, arrival, previous, airport, route));
+            flights.add(flight);
+            arrival = flight.getArrivalDate();
+            previous = airport;
+            airport = RouteGraph.destination(route);
         }
 
-        for (int i = 0; i < passengerCount; i++) {
-            Passenger passenger = generateRandomPassenger(includePhoneNumbers);
+        return flights;
+    }
+
+    /**
+     * Departure of a leg on {@code route} from {@code airport}: within the next two months for
+     * the first leg, otherwise the minimum connection time after the previous arrival plus a
+     * wait of up to three hours.
+     */
+    private static LocalDateTime nextDeparture(RandomGenerator random, LocalDateTime now, LocalDateTime arrival,
+                                               int previous, int airport, int route) {
+        if (arrival == null) {
+            return now.plusDays(random.nextInt(60) + 1);
+        }
+        int connection = RouteGraph.minimumConnectionMinutes(previous, airport, RouteGraph.destination(route));
+        return arrival.plusMinutes(connection + 5 * random.nextInt(37));
+    }
 
-            if (includeDocuments) {
-                passenger.getDocuments().add(generateRandomDocument(passenger));
+    private void addPassengers(Reservation reservation, RandomGenerator random, LocalDateTime now,
+                               int passengerCount, SeatPlan seats, boolean includeBags, boolean includeSeats,
+                               boolean includeDocuments, boolean includePhoneNumbers) {
+        List<Flight> flights = reservation.getFlights();
+        int[] travelers = population != null ? new int[passengerCount] : null;
+        for (int i = 0; i < passengerCount; i++) {
+            Passenger passenger;
+            if (travelers != null) {
+                travelers[i] = drawTraveler(random, travelers, i);
+                passenger = generateTraveler(travelers[i], includePhoneNumbers);
+                if (includeDocuments) {
+                    passenger.getDocuments().add(generateTravelerDocument(travelers[i], passenger));
+                }
+            } else {
+                passenger = generateRandomPassenger(random, now, includePhoneNumbers);
+                if (includeDocuments) {
+                    passenger.getDocuments().add(generateRandomDocument(random, now, passenger));
+                }
             }
 
             if (includeBags) {
-                for (Flight flight : reservation.getFlights()) {
-                    passenger.getBags().add(generateRandomBaggage(passenger, flight));
+                for (Flight flight : flights) {
+                    passenger.getBags().add(generateRandomBaggage(random, passenger, flight));
                 }
             }
 
             if (includeSeats) {
-                for (Flight flight : reservation.getFlights()) {
-                    passenger.getSeats().add(generateRandomSeat(passenger, flight));
+                for (int f = 0; f < flights.size(); f++) {
+                    SeatAssignment seat = generateSeat(random, passenger, flights.get(f), seats, f, i);
+                    if (seat != null) {
+                        passenger.getSeats().add(seat);
+                    }
                 }
             }
 
             reservation.getPassengers().add(passenger);
         }
-
-        if (includePayment && includeCreditCard) {
-            reservation.getPayments().add(generateRandomPayment(reservation));
-        }
-
-        return reservation;
     }
 
-    private Flight generateConnectedFlight(int segmentNumber, String departureAirport) {
-        String airline = AIRLINES[random.nextInt(AIRLINES.length)];
-        String arrivalAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-
-        while (arrivalAirport.equals(departureAirport)) {
-            arrivalAirport = AIRPORTS[random.nextInt(AIRPORTS.length)];
-        }
-
-        LocalDateTime departureDate = LocalDateTime.now().plusDays(random.nextInt(60) + 1);
+    private Flight generateConnectedFlight(RandomGenerator random, int segmentNumber, int departureAirport, int route,
+                                           LocalDateTime departureDate) {
+        String airline = ReferenceData.airlineCode(randomAirline(random));
         String serviceClass = switch (random.nextInt(3)) {
             case 1 -> "C";
             case 2 -> "F";
@@ -258,10 +382,10 @@ public class SampleDataGenerator {
         return Flight.builder()
                 .flightNumber(String.valueOf(random.nextInt(9900) + 100))
                 .airlineCode(airline)
-                .departureAirport(departureAirport)
-                .arrivalAirport(arrivalAirport)
+                .departureAirport(ReferenceData.airportCode(departureAirport))
+                .arrivalAirport(ReferenceData.airportCode(RouteGraph.destination(route)))
                 .departureDate(departureDate)
-                .arrivalDate(departureDate.plusHours(random.nextInt(13) + 2))
+                .arrivalDate(departureDate.plusMinutes(RouteGraph.blockMinutes(route)))
                 .aircraftType(random.nextInt(2) == 0 ? "738" : "777")
                 .serviceClass(serviceClass)
                 .operatingCarrier(airline)
@@ -270,52 +394,123 @@ public class SampleDataGenerator {
                 .build();
     }
 
-    private Passenger generateRandomPassenger(boolean includePhone) {
+    private Passenger generateRandomPassenger(RandomGenerator random, LocalDateTime now, boolean includePhone) {
         String gender = random.nextInt(2) == 0 ? "M" : "F";
-        String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
-        String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
-        String country = COUNTRIES[random.nextInt(COUNTRIES.length)];
-        String city = CITIES[random.nextInt(CITIES.length)];
-        String emailDomain = EMAIL_DOMAINS[random.nextInt(EMAIL_DOMAINS.length)];
+        int firstName = firstNames.sample(random);
+        int lastName = lastNames.sample(random);
+        String country = ReferenceData.countryCode(randomCountry(random));
+        int city = cities.sample(random);
+        int emailDomain = emailDomains.sample(random);
         String phoneCountryCode = PHONE_COUNTRY_CODES[random.nextInt(PHONE_COUNTRY_CODES.length)];
 
         String title = gender.equals("M") ? "MR" : TITLES[random.nextInt(1, TITLES.length)];
 
         return Passenger.builder()
-                .firstName(firstName)
-                .lastName(lastName)
-                .middleName(random.nextInt(2) == 0 ? "" : String.valueOf(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)].charAt(0)))
+                .firstName(firstNames.get(firstName))
+                .lastName(lastNames.get(lastName))
+                .middleName(random.nextInt(2) == 0 ? "" : String.valueOf(firstNames.firstChar(firstNames.sample(random))))
                 .title(title)
-                .dateOfBirth(LocalDate.now().minusYears(random.nextInt(52) + 18))
+                .dateOfBirth(now.toLocalDate().minusYears(random.nextInt(52) + 18))
                 .gender(gender)
                 .nationality(country)
                 .passengerType("ADT")
-                .email(firstName.toLowerCase() + "." + lastName.toLowerCase() + "@" + emailDomain)
-                .phone(includePhone ? phoneCountryCode + random.nextInt(9000000) + 1000000 : "")
-                .addressLine1(random.nextInt(999) + 1 + " " + getStreetName())
+                .email(email(firstName, lastName, emailDomain))
+                .phone(includePhone ? phoneCountryCode + (random.nextInt(9000000) + 1000000) : "")
+                .addressLine1(generateAddressLine(random))
                 .addressLine2(random.nextInt(3) == 0 ? "" : "APT " + (random.nextInt(199) + 1))
-                .city(city)
-                .state(getStateOrRegion(country))
-                .postalCode(getPostalCode(country))
+                .city(cities.get(city))
+                .state(getStateOrRegion(random, country))
+                .postalCode(getPostalCode(random, country))
                 .country(country)
                 .build();
     }
 
-    private TravelDocument generateRandomDocument(Passenger passenger) {
-        String issuingCountry = COUNTRIES[random.nextInt(COUNTRIES.length)];
+    private TravelDocument generateRandomDocument(RandomGenerator random, LocalDateTime now, Passenger passenger) {
+        String issuingCountry = ReferenceData.countryCode(randomCountry(random));
 
         return TravelDocument.builder()
                 .passenger(passenger)
                 .documentType("P")
-                .documentNumber(issuingCountry + random.nextInt(900000000) + 100000000)
+                .documentNumber(issuingCountry + (random.nextInt(900000000) + 100000000))
                 .issuingCountry(issuingCountry)
-                .expiryDate(LocalDate.now().plusYears(random.nextInt(9) + 1))
-                .issueDate(LocalDate.now().minusYears(random.nextInt(5) + 1))
+                .expiryDate(now.toLocalDate().plusYears(random.nextInt(9) + 1))
+                .issueDate(now.toLocalDate().minusYears(random.nextInt(5) + 1))
                 .nationality(issuingCountry)
                 .build();
     }
 
-    private Baggage generateRandomBaggage(Passenger passenger, Flight flight) {
+    /**
+     * Draws a traveler who is not already on the reservation. Under a steep Zipf exponent the
+     * head of the population comes up often, so a few redraws are allowed before accepting a repeat.
+     */
+    private int drawTraveler(RandomGenerator random, int[] travelers, int count) {
+        int traveler = population.sample(random);
+        for (int attempt = 0; attempt < 8 && contains(travelers, count, traveler); attempt++) {
+            traveler = population.sample(random);
+        }
+        return traveler;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The traveler as a passenger; the same traveler always has the same details. */
+    private Passenger generateTraveler(int traveler, boolean includePhone) {
+        RandomGenerator profile = population.profile(traveler);
+        boolean female = population.isFemale(traveler);
+        int firstName = population.firstName(traveler);
+        int lastName = population.lastName(traveler);
+        String country = ReferenceData.countryCode(population.nationality(traveler));
+        int city = cities.sample(profile);
+        int emailDomain = emailDomains.sample(profile);
+        String phone = PHONE_COUNTRY_CODES[profile.nextInt(PHONE_COUNTRY_CODES.length)]
+                + (profile.nextInt(9000000) + 1000000);
+
+        return Passenger.builder()
+                .firstName(firstNames.get(firstName))
+                .lastName(lastNames.get(lastName))
+                .middleName(profile.nextInt(2) == 0 ? "" : String.valueOf(firstNames.firstChar(firstNames.sample(profile))))
+                .title(female ? TITLES[profile.nextInt(1, TITLES.length)] : "MR")
+                .dateOfBirth(population.dateOfBirth(traveler))
+                .gender(female ? "F" : "M")
+                .nationality(country)
+                .passengerType("ADT")
+                .email(email(firstName, lastName, emailDomain))
+                .phone(includePhone ? phone : "")
+                .addressLine1(generateAddressLine(profile))
+                .addressLine2(profile.nextInt(3) == 0 ? "" : "APT " + (profile.nextInt(199) + 1))
+                .city(cities.get(city))
+                .state(getStateOrRegion(profile, country))
+                .postalCode(getPostalCode(profile, country))
+                .country(country)
+                .build();
+    }
+
+    /** The traveler's passport, issued by their country of nationality. */
+    private TravelDocument generateTravelerDocument(int traveler, Passenger passenger) {
+        RandomGenerator profile = population.profile(traveler);
+        String issuingCountry = passenger.getNationality();
+        LocalDate referenceDate = population.referenceDate();
+        LocalDate issueDate = referenceDate.minusDays(profile.nextInt(1, 10 * 365));
+
+        return TravelDocument.builder()
+                .passenger(passenger)
+                .documentType("P")
+                .documentNumber(issuingCountry + population.documentNumber(traveler))
+                .issuingCountry(issuingCountry)
+                .expiryDate(issueDate.plusYears(10))
+                .issueDate(issueDate)
+                .nationality(issuingCountry)
+                .build();
+    }
+
+    private Baggage generateRandomBaggage(RandomGenerator random, Passenger passenger, Flight flight) {
         return Baggage.builder()
                 .passenger(passenger)
                 .flight(flight)
@@ -328,41 +523,53 @@ public class SampleDataGenerator {
                 .build();
     }
 
-    private SeatAssignment generateRandomSeat(Passenger passenger, Flight flight) {
-        int row = random.nextInt(39) + 1;
-        char seatLetter = (char) ('A' + random.nextInt(6));
-
-        String characteristics = switch (seatLetter) {
-            case 'A', 'F' -> "Window";
-            case 'C', 'D' -> "Aisle";
-            default -> "Middle";
-        };
-
+    /** The passenger's seat on leg {@code leg} from the plan, or {@code null} when there is none. */
+    private SeatAssignment generateSeat(RandomGenerator random, Passenger passenger, Flight flight,
+                                        SeatPlan seats, int leg, int passengerIndex) {
+        SeatMap seatMap = seats.seatMap(leg);
+        int preferred = seats.preferredSeat(leg, passengerIndex, random);
+        int seat = preferred < 0 ? -1 : seatMap.assign(preferred);
+        if (seat < 0) {
+            return null;
+        }
         return SeatAssignment.builder()
                 .passenger(passenger)
                 .flight(flight)
-                .seatNumber(row + String.valueOf(seatLetter))
-                .seatCharacteristics(characteristics)
+                .seatNumber(seatMap.label(seat))
+                .seatCharacteristics(seatMap.characteristics(seat))
                 .build();
     }
 
-    private Payment generateRandomPayment(Reservation reservation) {
+    private Payment generateRandomPayment(RandomGenerator random, LocalDateTime now, Reservation reservation) {
         String cardType = CARD_TYPES[random.nextInt(CARD_TYPES.length)];
 
         return Payment.builder()
                 .reservation(reservation)
                 .paymentType("CC")
                 .cardType(cardType)
-                .cardNumber("****" + random.nextInt(9000) + 1000)
-                .expiryDate(LocalDate.now().plusYears(random.nextInt(4) + 1))
-                .cardHolderName(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + LAST_NAMES[random.nextInt(LAST_NAMES.length)])
+                .cardNumber("****" + (random.nextInt(9000) + 1000))
+                .expiryDate(now.toLocalDate().plusYears(random.nextInt(4) + 1))
+                .cardHolderName(generateCardHolderName(random))
                 .amount(BigDecimal.valueOf(random.nextInt(4500) + 500))
                 .currency("USD")
-                .paymentDate(LocalDateTime.now().minusDays(random.nextInt(30) + 1))
+                .paymentDate(now.minusDays(random.nextInt(30) + 1))
                 .build();
     }
 
-    private String generateRecordLocator() {
+    private static int randomAirport(RandomGenerator random) {
+        return random.nextInt(ReferenceData.airportCount());
+    }
+
+    private static int randomAirline(RandomGenerator random) {
+        return random.nextInt(ReferenceData.randomAirlineCount());
+    }
+
+    private static int randomCountry(RandomGenerator random) {
+        return random.nextInt(ReferenceData.randomCountryCount());
+    }
+
+    /** Seeded runs only: random locators replay, but may repeat across reservations. */
+    private String generateRecordLocator(RandomGenerator random) {
         String chars = "ABCDEFGHJKLMNPQRSTUVWXYZ23456789";
         StringBuilder result = new StringBuilder();
         for (int i = 0; i < 6; i++) {
@@ -371,26 +578,37 @@ public class SampleDataGenerator {
         return result.toString();
     }
 
-    private String generateAgencyCode() {
+    private String generateAgencyCode(RandomGenerator random) {
         return String.valueOf(random.nextInt(90000000) + 10000000);
     }
 
-    private String getStreetName() {
-        String[] streetNames = {
-                "MAIN STREET", "HIGH STREET", "CHURCH ROAD", "STATION ROAD", "PARK AVENUE",
-                "MARKET STREET", "SAEBRAUT", "LAUGAVEGUR", "SKOLAVORDUSTIGUR"
-        };
-        return streetNames[random.nextInt(streetNames.length)];
+    /** {@code first.last@domain} in lower case, built without intermediate Strings. */
+    private String email(int firstName, int lastName, int emailDomain) {
+        StringBuilder email = new StringBuilder(40);
+        firstNames.appendLowerCaseTo(email, firstName).append('.');
+        lastNames.appendLowerCaseTo(email, lastName).append('@');
+        return emailDomains.appendTo(email, emailDomain).toString();
+    }
+
+    private String generateAddressLine(RandomGenerator random) {
+        StringBuilder line = new StringBuilder(32).append(random.nextInt(999) + 1).append(' ');
+        return streets.appendTo(line, streets.sample(random)).toString();
+    }
+
+    private String generateCardHolderName(RandomGenerator random) {
+        StringBuilder name = new StringBuilder(32);
+        firstNames.appendTo(name, firstNames.sample(random)).append(' ');
+        return lastNames.appendTo(name, lastNames.sample(random)).toString();
     }
 
-    private String getStateOrRegion(String country) {
+    private String getStateOrRegion(RandomGenerator random, String country) {
         return switch (country) {
             case "US" -> new String[]{"CA", "NY", "FL", "TX", "IL", "WA"}[random.nextInt(6)];
             default -> "";
         };
     }
 
-    private String getPostalCode(String country) {
+    private String getPostalCode(RandomGenerator random, String country) {
         return switch (country) {
             case "US" -> String.valueOf(random.nextInt(90000) + 10000);
             case "GB" -> String.valueOf((char) ('A' + random.nextInt(26))) + (char) ('A' + random.nextInt(26)) +
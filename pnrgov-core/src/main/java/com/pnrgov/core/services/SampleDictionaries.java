@@ -0,0 +1,80 @@
+package com.pnrgov.core.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Name and address word lists of the {@link SampleDataGenerator}. The built-in lists are small
+ * and ship as resources under {@code pnrgov/dictionaries}; large datasets should load lists with
+ * 100k+ entries from a directory so that names and addresses do not repeat every few dozen
+ * records.
+ */
+public record SampleDictionaries(PackedDictionary firstNames,
+                                 PackedDictionary lastNames,
+                                 PackedDictionary cities,
+                                 PackedDictionary streets,
+                                 PackedDictionary emailDomains) {
+
+    private static final String RESOURCE_PATH = "/pnrgov/dictionaries/";
+    static final String FIRST_NAMES = "first-names.txt";
+    static final String LAST_NAMES = "last-names.txt";
+    static final String CITIES = "cities.txt";
+    static final String STREETS = "streets.txt";
+    static final String EMAIL_DOMAINS = "email-domains.txt";
+
+    public SampleDictionaries {
+        requireEntries(firstNames, FIRST_NAMES);
+        requireEntries(lastNames, LAST_NAMES);
+        requireEntries(cities, CITIES);
+        requireEntries(streets, STREETS);
+        requireEntries(emailDomains, EMAIL_DOMAINS);
+    }
+
+    /** The lists shipped with the generator. */
+    public static SampleDictionaries builtIn() {
+        return new SampleDictionaries(resource(FIRST_NAMES), resource(LAST_NAMES), resource(CITIES),
+                resource(STREETS), resource(EMAIL_DOMAINS));
+    }
+
+    /**
+     * Lists from {@code first-names.txt}, {@code last-names.txt}, {@code cities.txt},
+     * {@code streets.txt} and {@code email-domains.txt} in the directory, one entry per line in
+     * UTF-8. Missing files fall back to the built-in list.
+     */
+    public static SampleDictionaries load(Path directory) {
+        return new SampleDictionaries(file(directory, FIRST_NAMES), file(directory, LAST_NAMES),
+                file(directory, CITIES), file(directory, STREETS), file(directory, EMAIL_DOMAINS));
+    }
+
+    private static PackedDictionary file(Path directory, String name) {
+        Path path = directory.resolve(name);
+        if (!Files.isRegularFile(path)) {
+            return resource(name);
+        }
+        try (InputStream in = Files.newInputStream(path)) {
+            return PackedDictionary.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read dictionary " + path, e);
+        }
+    }
+
+    private static PackedDictionary resource(String name) {
+        try (InputStream in = SampleDictionaries.class.getResourceAsStream(RESOURCE_PATH + name)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing dictionary resource " + RESOURCE_PATH + name);
+            }
+            return PackedDictionary.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read dictionary resource " + RESOURCE_PATH + name, e);
+        }
+    }
+
+    private static void requireEntries(PackedDictionary dictionary, String name) {
+        if (dictionary == null || dictionary.isEmpty()) {
+            throw new IllegalArgumentException("Dictionary " + name + " has no entries");
+        }
+    }
+}
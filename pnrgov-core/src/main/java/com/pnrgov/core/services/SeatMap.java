@@ -0,0 +1,116 @@
+package com.pnrgov.core.services;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Occupancy of one flight's cabin as a bitset over the seats of its aircraft type. A seat is
+ * taken with a single CAS on the 64-seat word that holds it, so one map can be shared by every
+ * thread that generates passengers for the same flight and never hands out a seat twice.
+ * <p>
+ * {@link #assign} starts at a preferred seat and takes the next free one, visiting whole words at
+ * a time; even a full 777 cabin is only seven words, so an assignment is O(1).
+ */
+public final class SeatMap {
+
+    /** Cabin geometry of an aircraft type; labels are built once and shared by every map. */
+    private static final class Layout {
+        final String[] labels;
+        final String[] characteristics;
+
+        /**
+         * @param blocks letters of each seat block, left to right; aisles run between blocks
+         */
+        Layout(int rows, String... blocks) {
+            String letters = String.join("", blocks);
+            labels = new String[rows * letters.length()];
+            characteristics = new String[labels.length];
+            String[] byLetter = new String[letters.length()];
+            int column = 0;
+            for (int b = 0; b < blocks.length; b++) {
+                for (int i = 0; i < blocks[b].length(); i++, column++) {
+                    boolean window = (b == 0 && i == 0) || (b == blocks.length - 1 && i == blocks[b].length() - 1);
+                    boolean aisle = (b > 0 && i == 0) || (b < blocks.length - 1 && i == blocks[b].length() - 1);
+                    byLetter[column] = window ? "Window" : aisle ? "Aisle" : "Middle";
+                }
+            }
+            for (int row = 0; row < rows; row++) {
+                for (int c = 0; c < letters.length(); c++) {
+                    int seat = row * letters.length() + c;
+                    labels[seat] = (row + 1) + String.valueOf(letters.charAt(c));
+                    characteristics[seat] = byLetter[c];
+                }
+            }
+        }
+    }
+
+    private static final Map<String, Layout> LAYOUTS = Map.of(
+            "320", new Layout(30, "ABC", "DEF"),
+            "738", new Layout(32, "ABC", "DEF"),
+            "777", new Layout(42, "ABC", "DEFG", "HJK"));
+
+    /** Generic single-aisle cabin for types without a layout of their own. */
+    private static final Layout DEFAULT_LAYOUT = new Layout(39, "ABC", "DEF");
+
+    private final Layout layout;
+    private final AtomicLongArray used;
+
+    private SeatMap(Layout layout) {
+        this.layout = layout;
+        this.used = new AtomicLongArray((layout.labels.length + 63) >>> 6);
+    }
+
+    /** An empty cabin of the given aircraft type. */
+    public static SeatMap forAircraft(String aircraftType) {
+        return new SeatMap(aircraftType != null ? LAYOUTS.getOrDefault(aircraftType, DEFAULT_LAYOUT) : DEFAULT_LAYOUT);
+    }
+
+    /** Number of seats in the cabin. */
+    public int capacity() {
+        return layout.labels.length;
+    }
+
+    /**
+     * Takes the preferred seat, or the next free seat after it in seat order, wrapping around.
+     *
+     * @param preferred any int; it is reduced modulo the capacity
+     * @return the seat taken, or -1 when the cabin is full
+     */
+    public int assign(int preferred) {
+        int capacity = capacity();
+        int words = used.length();
+        int start = Math.floorMod(preferred, capacity);
+        int word = start >>> 6;
+        long from = -1L << (start & 63);
+        for (int visited = 0; visited <= words; ) {
+            long bits = used.get(word);
+            long free = ~bits & from & validBits(word, capacity);
+            if (free == 0) {
+                word = word + 1 == words ? 0 : word + 1;
+                from = -1L;
+                visited++;
+                continue;
+            }
+            long bit = free & -free;
+            if (used.compareAndSet(word, bits, bits | bit)) {
+                return (word << 6) + Long.numberOfTrailingZeros(bit);
+            }
+        }
+        return -1;
+    }
+
+    /** Seat number such as {@code 23C}. */
+    public String label(int seat) {
+        return layout.labels[seat];
+    }
+
+    /** {@code Window}, {@code Aisle} or {@code Middle}. */
+    public String characteristics(int seat) {
+        return layout.characteristics[seat];
+    }
+
+    private static long validBits(int word, int capacity) {
+        int remaining = capacity - (word << 6);
+        return remaining >= 64 ? -1L : (1L << remaining) - 1;
+    }
+}
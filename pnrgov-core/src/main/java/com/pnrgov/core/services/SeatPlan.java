@@ -0,0 +1,28 @@
+package com.pnrgov.core.services;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+/**
+ * Where the passengers of one reservation sit on the flights of its itinerary. Seat maps may be
+ * shared by many reservations on the same flight; {@link SeatMap#assign} keeps the seats unique.
+ */
+@FunctionalInterface
+public interface SeatPlan {
+
+    /** The cabin of the {@code leg}-th flight of the itinerary. */
+    SeatMap seatMap(int leg);
+
+    /**
+     * The seat passenger {@code passenger} prefers on {@code leg}, or -1 for no seat. A taken seat
+     * falls through to the next free one. By default a random seat of the cabin.
+     */
+    default int preferredSeat(int leg, int passenger, RandomGenerator random) {
+        return random.nextInt(seatMap(leg).capacity());
+    }
+
+    /** Random seats from the given cabins, one per leg. */
+    static SeatPlan of(List<SeatMap> seatMaps) {
+        return seatMaps::get;
+    }
+}
@@ -0,0 +1,183 @@
+package com.pnrgov.core.services;
+
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * A fixed set of travelers that reservations draw their passengers from, so the same people
+ * travel again across PNRs as they do in real traffic. Travelers are held column by column in
+ * primitive arrays, about 11 bytes each: 10M travelers fit in roughly 110 MB and are built in
+ * one pass.
+ * <p>
+ * Travelers are drawn by Zipf rank: traveler {@code k} is drawn in proportion to
+ * {@code 1 / (k + 1)^s}. An exponent of 0 draws uniformly; around 1 a small head of frequent
+ * flyers accounts for a large share of all passengers. Sampling uses rejection-inversion
+ * (Hoermann and Derflinger), which needs no tables and takes O(1) expected time at any size.
+ * <p>
+ * The columns hold what identifies a traveler. Everything else, such as the address or phone
+ * number, comes from {@link #profile}, a random generator seeded per traveler, so it is the same
+ * every time the traveler is drawn without being stored.
+ */
+public final class TravelerPopulation {
+
+    /** Travelers are 18 to 69 years old on the reference date. */
+    private static final int MIN_AGE_DAYS = 18 * 365;
+    private static final int AGE_RANGE_DAYS = 52 * 365;
+
+    /** Passport numbers are nine digits; the stride is coprime to the range, so numbers are unique. */
+    private static final int DOCUMENT_NUMBER_BASE = 100_000_000;
+    private static final long DOCUMENT_NUMBER_RANGE = 900_000_000L;
+    private static final long DOCUMENT_NUMBER_STRIDE = 701_530_787L;
+
+    private final long seed;
+    private final LocalDate referenceDate;
+    private final long referenceEpochDay;
+
+    private final int[] firstNames;
+    private final int[] lastNames;
+    private final short[] ageDays;
+    private final byte[] nationalities;
+    private final long[] female;
+
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralSize;
+    private final double squeeze;
+
+    /**
+     * @param dictionaries  lists the names are drawn from
+     * @param size          number of travelers
+     * @param zipfExponent  0 for uniform draws, larger for more repeat travelers
+     * @param seed          the same seed, dictionaries and reference date give the same travelers
+     * @param referenceDate date the ages of travelers and their documents are counted from
+     */
+    public TravelerPopulation(SampleDictionaries dictionaries, int size, double zipfExponent, long seed,
+                              LocalDate referenceDate) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        if (!(zipfExponent >= 0) || Double.isInfinite(zipfExponent)) {
+            throw new IllegalArgumentException("zipfExponent must be a non-negative number: " + zipfExponent);
+        }
+        this.seed = seed;
+        this.referenceDate = referenceDate;
+        this.referenceEpochDay = referenceDate.toEpochDay();
+
+        this.firstNames = new int[size];
+        this.lastNames = new int[size];
+        this.ageDays = new short[size];
+        this.nationalities = new byte[size];
+        this.female = new long[(size + 63) >>> 6];
+        SplittableRandom random = new SplittableRandom(seed);
+        int firstNameCount = dictionaries.firstNames().size();
+        int lastNameCount = dictionaries.lastNames().size();
+        int countryCount = ReferenceData.randomCountryCount();
+        for (int i = 0; i < size; i++) {
+            if (random.nextBoolean()) {
+                female[i >>> 6] |= 1L << i;
+            }
+            firstNames[i] = random.nextInt(firstNameCount);
+            lastNames[i] = random.nextInt(lastNameCount);
+            ageDays[i] = (short) (MIN_AGE_DAYS + random.nextInt(AGE_RANGE_DAYS));
+            nationalities[i] = (byte) random.nextInt(countryCount);
+        }
+
+        this.exponent = zipfExponent;
+        this.hIntegralX1 = hIntegral(1.5) - 1;
+        this.hIntegralSize = hIntegral(size + 0.5);
+        this.squeeze = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    public int size() {
+        return firstNames.length;
+    }
+
+    public LocalDate referenceDate() {
+        return referenceDate;
+    }
+
+    /** Index of a traveler drawn by Zipf rank. */
+    public int sample(RandomGenerator random) {
+        int size = size();
+        if (exponent == 0) {
+            return random.nextInt(size);
+        }
+        while (true) {
+            double u = hIntegralSize + random.nextDouble() * (hIntegralX1 - hIntegralSize);
+            double x = hIntegralInverse(u);
+            int k = (int) (x + 0.5);
+            if (k < 1) {
+                k = 1;
+            } else if (k > size) {
+                k = size;
+            }
+            if (k - x <= squeeze || u >= hIntegral(k + 0.5) - h(k)) {
+                return k - 1;
+            }
+        }
+    }
+
+    /** Index into the first-name dictionary. */
+    public int firstName(int traveler) {
+        return firstNames[traveler];
+    }
+
+    /** Index into the last-name dictionary. */
+    public int lastName(int traveler) {
+        return lastNames[traveler];
+    }
+
+    public boolean isFemale(int traveler) {
+        return (female[traveler >>> 6] & (1L << traveler)) != 0;
+    }
+
+    public LocalDate dateOfBirth(int traveler) {
+        return LocalDate.ofEpochDay(referenceEpochDay - ageDays[traveler]);
+    }
+
+    /** {@link ReferenceData} country id; also the country that issued the passport. */
+    public int nationality(int traveler) {
+        return nationalities[traveler];
+    }
+
+    /** Nine-digit passport number, unique within the population. */
+    public int documentNumber(int traveler) {
+        long offset = Math.floorMod(seed, DOCUMENT_NUMBER_RANGE);
+        return DOCUMENT_NUMBER_BASE + (int) ((traveler * DOCUMENT_NUMBER_STRIDE + offset) % DOCUMENT_NUMBER_RANGE);
+    }
+
+    /**
+     * Random generator for the attributes that are not stored. Each call returns a new generator
+     * with the same sequence for the same traveler.
+     */
+    public RandomGenerator profile(int traveler) {
+        long z = seed + (traveler + 1L) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return new SplittableRandom(z ^ (z >>> 31));
+    }
+
+    /** {@code (x^(1-s) - 1) / (1 - s)}, continuous at {@code s = 1}. */
+    private double hIntegral(double x) {
+        double logX = Math.log(x);
+        return expm1OverX((1 - exponent) * logX) * logX;
+    }
+
+    private double h(double x) {
+        return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegralInverse(double x) {
+        double t = Math.max(x * (1 - exponent), -1);
+        return Math.exp(log1pOverX(t) * x);
+    }
+
+    private static double log1pOverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    private static double expm1OverX(double x) {
+        return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x * (1.0 / 3) * (1 + 0.25 * x));
+    }
+}
@@ -0,0 +1,51 @@
+package com.pnrgov.core.edifact;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EdifactWriterTest {
+
+    @Test
+    void releasesSeparatorsTerminatorAndReleaseCharacterInFreeText() {
+        assertEquals("IFT+4:28+PAX ?+1?: O??REILLY?'S BAG'\n",
+                render(w -> w.segment("IFT").element("4").component("28").element("PAX +1: O?REILLY'S BAG").end()));
+    }
+
+    @Test
+    void releasesUpperCasedText() {
+        assertEquals("RMK+A?+B?:C?'D??E'\n",
+                render(w -> w.segment("RMK").element().appendUpper("a+b:c'd?e").end()));
+    }
+
+    @Test
+    void leavesPlainTextAsItIs() {
+        assertEquals("TIF+SMITH:A+JOHN:ADT'\n",
+                render(w -> w.segment("TIF").element("SMITH").component("A").element("JOHN").component("ADT").end()));
+        assertFalse(EdifactCodec.needsEscape("SMITH JOHN 1A"));
+        assertTrue(EdifactCodec.needsEscape("O'REILLY"));
+    }
+
+    @Test
+    void releasedCharactersDoNotCountAsSegments() {
+        StringBuilder sb = new StringBuilder();
+        EdifactWriter w = new EdifactWriter(sb);
+        w.segment("UNH").element("1").end();
+        w.segment("IFT").element("4").element("A'B'C").end();
+        w.writeMessageTrailer("1");
+        w.flush();
+        assertEquals("UNH+1'\nIFT+4+A?'B?'C'\nUNT+3+1'\n", sb.toString());
+    }
+
+    private static String render(Consumer<EdifactWriter> body) {
+        StringBuilder sb = new StringBuilder();
+        EdifactWriter w = new EdifactWriter(sb);
+        body.accept(w);
+        w.flush();
+        return sb.toString();
+    }
+}
@@ -0,0 +1,248 @@
+package com.pnrgov.core.services;
+
+import com.pnrgov.core.models.Flight;
+import com.pnrgov.core.models.Reservation;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightManifestGeneratorTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+    private static final long SEED = 42L;
+
+    private final SampleDataGenerator sampleDataGenerator = new SampleDataGenerator(CLOCK,
+            new RecordLocatorAllocator(7L), SampleDictionaries.builtIn(), Optional.empty());
+    private final FlightManifestGenerator generator = new FlightManifestGenerator(sampleDataGenerator, CLOCK);
+
+    @Test
+    void parallelOutputMatchesSequentialForTheSameSeed() {
+        String sequential = generator.generateFlightManifest(
+                ManifestOptions.builder().pnrCount(500).seed(SEED).build());
+
+        StringWriter commonPool = new StringWriter();
+        generator.writeFlightManifest(
+                ManifestOptions.builder().pnrCount(500).seed(SEED).parallel(true).build(), commonPool);
+        assertEquals(sequential, commonPool.toString());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            StringWriter ownPool = new StringWriter();
+            generator.writeFlightManifest(
+                    ManifestOptions.builder().pnrCount(500).seed(SEED).parallel(true).executor(executor).build(),
+                    ownPool);
+            assertEquals(sequential, ownPool.toString());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void parallelSplitOutputMatchesSequentialForTheSameSeed() {
+        String sequential = generator.generateFlightManifest(
+                ManifestOptions.builder().pnrCount(300).seed(SEED).maxPnrsPerMessage(40).build());
+        StringWriter parallel = new StringWriter();
+        generator.writeFlightManifest(
+                ManifestOptions.builder().pnrCount(300).seed(SEED).maxPnrsPerMessage(40).parallel(true).build(),
+                parallel);
+        assertEquals(sequential, parallel.toString());
+    }
+
+    @Test
+    void numbersSplitPartsFromFirstToLastAndCountEachPartsSegments() {
+        String manifest = generator.generateFlightManifest(
+                ManifestOptions.builder().pnrCount(300).seed(SEED).maxPnrsPerMessage(40).build());
+        List<List<String>> messages = messages(manifest);
+
+        assertEquals(8, messages.size());
+        for (int part = 1; part <= messages.size(); part++) {
+            List<String> message = messages.get(part - 1);
+            String[] unh = message.get(0).split("\\+");
+            String marker = part == 1 ? ":C" : part == messages.size() ? ":F" : "";
+            assertEquals(String.format("%02d", part) + marker, unh[unh.length - 1]);
+            assertEquals("UNT+" + message.size() + "+" + unh[1], message.get(message.size() - 1));
+        }
+        assertEquals(300, count(manifest, "SRC"));
+        assertTrue(manifest.contains("UNE+8+"));
+    }
+
+    @Test
+    void keepsEverySplitPartWithinTheByteLimit() {
+        int limit = 20_000;
+        String manifest = generator.generateFlightManifest(
+                ManifestOptions.builder().pnrCount(300).seed(SEED).maxMessageSize(limit).build());
+        List<List<String>> messages = messages(manifest);
+
+        assertTrue(messages.size() > 2);
+        for (int part = 1; part <= messages.size(); part++) {
+            List<String> message = messages.get(part - 1);
+            int bytes = 0;
+            for (String segment : message) {
+                bytes += segment.length() + 2;
+            }
+            assertTrue(bytes <= limit, "part " + part + " has " + bytes + " bytes");
+            String[] unh = message.get(0).split("\\+");
+            assertTrue(unh[unh.length - 1].startsWith(String.format("%02d", part)));
+            assertEquals("UNT+" + message.size() + "+" + unh[1], message.get(message.size() - 1));
+        }
+        assertEquals(300, count(manifest, "SRC"));
+    }
+
+    @Test
+    void leavesAnUnsplitManifestWithoutPartNumbers() {
+        List<List<String>> messages = messages(generator.generateFlightManifest(
+                ManifestOptions.builder().pnrCount(3).seed(SEED).build()));
+
+        assertEquals(1, messages.size());
+        List<String> message = messages.get(0);
+        String[] unh = message.get(0).split("\\+");
+        // Reference, message type and flight, but no sequence of transfers
+        assertEquals(4, unh.length);
+        assertEquals("UNT+" + message.size() + "+" + unh[1], message.get(message.size() - 1));
+    }
+
+    @Test
+    void reEnvelopingForAnotherReceiverLeavesTheMessagesUnchanged() {
+        ManifestOptions options = ManifestOptions.builder().pnrCount(50).airline("UA").seed(SEED)
+                .maxPnrsPerMessage(20).build();
+        Map<String, String> interchanges = generator.generateFlightManifestForReceivers(options,
+                List.of("USCBP", "CBSA", "UKBF"));
+
+        String messages = generator.renderFlightManifest(options).messages();
+        for (Map.Entry<String, String> interchange : interchanges.entrySet()) {
+            String content = interchange.getValue();
+            assertEquals(messages, body(content));
+            assertTrue(content.contains("UNB+IATA:1+UA+" + interchange.getKey() + "+"));
+            assertTrue(content.contains("UNE+3+"));
+        }
+        assertNotEquals(interchanges.get("USCBP"), interchanges.get("CBSA"));
+
+        Map<String, StringBuilder> streamed = new LinkedHashMap<>();
+        interchanges.keySet().forEach(receiver -> streamed.put(receiver, new StringBuilder()));
+        generator.writeFlightManifestForReceivers(options, streamed);
+        streamed.forEach((receiver, sb) -> assertEquals(interchanges.get(receiver), sb.toString()));
+    }
+
+    @Test
+    void routesEachReservationToTheCountriesItTouchesAndCountsTheirPassengers() {
+        GenerationContext context = GenerationContext.create(CLOCK, SEED, LocalDateTime.of(2026, 1, 1, 0, 0));
+        List<Reservation> reservations = sampleDataGenerator
+                .generateReservations(ReservationSpec.mixed(1, 4, 1, 4), 200, context).toList();
+        Map<String, String> receiverByCountry = new LinkedHashMap<>();
+        receiverByCountry.put("US", "USCBP");
+        receiverByCountry.put("GB", "UKBF");
+        receiverByCountry.put("DE", "BPOL");
+        receiverByCountry.put("XX", "NOWHERE");
+
+        Flight reportingFlight = reservations.get(0).getFlights().get(0);
+        Map<String, String> interchanges = generator.routeFlightManifest(reportingFlight, reservations,
+                receiverByCountry);
+
+        assertEquals(List.copyOf(receiverByCountry.keySet()), List.copyOf(interchanges.keySet()));
+        for (String country : receiverByCountry.keySet()) {
+            String content = interchanges.get(country);
+            int pnrs = 0;
+            int passengers = 0;
+            for (Reservation reservation : reservations) {
+                boolean touches = reservation.getFlights().stream().anyMatch(flight ->
+                        country.equals(ReferenceData.countryOfAirport(flight.getDepartureAirport()))
+                                || country.equals(ReferenceData.countryOfAirport(flight.getArrivalAirport())));
+                if (touches) {
+                    pnrs++;
+                    passengers += reservation.getPassengers().size();
+                    assertTrue(content.contains(reservation.getRecordLocator()),
+                            reservation.getRecordLocator() + " missing for " + country);
+                } else {
+                    assertFalse(content.contains(reservation.getRecordLocator()),
+                            reservation.getRecordLocator() + " routed to " + country);
+                }
+            }
+            assertEquals(pnrs, count(content, "SRC"), country);
+            assertTrue(content.contains("EQN+" + passengers + "'"), country + " EQN");
+            assertTrue(content.contains("+" + receiverByCountry.get(country) + "+"), country + " receiver");
+            List<List<String>> messages = messages(content);
+            assertEquals(1, messages.size());
+            assertEquals("UNT+" + messages.get(0).size() + "+" + messages.get(0).get(0).split("\\+")[1],
+                    messages.get(0).get(messages.get(0).size() - 1));
+        }
+        assertEquals(0, count(interchanges.get("XX"), "SRC"));
+        assertTrue(count(interchanges.get("US"), "SRC") > 0);
+    }
+
+    @Test
+    void seatsEveryPassengerOnADifferentSeatUntilTheCabinIsFull() {
+        for (int pnrCount : new int[]{20, 1_000}) {
+            String manifest = generator.generateFlightManifest(
+                    ManifestOptions.builder().pnrCount(pnrCount).seed(SEED).build());
+            Set<String> seats = new HashSet<>();
+            for (String segment : manifest.split("'\n")) {
+                if (segment.startsWith("SSR+SEAT:")) {
+                    String[] elements = segment.split("\\+");
+                    for (int e = 2; e < elements.length; e++) {
+                        String seat = elements[e].substring(0, elements[e].indexOf(':'));
+                        assertTrue(seats.add(seat), "seat " + seat + " assigned twice");
+                    }
+                }
+            }
+            assertFalse(seats.isEmpty());
+            // The reporting flight is an A320
+            assertTrue(seats.size() <= 180);
+            if (pnrCount == 1_000) {
+                assertEquals(180, seats.size());
+            }
+        }
+    }
+
+    /** The segments of each message, UNH through UNT, without their terminators. */
+    static List<List<String>> messages(String interchange) {
+        List<List<String>> messages = new ArrayList<>();
+        List<String> message = null;
+        for (String segment : interchange.split("'\n")) {
+            if (segment.startsWith("UNH+")) {
+                message = new ArrayList<>();
+                messages.add(message);
+            }
+            if (message != null) {
+                message.add(segment);
+            }
+            if (segment.startsWith("UNT+")) {
+                message = null;
+            }
+        }
+        return messages;
+    }
+
+    /** Everything between UNG and UNE. */
+    private static String body(String interchange) {
+        int start = interchange.indexOf("'\n", interchange.indexOf("UNG+")) + 2;
+        return interchange.substring(start, interchange.lastIndexOf("UNE+"));
+    }
+
+    static int count(String interchange, String tag) {
+        int count = 0;
+        for (String segment : interchange.split("'\n")) {
+            if (segment.equals(tag) || segment.startsWith(tag + "+")) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+package com.pnrgov.core.services;
+
+import com.pnrgov.core.models.Reservation;
+import com.pnrgov.core.services.InterchangePacker.PackedInterchange;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InterchangePackerTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+
+    private final SampleDataGenerator sampleDataGenerator = new SampleDataGenerator(CLOCK,
+            new RecordLocatorAllocator(7L), SampleDictionaries.builtIn(), Optional.empty());
+
+    @Test
+    void closesAnInterchangeAtTheMessageLimitAndCountsItsMessages() {
+        List<PackedInterchange> packed = pack(25, 10, 0);
+
+        assertEquals(3, packed.size());
+        assertEquals(List.of(10, 10, 5), packed.stream().map(PackedInterchange::messageCount).toList());
+        assertTrailers(packed);
+    }
+
+    @Test
+    void closesAnInterchangeBeforeItGoesOverTheByteLimit() {
+        int limit = 30_000;
+        List<PackedInterchange> packed = pack(40, 0, limit);
+
+        assertTrue(packed.size() > 1);
+        assertEquals(40, packed.stream().mapToInt(PackedInterchange::messageCount).sum());
+        for (PackedInterchange interchange : packed) {
+            assertTrue(interchange.content().length() <= limit,
+                    interchange.interchangeRef() + " has " + interchange.content().length() + " bytes");
+        }
+        assertTrailers(packed);
+    }
+
+    /** UNE counts the messages of the interchange's one group, and UNZ counts that group. */
+    private static void assertTrailers(List<PackedInterchange> packed) {
+        for (PackedInterchange interchange : packed) {
+            String content = interchange.content();
+            String ref = interchange.interchangeRef();
+            assertEquals(interchange.messageCount(), FlightManifestGeneratorTest.count(content, "UNH"));
+            assertEquals(interchange.messageCount(), FlightManifestGeneratorTest.count(content, "UNT"));
+            assertEquals(1, FlightManifestGeneratorTest.count(content, "UNG"));
+            assertTrue(content.startsWith("UNA"));
+            assertTrue(content.contains("+" + ref + "+"), "UNB and UNG carry " + ref);
+            assertTrue(content.endsWith("UNE+" + interchange.messageCount() + "+" + ref + "'\nUNZ+1+" + ref + "'\n"));
+        }
+    }
+
+    private List<PackedInterchange> pack(int reservations, int maxMessages, int maxInterchangeSize) {
+        GenerationContext context = GenerationContext.create(CLOCK, 42L, LocalDateTime.of(2026, 1, 1, 0, 0));
+        List<PackedInterchange> packed = new ArrayList<>();
+        InterchangePacker packer = new InterchangePacker(new EdifactGenerator(CLOCK), context, null, "USCBP",
+                maxMessages, maxInterchangeSize, packed::add);
+        List<Reservation> generated = sampleDataGenerator
+                .generateReservations(ReservationSpec.mixed(1, 4, 1, 3), reservations, context).toList();
+        generated.forEach(packer::add);
+        packer.finish();
+        assertEquals(generated.stream().mapToInt(r -> r.getPassengers().size()).sum(),
+                packed.stream().mapToInt(PackedInterchange::passengerCount).sum());
+        return packed;
+    }
+}
@@ -0,0 +1,105 @@
+package com.pnrgov.core.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordLocatorAllocatorTest {
+
+    private static final long KEY = 0x5EED_1234L;
+    private static final int THREADS = 8;
+    private static final int PER_THREAD = 1_300_000;
+    private static final int EXISTING = 100_000;
+
+    @Test
+    void allocatesTenMillionUniqueLocatorsAcrossThreadsAndSkipsExisting() throws Exception {
+        // Existing locators scattered over the counts the allocator will reach, plus strings that
+        // are not locators at all
+        RecordLocatorAllocator probe = new RecordLocatorAllocator(KEY);
+        SplittableRandom random = new SplittableRandom(1);
+        List<String> existing = new ArrayList<>(EXISTING + 3);
+        for (int i = 0; i < EXISTING; i++) {
+            existing.add(RecordLocatorAllocator.encode(probe.scramble(random.nextInt(THREADS * PER_THREAD))));
+        }
+        existing.add("ABC");
+        existing.add("abcdef");
+        existing.add("ABCDE1");
+        int[] excluded = existing.stream().mapToInt(RecordLocatorAllocator::decode).filter(v -> v >= 0)
+                .sorted().distinct().toArray();
+
+        RecordLocatorAllocator allocator = new RecordLocatorAllocator(KEY, existing);
+        assertEquals(excluded.length, allocator.getExcludedCount());
+
+        int[][] allocated = assertTimeout(Duration.ofSeconds(60), () -> allocate(allocator));
+
+        int[] values = new int[THREADS * PER_THREAD];
+        int size = 0;
+        for (int[] block : allocated) {
+            System.arraycopy(block, 0, values, size, block.length);
+            size += block.length;
+        }
+        Arrays.sort(values);
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(values[i] >= 0, "malformed locator");
+            if (i > 0) {
+                assertTrue(values[i] != values[i - 1], "duplicate locator "
+                        + RecordLocatorAllocator.encode(values[i]));
+            }
+            assertTrue(Arrays.binarySearch(excluded, values[i]) < 0, "existing locator allocated "
+                    + RecordLocatorAllocator.encode(values[i]));
+        }
+    }
+
+    @Test
+    void unscrambleInvertsScramble() {
+        RecordLocatorAllocator allocator = new RecordLocatorAllocator(KEY);
+        for (long count = 0; count < RecordLocatorAllocator.CAPACITY; count += 997) {
+            assertEquals((int) count, allocator.unscramble(allocator.scramble((int) count)));
+        }
+        int last = (int) RecordLocatorAllocator.CAPACITY - 1;
+        assertEquals(last, allocator.unscramble(allocator.scramble(last)));
+        assertTrue(allocator.scramble(last) >= 0 && allocator.scramble(last) <= last);
+    }
+
+    @Test
+    void decodeInvertsEncode() {
+        for (int value : new int[]{0, 1, 31, 32, 123_456_789, (int) RecordLocatorAllocator.CAPACITY - 1}) {
+            assertEquals(value, RecordLocatorAllocator.decode(RecordLocatorAllocator.encode(value)));
+        }
+    }
+
+    /** Locators of each thread, decoded to their 30-bit values. */
+    private static int[][] allocate(RecordLocatorAllocator allocator) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<int[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    int[] values = new int[PER_THREAD];
+                    for (int i = 0; i < PER_THREAD; i++) {
+                        values[i] = RecordLocatorAllocator.decode(allocator.next());
+                    }
+                    return values;
+                }));
+            }
+            int[][] allocated = new int[THREADS][];
+            for (int t = 0; t < THREADS; t++) {
+                allocated[t] = futures.get(t).get();
+            }
+            return allocated;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
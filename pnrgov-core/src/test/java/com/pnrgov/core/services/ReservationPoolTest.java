@@ -0,0 +1,82 @@
+package com.pnrgov.core.services;
+
+import com.pnrgov.core.models.Reservation;
+import com.pnrgov.core.services.ReservationPool.PoolStats;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReservationPoolTest {
+
+    private static final ReservationSpec POOLED = ReservationSpec.mixed(1, 3, 1, 2);
+    private static final ReservationSpec UNPOOLED = ReservationSpec.mixed(2, 2, 2, 2);
+    private static final int CAPACITY = 8;
+
+    private final SampleDataGenerator generator = new SampleDataGenerator(Clock.systemUTC(),
+            new RecordLocatorAllocator(7L), SampleDictionaries.builtIn(), Optional.empty());
+
+    @Test
+    void countsATakeFromAnEmptyBufferAsAMiss() {
+        try (ReservationPool pool = new ReservationPool(generator, Clock.systemUTC(), CAPACITY)) {
+            pool.addProfile("small", POOLED);
+
+            assertNotNull(pool.take(POOLED));
+            assertNotNull(pool.take(POOLED));
+            assertStats(pool.getStats().get(0), 0, 2, 0);
+        }
+    }
+
+    @Test
+    void countsTakesFromAFullBufferAsHitsUntilItIsEmpty() throws InterruptedException {
+        try (ReservationPool pool = new ReservationPool(generator, Clock.systemUTC(), CAPACITY)) {
+            pool.addProfile("small", POOLED);
+            pool.start(1, Duration.ofHours(1));
+            awaitDepth(pool, CAPACITY);
+            // Refills are an hour apart, so nothing tops the buffer up while it is drained
+
+            Set<String> locators = new HashSet<>();
+            for (int i = 0; i < CAPACITY; i++) {
+                assertTrue(locators.add(pool.take(POOLED).getRecordLocator()), "reservation taken twice");
+            }
+            assertStats(pool.getStats().get(0), CAPACITY, 0, 0);
+
+            assertTrue(locators.add(pool.take(POOLED).getRecordLocator()));
+            assertStats(pool.getStats().get(0), CAPACITY, 1, 0);
+        }
+    }
+
+    @Test
+    void leavesSpecsWithoutAProfileOutOfTheStats() {
+        try (ReservationPool pool = new ReservationPool(generator, Clock.systemUTC(), CAPACITY)) {
+            pool.addProfile("small", POOLED);
+
+            Reservation reservation = pool.take(UNPOOLED);
+            assertEquals(2, reservation.getPassengers().size());
+            assertStats(pool.getStats().get(0), 0, 0, 0);
+        }
+    }
+
+    private static void assertStats(PoolStats stats, long hits, long misses, int depth) {
+        assertEquals("small", stats.profile());
+        assertEquals(CAPACITY, stats.capacity());
+        assertEquals(hits, stats.hits());
+        assertEquals(misses, stats.misses());
+        assertEquals(depth, stats.depth());
+    }
+
+    private static void awaitDepth(ReservationPool pool, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(30).toNanos();
+        while (pool.getStats().get(0).depth() < depth) {
+            assertTrue(System.nanoTime() < deadline, "pool not filled");
+            Thread.sleep(10);
+        }
+    }
+}
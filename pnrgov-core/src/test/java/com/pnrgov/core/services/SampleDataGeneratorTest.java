@@ -0,0 +1,70 @@
+package com.pnrgov.core.services;
+
+import com.pnrgov.core.models.Reservation;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class SampleDataGeneratorTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.parse("2026-01-01T00:00:00Z"), ZoneOffset.UTC);
+    private static final LocalDateTime REFERENCE_TIME = LocalDateTime.of(2026, 1, 1, 0, 0);
+    private static final ReservationSpec SPEC = ReservationSpec.mixed(1, 4, 1, 3);
+    private static final int COUNT = 1_000;
+
+    private final SampleDataGenerator generator = new SampleDataGenerator(CLOCK, new RecordLocatorAllocator(7L),
+            SampleDictionaries.builtIn(), Optional.empty());
+    private final EdifactGenerator edifactGenerator = new EdifactGenerator(CLOCK);
+
+    @Test
+    void parallelStreamGeneratesTheSameReservationsAsSequential() {
+        List<String> sequential = render(stream().toList());
+        List<String> parallel = render(stream().parallel().toList());
+        assertEquals(COUNT, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void splitRangesGenerateTheSameReservationsAsTheWholeRange() {
+        List<String> whole = render(stream().toList());
+
+        Spliterator<Reservation> second = stream().spliterator();
+        Spliterator<Reservation> first = second.trySplit();
+        assertNotNull(first);
+        Spliterator<Reservation> firstHalf = first.trySplit();
+        assertNotNull(firstHalf);
+        List<Reservation> reservations = new ArrayList<>(COUNT);
+        firstHalf.forEachRemaining(reservations::add);
+        while (first.tryAdvance(reservations::add)) {
+            // the second quarter one reservation at a time
+        }
+        second.forEachRemaining(reservations::add);
+
+        assertEquals(whole, render(reservations));
+    }
+
+    private Stream<Reservation> stream() {
+        return generator.generateReservations(SPEC, COUNT, GenerationContext.create(CLOCK, 42L, REFERENCE_TIME));
+    }
+
+    /** Each reservation's PNRGOV message, rendered from the same seed so only the reservation differs. */
+    private List<String> render(List<Reservation> reservations) {
+        List<String> rendered = new ArrayList<>(reservations.size());
+        for (Reservation reservation : reservations) {
+            rendered.add(edifactGenerator.generatePnrGov(reservation, "USCBP",
+                    GenerationContext.create(CLOCK, 1L, REFERENCE_TIME)));
+        }
+        return rendered;
+    }
+}
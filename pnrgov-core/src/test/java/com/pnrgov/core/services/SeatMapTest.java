@@ -0,0 +1,78 @@
+package com.pnrgov.core.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMapTest {
+
+    private static final int THREADS = 8;
+
+    @Test
+    void assignsEverySeatOnceAcrossThreadsAndThenReportsFull() throws Exception {
+        for (String aircraftType : new String[]{"320", "738", "777", "XYZ"}) {
+            SeatMap seatMap = SeatMap.forAircraft(aircraftType);
+            int perThread = seatMap.capacity() / THREADS + 10;
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            List<Integer> seats = new ArrayList<>();
+            int full = 0;
+            try {
+                List<Future<int[]>> futures = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    long seed = t;
+                    futures.add(executor.submit(() -> {
+                        SplittableRandom random = new SplittableRandom(seed);
+                        int[] taken = new int[perThread];
+                        for (int i = 0; i < perThread; i++) {
+                            taken[i] = seatMap.assign(random.nextInt());
+                        }
+                        return taken;
+                    }));
+                }
+                for (Future<int[]> future : futures) {
+                    for (int seat : future.get()) {
+                        if (seat < 0) {
+                            full++;
+                        } else {
+                            seats.add(seat);
+                        }
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            assertEquals(seatMap.capacity(), seats.size(), aircraftType);
+            assertEquals(THREADS * perThread - seatMap.capacity(), full, aircraftType);
+            Set<String> labels = new HashSet<>();
+            for (int seat : seats) {
+                assertTrue(labels.add(seatMap.label(seat)), "seat " + seatMap.label(seat) + " assigned twice");
+            }
+        }
+    }
+
+    @Test
+    void takesTheNextFreeSeatAfterATakenOne() {
+        SeatMap seatMap = SeatMap.forAircraft("320");
+        assertEquals(180, seatMap.capacity());
+        assertEquals(70, seatMap.assign(70));
+        assertEquals(71, seatMap.assign(70));
+        assertEquals(179, seatMap.assign(-1));
+        assertEquals(0, seatMap.assign(179));
+        assertEquals("1A", seatMap.label(0));
+        assertEquals("Window", seatMap.characteristics(0));
+        assertEquals("Aisle", seatMap.characteristics(2));
+        assertEquals("30F", seatMap.label(179));
+    }
+}
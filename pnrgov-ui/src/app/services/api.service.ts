@@ -1,6 +1,6 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { HttpClient, HttpResponse } from '@angular/common/http';
+import { Observable, map } from 'rxjs';
 import { environment } from '../../environments/environment';
 
 // ── Shared sub-schemas ────────────────────────────────────────────────────────
@@ -23,7 +23,8 @@ export interface GeneratedFile {
   content: string;
   passengerCount: number;
   flightCount: number;
-  options: FileOptions;
+  messageCount: number;
+  options?: FileOptions;
 }
 
 export interface TravelDocument {
@@ -139,12 +140,18 @@ export interface ManifestRequest {
   airline?: string;
   flightNumber?: string;
   receiver?: string;
+  maxPnrsPerMessage?: number;
+  maxMessageSize?: number;
+  receivers?: string[];
+  seed?: number;
+  referenceTime?: string;
 }
 
 export interface ManifestResponse {
   edifactContent: string;
   passengerCount: number;
   generatedAt: string;
+  edifactByReceiver?: Record<string, string>;
 }
 
 export interface SampleDataRequest {
@@ -160,6 +167,8 @@ export interface SampleDataRequest {
   includeAgencyInfo?: boolean;
   includeCreditCard?: boolean;
   receiver?: string;
+  seed?: number;
+  referenceTime?: string;
 }
 
 export interface SampleDataResponse {
@@ -187,6 +196,21 @@ export interface BulkGenerationRequest {
   minFlights?: number;
   maxFlights?: number;
   receiver?: string;
+  messagesPerInterchange?: number;
+  maxInterchangeSize?: number;
+  sender?: string;
+  seed?: number;
+  referenceTime?: string;
+}
+
+export interface PoolStats {
+  profile: string;
+  capacity: number;
+  depth: number;
+  hits: number;
+  misses: number;
+  refilled: number;
+  refillRatePerSecond: number;
 }
 
 export interface BulkGenerationResponse {
@@ -195,6 +219,21 @@ export interface BulkGenerationResponse {
   generatedAt: string;
 }
 
+export interface BulkJobStatus {
+  id: string;
+  kind: 'BULK' | 'MANIFEST';
+  state: 'QUEUED' | 'RUNNING' | 'SUCCEEDED' | 'FAILED' | 'CANCELLED';
+  completed: number;
+  total: number;
+  fileCount: number;
+  bytes: number;
+  createdAt: string;
+  startedAt?: string;
+  finishedAt?: string;
+  expiresAt?: string;
+  error?: string;
+}
+
 // ── Service ───────────────────────────────────────────────────────────────────
 
 @Injectable({
@@ -228,12 +267,82 @@ export class ApiService {
     return this.http.post(`${this.base}/${this.p.edifact}/manifest/download`, request ?? {}, { responseType: 'blob' });
   }
 
+  /** The bare interchange, without the JSON wrapper; the record locator is in the X-Record-Locator header. */
+  generateEdifactText(): Observable<HttpResponse<string>> {
+    return this.http.post(`${this.base}/${this.p.edifact}/generate`, {}, {
+      headers: { Accept: 'application/edifact' },
+      observe: 'response',
+      responseType: 'text'
+    });
+  }
+
+  getEdifactTextById(reservationId: number): Observable<string> {
+    return this.http.get(`${this.base}/${this.p.edifact}/generate/${reservationId}`, {
+      headers: { Accept: 'application/edifact' },
+      responseType: 'text'
+    });
+  }
+
+  /** The manifest interchange for request.receiver alone; use generateManifest for several receivers. */
+  generateManifestText(request?: ManifestRequest): Observable<string> {
+    return this.http.post(`${this.base}/${this.p.edifact}/manifest/generate`, request ?? {}, {
+      headers: { Accept: 'application/edifact' },
+      responseType: 'text'
+    });
+  }
+
   // ── Bulk Edifact ───────────────────────────────────────────────────────────
 
   generateBulk(request: BulkGenerationRequest): Observable<BulkGenerationResponse> {
     return this.http.post<BulkGenerationResponse>(`${this.base}/${this.p.bulkEdifact}/generate`, request);
   }
 
+  /** Same files as generateBulk, read from the newline-delimited JSON stream; fileCount may be far above 1000. */
+  generateBulkNdjson(request: BulkGenerationRequest): Observable<GeneratedFile[]> {
+    return this.http.post(`${this.base}/${this.p.bulkEdifact}/generate`, request, {
+      headers: { Accept: 'application/x-ndjson' },
+      responseType: 'text'
+    }).pipe(map(body => body.split('\n').filter(line => line.length > 0).map(line => JSON.parse(line) as GeneratedFile)));
+  }
+
+  /** ZIP of the generated .edi files plus manifest.jsonl; streamed, so fileCount may be far above 1000. */
+  downloadBulk(request: BulkGenerationRequest): Observable<Blob> {
+    return this.http.post(`${this.base}/${this.p.bulkEdifact}/download`, request, { responseType: 'blob' });
+  }
+
+  // ── Bulk Jobs ──────────────────────────────────────────────────────────────
+
+  submitBulkJob(request: BulkGenerationRequest): Observable<BulkJobStatus> {
+    return this.http.post<BulkJobStatus>(`${this.base}/${this.p.bulkJobs}/bulk`, request);
+  }
+
+  submitManifestJob(request?: ManifestRequest): Observable<BulkJobStatus> {
+    return this.http.post<BulkJobStatus>(`${this.base}/${this.p.bulkJobs}/manifest`, request ?? {});
+  }
+
+  getBulkJobs(): Observable<BulkJobStatus[]> {
+    return this.http.get<BulkJobStatus[]>(`${this.base}/${this.p.bulkJobs}`);
+  }
+
+  getBulkJob(id: string): Observable<BulkJobStatus> {
+    return this.http.get<BulkJobStatus>(`${this.base}/${this.p.bulkJobs}/${id}`);
+  }
+
+  /** A page of the files spooled so far; readable while the job is still running. */
+  getBulkJobFiles(id: string, page = 0, size = 20): Observable<BulkGenerationResponse> {
+    return this.http.get<BulkGenerationResponse>(`${this.base}/${this.p.bulkJobs}/${id}/files`, {
+      params: { page, size }
+    });
+  }
+
+  downloadBulkJobArchive(id: string): Observable<Blob> {
+    return this.http.get(`${this.base}/${this.p.bulkJobs}/${id}/archive`, { responseType: 'blob' });
+  }
+
+  deleteBulkJob(id: string): Observable<void> {
+    return this.http.delete<void>(`${this.base}/${this.p.bulkJobs}/${id}`);
+  }
+
   // ── Sample Data ────────────────────────────────────────────────────────────
 
   generateSampleData(request?: SampleDataRequest): Observable<SampleDataResponse> {
@@ -244,6 +353,10 @@ export class ApiService {
     return this.http.post<MultipleSampleDataResponse>(`${this.base}/${this.p.sampleData}/generate-multiple`, request ?? {});
   }
 
+  getPoolStats(): Observable<PoolStats[]> {
+    return this.http.get<PoolStats[]>(`${this.base}/${this.p.sampleData}/pool`);
+  }
+
   // ── Reservations ───────────────────────────────────────────────────────────
 
   getReservations(): Observable<Reservation[]> {
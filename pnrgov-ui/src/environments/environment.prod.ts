@@ -4,6 +4,7 @@ export const environment = {
   apiPaths: {
     edifact: 'Edifact',
     bulkEdifact: 'BulkEdifact',
+    bulkJobs: 'BulkJobs',
     sampleData: 'SampleData',
     reservations: 'Reservations'
   }